@@ -0,0 +1,182 @@
+package com.Arka.MSCart.cache;
+
+import com.Arka.MSCart.client.InventarioClient;
+import com.Arka.MSCart.config.Plazo;
+import com.Arka.MSCart.dto.ConsultProductInventarioDto;
+import com.Arka.MSCart.exception.ProductoNoEncontradoException;
+import com.Arka.MSCart.model.CartDetail;
+import com.github.benmanes.caffeine.cache.AsyncCacheLoader;
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Caché de información de productos consultada en el Microservicio de Inventario
+ * Capa de Acceso a Datos - Caché
+ *
+ * Solo debe usarse para datos de presentación (nombre, descripción y precio) en las vistas del carrito.
+ * El stock almacenado puede estar desactualizado: las validaciones de stock consultan directamente InventarioClient.
+ *
+ * Las líneas del carrito guardan su propia presentación (snapshot) al agregarse; esta caché solo se consulta
+ * para las líneas que no la tienen.
+ *
+ * Las entradas se refrescan en segundo plano al superar el tiempo de refresco (se sirve el valor anterior
+ * mientras tanto) y se eliminan al superar el TTL o el tamaño máximo. Las consultas concurrentes
+ * de un mismo producto ausente comparten una única llamada al inventario.
+ *
+ * Cada producto consultado con éxito se recuerda además como último conocido durante ms.cache.productos.ultimoConocido.
+ * Si el inventario no responde (circuito abierto, bulkhead lleno, tiempo agotado) se sirve ese último valor
+ * en lugar del texto "no disponible", y se cuenta en ms.cart.fallback.servidos con origen=productos.
+ * Un producto que el inventario responde como inexistente (eliminado o desactivado) se quita de la caché y de los
+ * últimos conocidos, y queda fuera del resultado: el último valor conocido solo sustituye a una consulta fallida.
+ *
+ * Las cargas compartidas se ejecutan sin el contexto de ninguna petición: no reenvían X-Request-Timeout-Ms y solo
+ * las acotan los tiempos de ProteccionLlamadas. Cada llamador acota su propia espera a su plazo (Plazo.acotar) y,
+ * al agotarlo, recibe los últimos valores conocidos o PlazoVencidoException sin cancelar la carga.
+ */
+@Component
+public class ProductoInfoCache {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductoInfoCache.class);
+
+    private static final String NOMBRE_CACHE = "productos";
+
+    private final AsyncLoadingCache<Long, ConsultProductInventarioDto> cache;
+    private final Cache<Long, ConsultProductInventarioDto> ultimosConocidos;
+    private final Counter fallbacksServidos;
+
+    public ProductoInfoCache(InventarioClient inventarioClient,
+                             MeterRegistry meterRegistry,
+                             @Value("${ms.cache.productos.tamanoMaximo:10000}") long tamanoMaximo,
+                             @Value("${ms.cache.productos.ttl:10m}") Duration ttl,
+                             @Value("${ms.cache.productos.refresco:1m}") Duration refresco,
+                             @Value("${ms.cache.productos.ultimoConocido:24h}") Duration ultimoConocido) {
+        this.ultimosConocidos = Caffeine.newBuilder()
+                .maximumSize(tamanoMaximo)
+                .expireAfterWrite(ultimoConocido)
+                .build();
+        this.fallbacksServidos = meterRegistry.counter("ms.cart.fallback.servidos", "origen", NOMBRE_CACHE);
+
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(tamanoMaximo)
+                .expireAfterWrite(ttl)
+                .refreshAfterWrite(refresco)
+                .recordStats()
+                .buildAsync(new AsyncCacheLoader<Long, ConsultProductInventarioDto>() {
+                    @Override
+                    public CompletableFuture<? extends ConsultProductInventarioDto> asyncLoad(Long productoId, Executor executor) {
+                        return inventarioClient.consultarProducto(productoId)
+                                .doOnNext(producto -> ultimosConocidos.put(productoId, producto))
+                                .doOnError(ProductoNoEncontradoException.class, ex -> ultimosConocidos.invalidate(productoId))
+                                .toFuture();
+                    }
+
+                    // Un refresco fallido conserva el valor anterior; si el producto ya no existe se elimina la entrada
+                    @Override
+                    public CompletableFuture<? extends ConsultProductInventarioDto> asyncReload(
+                            Long productoId, ConsultProductInventarioDto anterior, Executor executor) {
+                        return inventarioClient.consultarProducto(productoId)
+                                .doOnNext(producto -> ultimosConocidos.put(productoId, producto))
+                                .onErrorResume(ProductoNoEncontradoException.class, ex -> {
+                                    ultimosConocidos.invalidate(productoId);
+                                    return Mono.empty();
+                                })
+                                .toFuture();
+                    }
+
+                    @Override
+                    public CompletableFuture<? extends Map<? extends Long, ? extends ConsultProductInventarioDto>> asyncLoadAll(
+                            Set<? extends Long> productoIds, Executor executor) {
+                        return inventarioClient.consultarProductos(Set.copyOf(productoIds))
+                                .doOnNext(encontrados -> {
+                                    ultimosConocidos.putAll(encontrados);
+                                    // Los productos ausentes de la respuesta no existen en el inventario
+                                    productoIds.stream()
+                                            .filter(productoId -> !encontrados.containsKey(productoId))
+                                            .forEach(ultimosConocidos::invalidate);
+                                })
+                                .toFuture();
+                    }
+                });
+
+        // Expone aciertos, fallos, desalojos y tamaño como métricas cache.* con la etiqueta cache=productos
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, NOMBRE_CACHE);
+    }
+
+    // Consulta la información de presentación de un producto, desde caché si está disponible
+    public Mono<ConsultProductInventarioDto> consultarProducto(Long productoId) {
+        return Plazo.acotar(Mono.fromFuture(() -> cache.get(productoId), true), "inventario")
+                // Un producto inexistente no se sustituye por su último valor conocido
+                .onErrorResume(ex -> !(ex instanceof ProductoNoEncontradoException), ex -> {
+                    ConsultProductInventarioDto conocido = ultimosConocidos.getIfPresent(productoId);
+                    if (conocido == null) {
+                        return Mono.error(ex);
+                    }
+                    log.debug("Inventario no disponible, se sirve el último valor conocido del producto {}: {}",
+                            productoId, ex.getMessage());
+                    fallbacksServidos.increment();
+                    return Mono.just(conocido);
+                });
+    }
+
+    // Consulta la información de presentación de varios productos; los no encontrados no aparecen en el mapa
+    public Mono<Map<Long, ConsultProductInventarioDto>> consultarProductos(Collection<Long> productoIds) {
+        return Plazo.acotar(Mono.fromFuture(() -> cache.getAll(productoIds), true), "inventario")
+                // Solo una consulta fallida se sustituye por los últimos valores conocidos
+                .onErrorResume(ex -> {
+                    Map<Long, ConsultProductInventarioDto> conocidos = ultimosConocidos(productoIds);
+                    if (conocidos.isEmpty()) {
+                        return Mono.error(ex);
+                    }
+                    log.debug("Inventario no disponible, se sirven los últimos valores conocidos: {}", ex.getMessage());
+                    return Mono.just(conocidos);
+                });
+    }
+
+    private Map<Long, ConsultProductInventarioDto> ultimosConocidos(Collection<Long> productoIds) {
+        Map<Long, ConsultProductInventarioDto> productos = new HashMap<>();
+        for (Long productoId : productoIds) {
+            ConsultProductInventarioDto conocido = ultimosConocidos.getIfPresent(productoId);
+            if (conocido != null) {
+                productos.put(productoId, conocido);
+                fallbacksServidos.increment();
+            }
+        }
+        return productos;
+    }
+
+    // Descarta la información almacenada de un producto
+    public void invalidar(Long productoId) {
+        cache.synchronous().invalidate(productoId);
+    }
+
+    // Presentación guardada en las líneas que tienen snapshot, por id de producto
+    public static Map<Long, ConsultProductInventarioDto> desdeSnapshots(Collection<CartDetail> detalles) {
+        Map<Long, ConsultProductInventarioDto> productos = new HashMap<>();
+        for (CartDetail detalle : detalles) {
+            if (detalle.tieneSnapshot()) {
+                // El stock no forma parte del snapshot
+                productos.put(detalle.getProductoId(), new ConsultProductInventarioDto(detalle.getNombreProducto(),
+                        detalle.getDescripcionProducto(), 0,
+                        detalle.getPrecioUnitario() != null ? detalle.getPrecioUnitario() : 0));
+            }
+        }
+        return productos;
+    }
+}
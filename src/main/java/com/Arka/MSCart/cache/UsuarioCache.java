@@ -0,0 +1,122 @@
+package com.Arka.MSCart.cache;
+
+import com.Arka.MSCart.client.AuthClient;
+import com.Arka.MSCart.config.Plazo;
+import com.Arka.MSCart.dto.AdminDto.ConsultUserInAuthDto;
+import com.Arka.MSCart.exception.UsuarioNoEncontradoException;
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.context.environment.EnvironmentChangeEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Caché de perfiles de usuario consultados en el Microservicio de Autenticación
+ * Capa de Acceso a Datos - Caché
+ *
+ * Los usuarios inexistentes se recuerdan durante un tiempo corto (caché negativa) para no volver
+ * a consultarlos en cada petición. Las consultas concurrentes de un mismo usuario comparten una única
+ * llamada. La caché se vacía cuando un refresco de configuración modifica propiedades ms.auth.*
+ *
+ * Los usuarios encontrados se recuerdan además como últimos conocidos durante ms.cache.usuarios.ultimoConocido.
+ * Si el servicio de autenticación no responde se sirve ese último valor y se cuenta en ms.cart.fallback.servidos
+ * con origen=usuarios.
+ *
+ * La carga compartida se ejecuta sin el contexto de ninguna petición: no reenvía X-Request-Timeout-Ms y solo la
+ * acotan los tiempos de ProteccionLlamadas. Cada llamador acota su propia espera a su plazo (Plazo.acotar); al
+ * agotarlo deja de esperar sin cancelar la carga, que sigue disponible para los demás.
+ */
+@Component
+public class UsuarioCache {
+
+    private static final Logger log = LoggerFactory.getLogger(UsuarioCache.class);
+
+    private static final String NOMBRE_CACHE = "usuarios";
+    private static final String PREFIJO_CONFIGURACION_AUTH = "ms.auth.";
+
+    private final AsyncLoadingCache<Long, Optional<ConsultUserInAuthDto>> cache;
+    private final Cache<Long, ConsultUserInAuthDto> ultimosConocidos;
+    private final Counter fallbacksServidos;
+
+    public UsuarioCache(AuthClient authClient,
+                        MeterRegistry meterRegistry,
+                        @Value("${ms.cache.usuarios.tamanoMaximo:10000}") long tamanoMaximo,
+                        @Value("${ms.cache.usuarios.ttl:5m}") Duration ttl,
+                        @Value("${ms.cache.usuarios.ttlNegativo:30s}") Duration ttlNegativo,
+                        @Value("${ms.cache.usuarios.ultimoConocido:24h}") Duration ultimoConocido) {
+        this.ultimosConocidos = Caffeine.newBuilder()
+                .maximumSize(tamanoMaximo)
+                .expireAfterWrite(ultimoConocido)
+                .build();
+        this.fallbacksServidos = meterRegistry.counter("ms.cart.fallback.servidos", "origen", NOMBRE_CACHE);
+
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(tamanoMaximo)
+                .expireAfter(Expiry.creating((Long userId, Optional<ConsultUserInAuthDto> usuario) ->
+                        usuario.isPresent() ? ttl : ttlNegativo))
+                .recordStats()
+                .buildAsync((userId, executor) -> authClient.consultarUsuario(userId)
+                        .doOnNext(usuario -> ultimosConocidos.put(userId, usuario))
+                        .map(Optional::of)
+                        // Usuario inexistente: se almacena como ausente para no consultarlo de nuevo
+                        .onErrorResume(UsuarioNoEncontradoException.class, ex -> Mono.just(Optional.empty()))
+                        .onErrorResume(WebClientResponseException.NotFound.class, ex -> Mono.just(Optional.empty()))
+                        .defaultIfEmpty(Optional.empty())
+                        .toFuture());
+
+        // Expone aciertos, fallos, desalojos y tamaño como métricas cache.* con la etiqueta cache=usuarios
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, NOMBRE_CACHE);
+        Gauge.builder("cache.hit.ratio", cache, c -> c.synchronous().stats().hitRate())
+                .tag("cache", NOMBRE_CACHE)
+                .description("Proporción de consultas de usuario servidas desde caché")
+                .register(meterRegistry);
+    }
+
+    // Consulta un usuario, desde caché si está disponible; un usuario inexistente produce UsuarioNoEncontradoException
+    public Mono<ConsultUserInAuthDto> consultarUsuario(Long userId) {
+        return Plazo.acotar(Mono.fromFuture(() -> cache.get(userId), true), "auth")
+                // Con el plazo agotado también se sirve el último valor conocido
+                .onErrorResume(ex -> {
+                    ConsultUserInAuthDto conocido = ultimosConocidos.getIfPresent(userId);
+                    if (conocido == null) {
+                        return Mono.error(ex);
+                    }
+                    log.debug("Autenticación no disponible, se sirve el último valor conocido del usuario {}: {}",
+                            userId, ex.getMessage());
+                    fallbacksServidos.increment();
+                    return Mono.just(Optional.of(conocido));
+                })
+                .flatMap(usuario -> usuario
+                        .map(Mono::just)
+                        .orElseGet(() -> Mono.error(UsuarioNoEncontradoException.conId(userId))));
+    }
+
+    // Descarta la información almacenada de un usuario
+    public void invalidar(Long userId) {
+        cache.synchronous().invalidate(userId);
+    }
+
+    // Vacía la caché cuando un refresco de configuración (Spring Cloud Bus) modifica propiedades del cliente de autenticación
+    @EventListener
+    public void alCambiarConfiguracion(EnvironmentChangeEvent event) {
+        boolean cambioAuth = event.getKeys().stream().anyMatch(clave -> clave.startsWith(PREFIJO_CONFIGURACION_AUTH));
+        if (cambioAuth) {
+            log.info("Configuración ms.auth.* actualizada, se vacía la caché de usuarios");
+            cache.synchronous().invalidateAll();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.Arka.MSCart.cache;
+
+import com.Arka.MSCart.config.Plazo;
+import com.Arka.MSCart.dto.CartWithProductsDto;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Lecturas del carrito en curso por usuario (single-flight)
+ * Capa de Acceso a Datos - Caché
+ *
+ * Las lecturas concurrentes del carrito de un mismo usuario comparten una única ejecución: la primera lectura
+ * consulta la base de datos y los microservicios, y las que llegan mientras está en curso reciben su mismo
+ * resultado (o su mismo error). Nada se guarda después de terminar: la siguiente lectura vuelve a consultar.
+ *
+ * Cada mutación del carrito invalida la lectura en curso de su usuario al terminar, de modo que una lectura
+ * iniciada después de una mutación nunca recibe un resultado anterior a ella.
+ *
+ * La lectura compartida se ejecuta con el contexto de la primera petición (traza) pero sin su plazo: como las cargas
+ * de UsuarioCache y ProductoInfoCache, solo la acotan los tiempos de ProteccionLlamadas. Cada petición, la primera
+ * y las que se unen, acota su propia espera a su plazo (Plazo.acotar) y, al agotarlo, falla con
+ * PlazoVencidoException sin cancelar la lectura de las demás. Las lecturas se cuentan
+ * en ms.cart.lectura.compartida con resultado=ejecutada o resultado=compartida; la proporción de compartidas es
+ * la fracción de lecturas deduplicadas. Se desactiva con ms.cart.vercarrito.compartirLecturas=false.
+ */
+@Component
+public class VistasCarritoEnCurso {
+
+    private static final String METRICA = "ms.cart.lectura.compartida";
+
+    private final ConcurrentMap<Long, Lectura> enCurso = new ConcurrentHashMap<>();
+    private final boolean habilitado;
+    private final Counter ejecutadas;
+    private final Counter compartidas;
+
+    public VistasCarritoEnCurso(MeterRegistry meterRegistry,
+                                @Value("${ms.cart.vercarrito.compartirLecturas:true}") boolean habilitado) {
+        this.habilitado = habilitado;
+        this.ejecutadas = Counter.builder(METRICA)
+                .tag("resultado", "ejecutada")
+                .description("Lecturas del carrito ejecutadas")
+                .register(meterRegistry);
+        this.compartidas = Counter.builder(METRICA)
+                .tag("resultado", "compartida")
+                .description("Lecturas del carrito servidas por una lectura en curso del mismo usuario")
+                .register(meterRegistry);
+    }
+
+    // Se une a la lectura en curso del usuario o, si no hay ninguna, ejecuta la lectura indicada y la comparte
+    public Mono<CartWithProductsDto> compartir(Long userId, Supplier<Mono<CartWithProductsDto>> lectura) {
+        if (!habilitado) {
+            return Mono.defer(lectura);
+        }
+        return Mono.defer(() -> {
+            Lectura nueva = new Lectura(userId, lectura);
+            Lectura existente = enCurso.putIfAbsent(userId, nueva);
+            if (existente != null) {
+                compartidas.increment();
+                return Plazo.acotar(existente.resultado, "carrito");
+            }
+            ejecutadas.increment();
+            return Plazo.acotar(nueva.resultado, "carrito");
+        });
+    }
+
+    // Descarta la lectura en curso del usuario; las lecturas ya unidas a ella reciben su resultado
+    public void invalidar(Long userId) {
+        enCurso.remove(userId);
+    }
+
+    private final class Lectura {
+
+        private final Mono<CartWithProductsDto> resultado;
+
+        private Lectura(Long userId, Supplier<Mono<CartWithProductsDto>> lectura) {
+            // Al terminar se retira solo a sí misma: una invalidación pudo haberla reemplazado por otra
+            // Sin el plazo de la primera petición: cada petición acota su espera con el suyo
+            this.resultado = Mono.defer(lectura)
+                    .doFinally(senal -> enCurso.remove(userId, this))
+                    .contextWrite(Plazo::quitarDe)
+                    .cache();
+        }
+    }
+}
@@ -1,57 +1,68 @@
 package com.Arka.MSCart.client;
 
+import com.Arka.MSCart.config.DownstreamWebClientFactory;
 import com.Arka.MSCart.dto.AdminDto.ConsultUserInAuthDto;
 import com.Arka.MSCart.exception.UsuarioNoEncontradoException;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cloud.context.config.annotation.RefreshScope;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
 import org.springframework.web.util.UriComponentsBuilder;
+import org.springframework.web.util.UriTemplate;
 import reactor.core.publisher.Mono;
-
-import java.net.URI;
+import reactor.netty.resources.ConnectionProvider;
 
 /**
  * Cliente para comunicación con el Microservicio de Autenticación
  * Capa de Acceso a Datos - Comunicación Externa
  *
- * @RefreshScope permite recargar valores de configuración sin reiniciar el servicio
+ * @RefreshScope permite recargar valores de configuración sin reiniciar el servicio.
+ * El WebClient, su pool de conexiones y la plantilla de URI se construyen una sola vez
+ * y solo se reconstruyen cuando un refresco de configuración recrea el bean.
  */
 @Component
 @RefreshScope
 public class AuthClient {
 
-    private final WebClient.Builder webClientBuilder;
-
-    @Value("${ms.auth.baseUri}")
-    private String authBaseUri;
+    private final ConnectionProvider pool;
+    private final WebClient webClient;
+    private final UriTemplate usuarioUriTemplate;
+    private final MedidorLlamadas medidor;
+    private final ProteccionLlamadas proteccion;
 
-    @Value("${ms.auth.uriPath}")
-    private String authUriPath;
-
-    public AuthClient(WebClient.Builder webClientBuilder) {
-        this.webClientBuilder = webClientBuilder;
-    }
+    public AuthClient(DownstreamWebClientFactory webClientFactory,
+                      @Value("${ms.auth.baseUri}") String authBaseUri,
+                      @Value("${ms.auth.uriPath}") String authUriPath) {
+        this.pool = webClientFactory.crearPool("auth");
+        this.webClient = webClientFactory.crearWebClient(pool);
+        this.medidor = webClientFactory.crearMedidor("auth");
+        this.proteccion = webClientFactory.crearProteccion("auth");
 
-    // Consultar usuario en el microservicio de autenticación por ID
-    public Mono<ConsultUserInAuthDto> consultarUsuario(Long userId) {
         String fullPath = authUriPath.contains("{") ? authUriPath : authUriPath + "/{id}";
-
-        URI uri = UriComponentsBuilder
+        this.usuarioUriTemplate = new UriTemplate(UriComponentsBuilder
                 .fromUriString(authBaseUri)
                 .path(fullPath)
-                .buildAndExpand(userId)
-                .toUri();
+                .build()
+                .toUriString());
+    }
 
-        return webClientBuilder.build()
+    // Consultar usuario en el microservicio de autenticación por ID
+    public Mono<ConsultUserInAuthDto> consultarUsuario(Long userId) {
+        return medidor.medir("consultarUsuario", proteccion.proteger(webClient
                 .get()
-                .uri(uri)
+                .uri(usuarioUriTemplate.expand(userId))
                 .retrieve()
                 .bodyToMono(ConsultUserInAuthDto.class)
                 .onErrorResume(WebClientResponseException.InternalServerError.class, ex ->
                         Mono.error(UsuarioNoEncontradoException.conId(userId))
-                );
+                )));
     }
-}
 
+    // Libera el pool de conexiones cuando el bean se destruye o se recrea por un refresco
+    @PreDestroy
+    void cerrarPool() {
+        pool.disposeLater().subscribe();
+    }
+}
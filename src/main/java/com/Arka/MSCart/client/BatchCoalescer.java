@@ -0,0 +1,131 @@
+package com.Arka.MSCart.client;
+
+import com.Arka.MSCart.config.Plazo;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Agrupa consultas individuales por clave que llegan dentro de una ventana corta
+ * en una sola consulta por lote, y reparte el resultado a cada llamador.
+ *
+ * Una clave pedida varias veces dentro de la misma ventana comparte el mismo resultado.
+ * Si el lote no contiene la clave, el Mono del llamador completa vacío.
+ *
+ * La consulta por lote se ejecuta con el contexto de Reactor del llamador que abrió el lote (observación padre de
+ * las trazas) y con el plazo más cercano de todos sus llamadores (Plazo), que se reenvía en X-Request-Timeout-Ms.
+ * Cada lote tiene su propio temporizador: si se envía antes por alcanzar el tamaño máximo, el temporizador se cancela.
+ */
+public final class BatchCoalescer<K, V> {
+
+    private final Function<Set<K>, Mono<Map<K, V>>> cargadorLote;
+    private final Duration ventana;
+    private final int tamanoMaximo;
+
+    private final Object lock = new Object();
+    private Lote<K, V> pendiente;
+
+    public BatchCoalescer(Function<Set<K>, Mono<Map<K, V>>> cargadorLote,
+                          Duration ventana,
+                          int tamanoMaximo) {
+        this.cargadorLote = cargadorLote;
+        this.ventana = ventana;
+        this.tamanoMaximo = Math.max(1, tamanoMaximo);
+    }
+
+    // Registra la clave en el lote en curso y retorna su resultado cuando el lote se resuelva
+    public Mono<V> cargar(K clave) {
+        return Mono.deferContextual(contexto -> {
+            Sinks.One<V> sink;
+            Lote<K, V> loteCompleto = null;
+
+            synchronized (lock) {
+                if (pendiente == null) {
+                    pendiente = new Lote<>(contexto);
+                }
+                Lote<K, V> lote = pendiente;
+                lote.unirPlazo(contexto);
+                sink = lote.sinks.computeIfAbsent(clave, k -> Sinks.one());
+
+                if (lote.sinks.size() >= tamanoMaximo) {
+                    // El lote alcanzó su tamaño máximo: se envía de inmediato y su temporizador ya no aplica
+                    loteCompleto = lote;
+                    pendiente = null;
+                    if (lote.temporizador != null) {
+                        lote.temporizador.dispose();
+                    }
+                } else if (lote.temporizador == null) {
+                    lote.temporizador = Schedulers.parallel()
+                            .schedule(() -> enviarAlVencer(lote), ventana.toNanos(), TimeUnit.NANOSECONDS);
+                }
+            }
+
+            if (loteCompleto != null) {
+                enviar(loteCompleto);
+            }
+            return sink.asMono();
+        });
+    }
+
+    // Envía el lote al vencer su ventana, si no se envió antes por tamaño
+    private void enviarAlVencer(Lote<K, V> lote) {
+        synchronized (lock) {
+            if (pendiente != lote) {
+                return;
+            }
+            pendiente = null;
+        }
+        enviar(lote);
+    }
+
+    // Ejecuta la consulta por lote y reparte cada valor a su llamador
+    private void enviar(Lote<K, V> lote) {
+        Mono.defer(() -> cargadorLote.apply(new LinkedHashSet<>(lote.sinks.keySet())))
+                .defaultIfEmpty(Map.of())
+                .contextWrite(lote::contexto)
+                .subscribe(
+                        resultado -> lote.sinks.forEach((clave, sink) -> {
+                            V valor = resultado.get(clave);
+                            if (valor != null) {
+                                sink.tryEmitValue(valor);
+                            } else {
+                                sink.tryEmitEmpty();
+                            }
+                        }),
+                        error -> lote.sinks.values().forEach(sink -> sink.tryEmitError(error))
+                );
+    }
+
+    // Llamadores de un lote, su temporizador y el contexto con el que se consulta; se modifica bajo el lock
+    private static final class Lote<K, V> {
+
+        private final Map<K, Sinks.One<V>> sinks = new HashMap<>();
+        private final ContextView contextoInicial;
+        private Plazo plazo;
+        private Disposable temporizador;
+
+        private Lote(ContextView contextoInicial) {
+            this.contextoInicial = contextoInicial;
+        }
+
+        private void unirPlazo(ContextView contexto) {
+            Plazo.delContexto(contexto).ifPresent(otro -> plazo = plazo == null ? otro : plazo.masCercano(otro));
+        }
+
+        private Context contexto(Context contexto) {
+            Context conLlamador = contexto.putAll(contextoInicial);
+            return plazo == null ? conLlamador : plazo.guardarEn(conLlamador);
+        }
+    }
+}
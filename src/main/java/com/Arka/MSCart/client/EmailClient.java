@@ -0,0 +1,62 @@
+package com.Arka.MSCart.client;
+
+import com.Arka.MSCart.config.DownstreamWebClientFactory;
+import com.Arka.MSCart.dto.notificationDto.EmailRequest;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.context.config.annotation.RefreshScope;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.net.URI;
+
+/**
+ * Cliente para comunicación con la función Lambda de envío de emails
+ * Capa de Acceso a Datos - Comunicación Externa
+ *
+ * @RefreshScope permite recargar valores de configuración sin reiniciar el servicio.
+ * La Lambda no está registrada en Eureka, por lo que se usa un WebClient sin balanceo de carga.
+ */
+@Component
+@RefreshScope
+public class EmailClient {
+
+    private static final String CABECERA_IDEMPOTENCIA = "Idempotency-Key";
+
+    private final ConnectionProvider pool;
+    private final WebClient webClient;
+    private final URI lambdaEmailUri;
+    private final MedidorLlamadas medidor;
+
+    public EmailClient(DownstreamWebClientFactory webClientFactory,
+                       @Value("${lambda.email.url}") String lambdaEmailUrl) {
+        this.pool = webClientFactory.crearPool("email");
+        this.webClient = webClientFactory.crearWebClientExterno(pool);
+        this.medidor = webClientFactory.crearMedidor("email");
+        this.lambdaEmailUri = URI.create(lambdaEmailUrl);
+    }
+
+    /**
+     * Envía un email a la Lambda, con su clave en la cabecera Idempotency-Key para que la Lambda descarte
+     * las entregas repetidas. La Lambda recibe un email por petición: no expone un endpoint por lote.
+     * Completa solo cuando la Lambda confirma la recepción (respuesta 2xx).
+     */
+    public Mono<Void> enviar(EmailRequest email, String claveIdempotencia) {
+        return medidor.medir("enviar", webClient
+                .post()
+                .uri(lambdaEmailUri)
+                .header(CABECERA_IDEMPOTENCIA, claveIdempotencia)
+                .bodyValue(email)
+                .retrieve()
+                .toBodilessEntity()
+                .then());
+    }
+
+    // Libera el pool de conexiones cuando el bean se destruye o se recrea por un refresco
+    @PreDestroy
+    void cerrarPool() {
+        pool.disposeLater().subscribe();
+    }
+}
@@ -1,57 +1,203 @@
 package com.Arka.MSCart.client;
 
+import com.Arka.MSCart.config.DownstreamWebClientFactory;
 import com.Arka.MSCart.dto.ConsultProductInventarioDto;
 import com.Arka.MSCart.exception.ProductoNoEncontradoException;
+import com.Arka.MSCart.exception.ServicioExternoException;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.observation.contextpropagation.ObservationThreadLocalAccessor;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cloud.context.config.annotation.RefreshScope;
+import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
 import org.springframework.web.util.UriComponentsBuilder;
+import org.springframework.web.util.UriTemplate;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.netty.resources.ConnectionProvider;
 
 import java.net.URI;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Cliente para comunicación con el Microservicio de Inventario
  * Capa de Acceso a Datos - Comunicación Externa
  *
- * @RefreshScope permite recargar valores de configuración sin reiniciar el servicio
+ * @RefreshScope permite recargar valores de configuración sin reiniciar el servicio.
+ * El WebClient, su pool de conexiones y las plantillas de URI se construyen una sola vez
+ * y solo se reconstruyen cuando un refresco de configuración recrea el bean.
+ *
+ * Sin ms.inventario.batchUriPath (valor por defecto) no hay consultas por lote ni agrupación: cada producto es una
+ * petición individual al inventario, hasta ms.inventario.concurrenciaMaxima en paralelo. Con el endpoint por lote
+ * configurado, las consultas concurrentes se agrupan en un único POST (BatchCoalescer).
+ *
+ * Cada consulta de varios productos abre la observación ms.cart.inventario.fanout; en las trazas es el span padre
+ * de las peticiones al inventario y registra en el atributo productos el ancho del fan-out.
  */
 @Component
 @RefreshScope
 public class InventarioClient {
 
-    private final WebClient.Builder webClientBuilder;
+    private static final Logger log = LoggerFactory.getLogger(InventarioClient.class);
+
+    private static final String OBSERVACION_FANOUT = "ms.cart.inventario.fanout";
+
+    private static final ParameterizedTypeReference<Map<Long, ConsultProductInventarioDto>> MAPA_PRODUCTOS =
+            new ParameterizedTypeReference<>() {};
+
+    private final ConnectionProvider pool;
+    private final WebClient webClient;
+    private final UriTemplate productoUriTemplate;
+    private final URI loteUri;
+
+    // Concurrencia máxima de consultas individuales cuando no hay endpoint por lote
+    private final int concurrenciaMaxima;
+
+    private final BatchCoalescer<Long, ConsultProductInventarioDto> coalescer;
+    private final MedidorLlamadas medidor;
+    private final ProteccionLlamadas proteccion;
+    private final ObservationRegistry observationRegistry;
 
-    @Value("${ms.inventario.baseUri}")
-    private String baseUri;
+    /**
+     * @param batchUriPath  ruta del endpoint de consulta por lote; vacía por defecto: sin lotes ni agrupación,
+     *                      los productos se consultan uno a uno
+     * @param ventanaLoteMs ventana en milisegundos durante la cual se agrupan consultas individuales en un lote
+     * @param tamanoMaximoLote número máximo de productos por consulta por lote
+     */
+    public InventarioClient(DownstreamWebClientFactory webClientFactory,
+                            @Value("${ms.inventario.baseUri}") String baseUri,
+                            @Value("${ms.inventario.uriPath}") String uriPath,
+                            @Value("${ms.inventario.batchUriPath:}") String batchUriPath,
+                            @Value("${ms.inventario.batch.ventanaMs:5}") long ventanaLoteMs,
+                            @Value("${ms.inventario.batch.tamanoMaximo:100}") int tamanoMaximoLote,
+                            @Value("${ms.inventario.concurrenciaMaxima:16}") int concurrenciaMaxima,
+                            ObservationRegistry observationRegistry) {
+        this.pool = webClientFactory.crearPool("inventario");
+        this.webClient = webClientFactory.crearWebClient(pool);
+        this.medidor = webClientFactory.crearMedidor("inventario");
+        this.proteccion = webClientFactory.crearProteccion("inventario");
+        this.concurrenciaMaxima = concurrenciaMaxima;
+        this.observationRegistry = observationRegistry;
 
-    @Value("${ms.inventario.uriPath}")
-    private String uriPath;
+        String fullPath = uriPath.contains("{") ? uriPath : uriPath + "/{id}";
+        this.productoUriTemplate = new UriTemplate(UriComponentsBuilder
+                .fromUriString(baseUri)
+                .path(fullPath)
+                .build()
+                .toUriString());
 
-    public InventarioClient(WebClient.Builder webClientBuilder) {
-        this.webClientBuilder = webClientBuilder;
+        this.loteUri = batchUriPath == null || batchUriPath.isBlank()
+                ? null
+                : UriComponentsBuilder.fromUriString(baseUri).path(batchUriPath).build().toUri();
+        this.coalescer = new BatchCoalescer<>(this::consultarLote, Duration.ofMillis(ventanaLoteMs), tamanoMaximoLote);
+        if (loteUri == null) {
+            log.info("ms.inventario.batchUriPath no configurado: los productos se consultan al inventario uno a uno");
+        }
     }
 
     // Consultar un producto en el inventario por su ID
     public Mono<ConsultProductInventarioDto> consultarProducto(Long productoId) {
-        String fullPath = uriPath.contains("{") ? uriPath : uriPath + "/{id}";
+        if (!loteHabilitado()) {
+            return consultarProductoIndividual(productoId);
+        }
+        // Las consultas concurrentes dentro de la ventana viajan en un único lote
+        return coalescer.cargar(productoId)
+                .switchIfEmpty(Mono.error(() -> ProductoNoEncontradoException.enInventario(productoId)));
+    }
 
-        URI uri = UriComponentsBuilder
-                .fromUriString(baseUri)
-                .path(fullPath)
-                .buildAndExpand(productoId)
-                .toUri();
+    /**
+     * Consulta varios productos en el inventario.
+     * Retorna un mapa productoId -> producto; los productos no encontrados no aparecen en el mapa.
+     * Cualquier otro error (inventario caído, circuito abierto, tiempo o plazo agotado) se propaga al llamador,
+     * tanto en la consulta por lote como en las consultas individuales.
+     */
+    public Mono<Map<Long, ConsultProductInventarioDto>> consultarProductos(Collection<Long> productoIds) {
+        Set<Long> ids = new LinkedHashSet<>(productoIds);
+        if (ids.isEmpty()) {
+            return Mono.just(Map.of());
+        }
 
-        return webClientBuilder.build()
+        Flux<Map.Entry<Long, ConsultProductInventarioDto>> productos = loteHabilitado()
+                ? Flux.fromIterable(ids)
+                        .flatMap(id -> coalescer.cargar(id).map(producto -> Map.entry(id, producto)))
+                : Flux.fromIterable(ids)
+                        .flatMap(id -> consultarProductoIndividual(id)
+                                .map(producto -> Map.entry(id, producto))
+                                // Solo se omiten los productos inexistentes; cualquier otro error falla la consulta
+                                .onErrorResume(ProductoNoEncontradoException.class, ex -> Mono.empty()),
+                                concurrenciaMaxima);
+
+        return observarFanout(productos.collectMap(Map.Entry::getKey, Map.Entry::getValue), ids.size());
+    }
+
+    /**
+     * Envuelve la consulta en la observación del fan-out, hija de la observación vigente en el contexto de Reactor.
+     * El número de productos va como atributo de alta cardinalidad: aparece en el span pero no en las métricas.
+     */
+    private Mono<Map<Long, ConsultProductInventarioDto>> observarFanout(Mono<Map<Long, ConsultProductInventarioDto>> consulta,
+                                                                      int productos) {
+        return Mono.deferContextual(contexto -> {
+            Observation observacion = Observation.createNotStarted(OBSERVACION_FANOUT, observationRegistry)
+                    .contextualName("inventario fan-out")
+                    .parentObservation(contexto.getOrDefault(ObservationThreadLocalAccessor.KEY, null))
+                    .lowCardinalityKeyValue("modo", loteHabilitado() ? "lote" : "individual")
+                    .highCardinalityKeyValue("productos", String.valueOf(productos))
+                    .start();
+
+            return consulta
+                    .doOnNext(encontrados -> observacion.highCardinalityKeyValue("encontrados", String.valueOf(encontrados.size())))
+                    .doOnError(observacion::error)
+                    .doFinally(senal -> observacion.stop())
+                    .contextWrite(ctx -> ctx.put(ObservationThreadLocalAccessor.KEY, observacion));
+        });
+    }
+
+    private boolean loteHabilitado() {
+        return loteUri != null;
+    }
+
+    private Mono<ConsultProductInventarioDto> consultarProductoIndividual(Long productoId) {
+        return medidor.medir("consultarProducto", proteccion.proteger(webClient
                 .get()
-                .uri(uri)
+                .uri(productoUriTemplate.expand(productoId))
                 .retrieve()
                 .bodyToMono(ConsultProductInventarioDto.class)
                 .onErrorResume(WebClientResponseException.InternalServerError.class, ex ->
                         Mono.error(ProductoNoEncontradoException.enInventario(productoId))
-                );
+                ))
+                // Fuera del circuit breaker, que ignora los 404 por su tipo; las demás respuestas de error son 503
+                .onErrorMap(WebClientResponseException.class, ex -> ServicioExternoException.conCausa("inventario", ex)));
+    }
+
+    // Libera el pool de conexiones cuando el bean se destruye o se recrea por un refresco
+    @PreDestroy
+    void cerrarPool() {
+        pool.disposeLater().subscribe();
     }
-}
 
+    /**
+     * Consulta por lote: POST con la lista de IDs; el inventario responde un objeto JSON
+     * cuyas claves son los IDs encontrados y cuyos valores son los productos.
+     */
+    private Mono<Map<Long, ConsultProductInventarioDto>> consultarLote(Set<Long> productoIds) {
+        return medidor.medir("consultarLote", proteccion.proteger(webClient
+                .post()
+                .uri(loteUri)
+                .bodyValue(productoIds)
+                .retrieve()
+                .bodyToMono(MAPA_PRODUCTOS)
+                .onErrorMap(WebClientResponseException.class, ex ->
+                        ServicioExternoException.conCausa("inventario", ex)
+                )));
+    }
+}
@@ -0,0 +1,41 @@
+package com.Arka.MSCart.client;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import reactor.core.publisher.Mono;
+
+/**
+ * Mide las llamadas de un cliente a su microservicio
+ * Capa de Acceso a Datos - Comunicación Externa
+ *
+ * Registra el timer ms.cart.cliente.llamada con las etiquetas cliente, operacion y resultado
+ * (exito, vacio, cancelado o el nombre simple de la excepción). Ninguna etiqueta depende del usuario
+ * o del producto consultado, de modo que el número de series es fijo.
+ */
+public final class MedidorLlamadas {
+
+    public static final String METRICA = "ms.cart.cliente.llamada";
+
+    private final MeterRegistry meterRegistry;
+    private final String cliente;
+
+    public MedidorLlamadas(MeterRegistry meterRegistry, String cliente) {
+        this.meterRegistry = meterRegistry;
+        this.cliente = cliente;
+    }
+
+    // Mide cada suscripción a la llamada, desde que se suscribe hasta que termina
+    public <T> Mono<T> medir(String operacion, Mono<T> llamada) {
+        return Mono.defer(() -> {
+            Timer.Sample inicio = Timer.start(meterRegistry);
+            return llamada
+                    .doOnSuccess(valor -> registrar(inicio, operacion, valor == null ? "vacio" : "exito"))
+                    .doOnError(ex -> registrar(inicio, operacion, ex.getClass().getSimpleName()))
+                    .doOnCancel(() -> registrar(inicio, operacion, "cancelado"));
+        });
+    }
+
+    private void registrar(Timer.Sample inicio, String operacion, String resultado) {
+        inicio.stop(meterRegistry.timer(METRICA, "cliente", cliente, "operacion", operacion, "resultado", resultado));
+    }
+}
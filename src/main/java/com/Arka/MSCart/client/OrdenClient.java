@@ -1,49 +1,64 @@
 package com.Arka.MSCart.client;
 
+import com.Arka.MSCart.config.DownstreamWebClientFactory;
 import com.Arka.MSCart.dto.orden.NewOrdenDto;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cloud.context.config.annotation.RefreshScope;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.util.UriComponentsBuilder;
 import reactor.core.publisher.Mono;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.net.URI;
 
 /**
  * Cliente para comunicación con el Microservicio de Órdenes
  * Capa de Acceso a Datos - Comunicación Externa
  *
- * @RefreshScope permite recargar valores de configuración sin reiniciar el servicio
+ * @RefreshScope permite recargar valores de configuración sin reiniciar el servicio.
+ * El WebClient, su pool de conexiones y la URI se construyen una sola vez
+ * y solo se reconstruyen cuando un refresco de configuración recrea el bean.
  */
 @Component
 @RefreshScope
 public class OrdenClient {
 
-    private final WebClient.Builder webClientBuilder;
-
-    @Value("${ms.orden.baseUri}")
-    private String baseUriOrden;
-
-    @Value("${ms.orden.uriPath}")
-    private String uriPathOrden;
+    private final ConnectionProvider pool;
+    private final WebClient webClient;
+    private final URI ordenUri;
+    private final MedidorLlamadas medidor;
+    private final ProteccionLlamadas proteccion;
 
-    public OrdenClient(WebClient.Builder webClientBuilder) {
-        this.webClientBuilder = webClientBuilder;
+    public OrdenClient(DownstreamWebClientFactory webClientFactory,
+                       @Value("${ms.orden.baseUri}") String baseUriOrden,
+                       @Value("${ms.orden.uriPath}") String uriPathOrden) {
+        this.pool = webClientFactory.crearPool("orden");
+        this.webClient = webClientFactory.crearWebClient(pool);
+        this.medidor = webClientFactory.crearMedidor("orden");
+        this.proteccion = webClientFactory.crearProteccion("orden");
+        this.ordenUri = UriComponentsBuilder
+                .fromUriString(baseUriOrden)
+                .path(uriPathOrden)
+                .build()
+                .toUri();
     }
 
     // Crear una nueva orden en el microservicio de órdenes
     public Mono<Void> crearOrden(NewOrdenDto newOrdenDto) {
-        String uriString = UriComponentsBuilder
-                .fromUriString(baseUriOrden)
-                .path(uriPathOrden)
-                .toUriString();
-
-        return webClientBuilder.build()
+        return medidor.medir("crearOrden", proteccion.proteger(webClient
                 .post()
-                .uri(uriString)
+                .uri(ordenUri)
                 .bodyValue(newOrdenDto)
                 .retrieve()
                 .bodyToMono(Void.class)
-                .doOnError(ex -> System.err.println("Error conectando MSOrden: " + ex.getMessage()));
+                .doOnError(ex -> System.err.println("Error conectando MSOrden: " + ex.getMessage()))));
     }
-}
 
+    // Libera el pool de conexiones cuando el bean se destruye o se recrea por un refresco
+    @PreDestroy
+    void cerrarPool() {
+        pool.disposeLater().subscribe();
+    }
+}
@@ -0,0 +1,65 @@
+package com.Arka.MSCart.client;
+
+import com.Arka.MSCart.config.Plazo;
+import com.Arka.MSCart.exception.ServicioExternoException;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.reactor.bulkhead.operator.BulkheadOperator;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import io.github.resilience4j.reactor.timelimiter.TimeLimiterOperator;
+import io.github.resilience4j.timelimiter.TimeLimiter;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Protege las llamadas de un cliente a su microservicio
+ * Capa de Acceso a Datos - Comunicación Externa
+ *
+ * Cada llamada pasa, de dentro hacia fuera, por un bulkhead (llamadas concurrentes máximas), un límite de tiempo
+ * y un circuit breaker. Con el circuito abierto, el bulkhead lleno o el tiempo agotado la llamada falla de inmediato
+ * con ServicioExternoException (503), sin ocupar conexiones del pool; los llamadores con datos conocidos
+ * (cachés y snapshots) sirven esos datos en su lugar.
+ *
+ * Las instancias se configuran con resilience4j.circuitbreaker|bulkhead|timelimiter.instances.<cliente> y publican
+ * sus métricas (estado del circuito, llamadas rechazadas, permisos disponibles) como resilience4j.*
+ * Las excepciones de "no encontrado" que los clientes lanzan dentro de la llamada protegida deben figurar en
+ * ignore-exceptions para no abrir el circuito.
+ *
+ * Si el contexto de Reactor lleva el plazo de la petición (Plazo), la llamada completa se acota al tiempo restante
+ * y falla con PlazoVencidoException (504) al agotarlo; con el plazo ya vencido la llamada no se realiza. El timeout
+ * del plazo queda fuera del circuit breaker: agotar el presupuesto del llamador no cuenta como fallo del servicio.
+ */
+public final class ProteccionLlamadas {
+
+    private final String cliente;
+    private final CircuitBreaker circuitBreaker;
+    private final Bulkhead bulkhead;
+    private final TimeLimiter timeLimiter;
+
+    public ProteccionLlamadas(String cliente, CircuitBreaker circuitBreaker, Bulkhead bulkhead, TimeLimiter timeLimiter) {
+        this.cliente = cliente;
+        this.circuitBreaker = circuitBreaker;
+        this.bulkhead = bulkhead;
+        this.timeLimiter = timeLimiter;
+    }
+
+    public <T> Mono<T> proteger(Mono<T> llamada) {
+        Mono<T> protegida = llamada
+                .transformDeferred(BulkheadOperator.of(bulkhead))
+                .transformDeferred(TimeLimiterOperator.of(timeLimiter))
+                // El circuit breaker registra los rechazos del bulkhead y los tiempos agotados como fallos
+                .transformDeferred(CircuitBreakerOperator.of(circuitBreaker))
+                .onErrorMap(ProteccionLlamadas::esRechazo, ex -> ServicioExternoException.noDisponible(cliente));
+
+        return Plazo.acotar(protegida, cliente);
+    }
+
+    private static boolean esRechazo(Throwable ex) {
+        return ex instanceof CallNotPermittedException
+                || ex instanceof BulkheadFullException
+                || ex instanceof TimeoutException;
+    }
+}
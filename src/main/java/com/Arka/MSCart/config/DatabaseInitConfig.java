@@ -0,0 +1,47 @@
+package com.Arka.MSCart.config;
+
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.configuration.FluentConfiguration;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+/**
+ * Configuración de inicialización del esquema de base de datos
+ * Capa de Configuración - Persistencia
+ *
+ * Aplica las migraciones de db/migration con Flyway al iniciar. Solo se activa con ms.cart.db.inicializar=true
+ * (desarrollo local y prueba de carga): en producción las migraciones se aplican una sola vez como paso del
+ * despliegue (mvn flyway:migrate) y las réplicas arrancan sin ejecutar DDL.
+ */
+@Configuration
+@ConditionalOnProperty(name = "ms.cart.db.inicializar", havingValue = "true")
+public class DatabaseInitConfig {
+
+    // Con R2DBC no se crea un DataSource: Flyway se conecta por JDBC con spring.datasource.*
+    @Bean(initMethod = "migrate")
+    public Flyway cartFlyway(@Value("${spring.datasource.url}") String url,
+                             @Value("${spring.datasource.username:}") String usuario,
+                             @Value("${spring.datasource.password:}") String clave) {
+        return migraciones(Flyway.configure().dataSource(url, usuario, clave));
+    }
+
+    public static Flyway migraciones(DataSource dataSource) {
+        return migraciones(Flyway.configure().dataSource(dataSource));
+    }
+
+    // Bases creadas antes de las migraciones: se toman como versión 0 y V1 (idempotente) se aplica sobre ellas
+    private static Flyway migraciones(FluentConfiguration configuracion) {
+        return configuracion
+                .locations("classpath:db/migration")
+                .baselineOnMigrate(true)
+                .baselineVersion("0")
+                // CREATE INDEX CONCURRENTLY espera a las transacciones abiertas, incluida la del bloqueo de Flyway
+                .configuration(Map.of("flyway.postgresql.transactional.lock", "false"))
+                .load();
+    }
+}
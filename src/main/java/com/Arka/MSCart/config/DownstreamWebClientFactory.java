@@ -0,0 +1,121 @@
+package com.Arka.MSCart.config;
+
+import com.Arka.MSCart.client.MedidorLlamadas;
+import com.Arka.MSCart.client.ProteccionLlamadas;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.timelimiter.TimeLimiterRegistry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.netty.channel.ChannelOption;
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.core.env.Environment;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+
+/**
+ * Construye los WebClient de larga duración de cada microservicio externo (auth, inventario, orden, email)
+ * Capa de Configuración - Comunicación Externa
+ *
+ * Cada microservicio tiene su propio pool de conexiones configurable con las propiedades ms.<nombre>.pool.*
+ * Las métricas del pool (conexiones activas, inactivas y pendientes) se publican en Micrometer
+ * como reactor.netty.connection.provider.* con la etiqueta name=<nombre>.
+ * Cada petición se registra además en http.client.requests; sin plantilla de URI la etiqueta uri
+ * queda en "none", así que las series se distinguen por client.name y no crecen con los ids consultados.
+ *
+ * Cada conexión tiene un timeout de conexión (ms.<nombre>.timeout.conexion) y de respuesta (ms.<nombre>.timeout.respuesta),
+ * que acotan las llamadas aunque la petición no tenga plazo. Las peticiones reenvían el plazo restante (Plazo).
+ */
+@Component
+public class DownstreamWebClientFactory {
+
+    private static final int MAX_CONEXIONES_DEFECTO = 100;
+    private static final int MAX_PENDIENTES_DEFECTO = 500;
+    private static final Duration MAX_INACTIVIDAD_DEFECTO = Duration.ofSeconds(30);
+    private static final Duration DESALOJO_DEFECTO = Duration.ofSeconds(30);
+    private static final Duration TIMEOUT_CONEXION_DEFECTO = Duration.ofSeconds(1);
+    private static final Duration TIMEOUT_RESPUESTA_DEFECTO = Duration.ofSeconds(5);
+
+    private final WebClient.Builder webClientBuilder;
+    private final Environment environment;
+    private final MeterRegistry meterRegistry;
+    private final ObservationRegistry observationRegistry;
+    private final CircuitBreakerRegistry circuitBreakerRegistry;
+    private final BulkheadRegistry bulkheadRegistry;
+    private final TimeLimiterRegistry timeLimiterRegistry;
+
+    public DownstreamWebClientFactory(WebClient.Builder webClientBuilder,
+                                      Environment environment,
+                                      MeterRegistry meterRegistry,
+                                      ObservationRegistry observationRegistry,
+                                      CircuitBreakerRegistry circuitBreakerRegistry,
+                                      BulkheadRegistry bulkheadRegistry,
+                                      TimeLimiterRegistry timeLimiterRegistry) {
+        this.webClientBuilder = webClientBuilder;
+        this.environment = environment;
+        this.meterRegistry = meterRegistry;
+        this.observationRegistry = observationRegistry;
+        this.circuitBreakerRegistry = circuitBreakerRegistry;
+        this.bulkheadRegistry = bulkheadRegistry;
+        this.timeLimiterRegistry = timeLimiterRegistry;
+    }
+
+    // Crea el pool de conexiones del microservicio indicado según sus propiedades ms.<nombre>.pool.*
+    public ConnectionProvider crearPool(String nombre) {
+        String prefijo = "ms." + nombre + ".pool.";
+
+        return ConnectionProvider.builder(nombre)
+                .maxConnections(environment.getProperty(prefijo + "maxConexiones", Integer.class, MAX_CONEXIONES_DEFECTO))
+                .pendingAcquireMaxCount(environment.getProperty(prefijo + "maxPendientes", Integer.class, MAX_PENDIENTES_DEFECTO))
+                .maxIdleTime(environment.getProperty(prefijo + "maxInactividad", Duration.class, MAX_INACTIVIDAD_DEFECTO))
+                .evictInBackground(environment.getProperty(prefijo + "desalojo", Duration.class, DESALOJO_DEFECTO))
+                .metrics(true)
+                .build();
+    }
+
+    // Crea un WebClient con balanceo de carga que reutiliza el pool indicado y mantiene las conexiones abiertas
+    public WebClient crearWebClient(ConnectionProvider pool) {
+        return webClientBuilder.clone()
+                .clientConnector(crearConector(pool))
+                .filter(Plazo.propagar())
+                .build();
+    }
+
+    // Crea un WebClient sin balanceo de carga, para servicios externos que no están registrados en Eureka
+    public WebClient crearWebClientExterno(ConnectionProvider pool) {
+        return WebClient.builder()
+                .observationRegistry(observationRegistry)
+                .clientConnector(crearConector(pool))
+                .filter(Plazo.propagar())
+                .build();
+    }
+
+    // Crea el medidor de las llamadas del microservicio indicado (timer ms.cart.cliente.llamada con cliente=<nombre>)
+    public MedidorLlamadas crearMedidor(String nombre) {
+        return new MedidorLlamadas(meterRegistry, nombre);
+    }
+
+    // Crea la protección del microservicio indicado con sus instancias resilience4j.*.instances.<nombre>
+    public ProteccionLlamadas crearProteccion(String nombre) {
+        return new ProteccionLlamadas(nombre,
+                circuitBreakerRegistry.circuitBreaker(nombre),
+                bulkheadRegistry.bulkhead(nombre),
+                timeLimiterRegistry.timeLimiter(nombre));
+    }
+
+    private ReactorClientHttpConnector crearConector(ConnectionProvider pool) {
+        // El nombre del pool es el del microservicio
+        String prefijo = "ms." + pool.name() + ".timeout.";
+        Duration timeoutConexion = environment.getProperty(prefijo + "conexion", Duration.class, TIMEOUT_CONEXION_DEFECTO);
+
+        HttpClient httpClient = HttpClient.create(pool)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) timeoutConexion.toMillis())
+                .responseTimeout(environment.getProperty(prefijo + "respuesta", Duration.class, TIMEOUT_RESPUESTA_DEFECTO))
+                .keepAlive(true);
+        return new ReactorClientHttpConnector(httpClient);
+    }
+}
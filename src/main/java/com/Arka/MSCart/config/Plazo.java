@@ -0,0 +1,77 @@
+package com.Arka.MSCart.config;
+
+import com.Arka.MSCart.exception.PlazoVencidoException;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Plazo (deadline) de la petición en curso
+ * Capa de Configuración - Comunicación Externa
+ *
+ * PlazoWebFilter lo fija al recibir la petición y lo guarda en el contexto de Reactor; los clientes de los
+ * microservicios lo leen para usar el tiempo restante como timeout de cada llamada y lo reenvían en la cabecera
+ * X-Request-Timeout-Ms (milisegundos restantes). Se reenvía el tiempo restante y no una hora absoluta para no
+ * depender de que los relojes de los servicios estén sincronizados.
+ */
+public record Plazo(long venceEnNanos) {
+
+    public static final String CABECERA = "X-Request-Timeout-Ms";
+
+    private static final Object CLAVE = Plazo.class;
+
+    // Plazo que vence cuando transcurre el presupuesto indicado a partir de ahora
+    public static Plazo desde(Duration presupuesto) {
+        return new Plazo(System.nanoTime() + presupuesto.toNanos());
+    }
+
+    public Duration restante() {
+        return Duration.ofNanos(Math.max(0, venceEnNanos - System.nanoTime()));
+    }
+
+    public boolean vencido() {
+        return venceEnNanos - System.nanoTime() <= 0;
+    }
+
+    // El que vence antes de los dos plazos
+    public Plazo masCercano(Plazo otro) {
+        return otro.venceEnNanos - venceEnNanos < 0 ? otro : this;
+    }
+
+    public Context guardarEn(Context contexto) {
+        return contexto.put(CLAVE, this);
+    }
+
+    // Retira el plazo del contexto, para operaciones compartidas que no deben acotarse al plazo de una sola petición
+    public static Context quitarDe(Context contexto) {
+        return contexto.delete(CLAVE);
+    }
+
+    public static Optional<Plazo> delContexto(ContextView contexto) {
+        return contexto.getOrEmpty(CLAVE);
+    }
+
+    // Acota la espera de la operación al tiempo restante del plazo del contexto: al agotarlo, o si ya estaba vencido,
+    // falla con PlazoVencidoException; sin plazo en el contexto la operación no cambia
+    public static <T> Mono<T> acotar(Mono<T> operacion, String servicio) {
+        return Mono.deferContextual(contexto -> delContexto(contexto)
+                .map(plazo -> plazo.vencido()
+                        ? Mono.<T>error(PlazoVencidoException.enLlamada(servicio))
+                        : operacion.timeout(plazo.restante(), Mono.error(() -> PlazoVencidoException.enLlamada(servicio))))
+                .orElse(operacion));
+    }
+
+    // Filtro de WebClient que reenvía el tiempo restante del plazo vigente en la cabecera X-Request-Timeout-Ms
+    public static ExchangeFilterFunction propagar() {
+        return (request, next) -> Mono.deferContextual(contexto -> next.exchange(delContexto(contexto)
+                .map(plazo -> ClientRequest.from(request)
+                        .header(CABECERA, String.valueOf(plazo.restante().toMillis()))
+                        .build())
+                .orElse(request)));
+    }
+}
@@ -0,0 +1,37 @@
+package com.Arka.MSCart.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Presupuestos de tiempo (SLO) de las peticiones entrantes
+ * Capa de Configuración
+ *
+ * Se leen de ms.plazo.* y se vuelven a enlazar en cada refresco de Spring Cloud Config, sin reiniciar.
+ * Las claves de endpoints son patrones de ruta (por ejemplo "[/api/v1/carts/vercarrito]"); la primera que coincide
+ * con la ruta de la petición define su presupuesto, y si ninguna coincide se aplica porDefecto.
+ */
+@Component
+@ConfigurationProperties(prefix = "ms.plazo")
+@Getter
+@Setter
+public class PlazoProperties {
+
+    // Si es false no se fija plazo y las llamadas solo quedan acotadas por los timeouts de cada cliente
+    private boolean habilitado = true;
+
+    // Presupuesto de las peticiones sin cabecera cuyo endpoint no tiene presupuesto propio
+    private Duration porDefecto = Duration.ofSeconds(5);
+
+    // Máximo aceptado en la cabecera X-Request-Timeout-Ms de una petición entrante
+    private Duration maximo = Duration.ofSeconds(30);
+
+    // Presupuesto por patrón de ruta
+    private Map<String, Duration> endpoints = new LinkedHashMap<>();
+}
@@ -0,0 +1,76 @@
+package com.Arka.MSCart.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Fija el plazo (deadline) de cada petición entrante
+ * Capa de Configuración
+ *
+ * El presupuesto se toma de la cabecera X-Request-Timeout-Ms (acotada a ms.plazo.maximo) y, si no llega,
+ * del presupuesto configurado para el endpoint o de ms.plazo.porDefecto. Una petición que llega con el plazo
+ * ya agotado se rechaza con 504 sin ejecutar el handler.
+ */
+@Component
+public class PlazoWebFilter implements WebFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(PlazoWebFilter.class);
+
+    private final PlazoProperties propiedades;
+
+    // Patrones de ruta ya interpretados; las claves cambian solo con un refresco de configuración
+    private final Map<String, PathPattern> patrones = new ConcurrentHashMap<>();
+
+    public PlazoWebFilter(PlazoProperties propiedades) {
+        this.propiedades = propiedades;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        if (!propiedades.isHabilitado()) {
+            return chain.filter(exchange);
+        }
+
+        Duration presupuesto = presupuesto(exchange);
+        if (presupuesto.isZero() || presupuesto.isNegative()) {
+            // El llamador ya no espera la respuesta: se descarta sin ejecutar el handler
+            exchange.getResponse().setStatusCode(HttpStatus.GATEWAY_TIMEOUT);
+            return exchange.getResponse().setComplete();
+        }
+
+        Plazo plazo = Plazo.desde(presupuesto);
+        return chain.filter(exchange).contextWrite(plazo::guardarEn);
+    }
+
+    private Duration presupuesto(ServerWebExchange exchange) {
+        String cabecera = exchange.getRequest().getHeaders().getFirst(Plazo.CABECERA);
+        if (cabecera != null) {
+            try {
+                Duration recibido = Duration.ofMillis(Long.parseLong(cabecera.trim()));
+                return recibido.compareTo(propiedades.getMaximo()) > 0 ? propiedades.getMaximo() : recibido;
+            } catch (NumberFormatException ex) {
+                log.debug("Cabecera {} inválida: {}", Plazo.CABECERA, cabecera);
+            }
+        }
+
+        for (Map.Entry<String, Duration> endpoint : propiedades.getEndpoints().entrySet()) {
+            PathPattern patron = patrones.computeIfAbsent(endpoint.getKey(), PathPatternParser.defaultInstance::parse);
+            if (patron.matches(exchange.getRequest().getPath().pathWithinApplication())) {
+                return endpoint.getValue();
+            }
+        }
+        return propiedades.getPorDefecto();
+    }
+}
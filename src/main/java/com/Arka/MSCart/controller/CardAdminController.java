@@ -1,6 +1,8 @@
 package com.Arka.MSCart.controller;
 
 import com.Arka.MSCart.dto.AdminDto.CartDto;
+import com.Arka.MSCart.dto.AdminDto.DescuadreTotalesDto;
+import com.Arka.MSCart.dto.AdminDto.PaginaCarritosDto;
 import com.Arka.MSCart.dto.CartWithProductsDto;
 import com.Arka.MSCart.service.CartAdminService;
 import io.swagger.v3.oas.annotations.Operation;
@@ -12,14 +14,19 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.LocalDateTime;
+
 @RestController
 @RequestMapping("/api/v1/cartsadmin")
 @RequiredArgsConstructor
@@ -115,6 +122,71 @@ public class CardAdminController {
         return cartAdminService.getAbandonedCarts();
     }
 
+    @Operation(
+            summary = "Listar carritos por páginas",
+            description = """
+                    Retorna una página de carritos ordenada por id, con filtros opcionales de estado
+                    y de rango de último movimiento aplicados en la base de datos.
+                    
+                    **Paginación:** la respuesta incluye `siguienteCursor`; para pedir la página siguiente
+                    se envía ese valor en el parámetro `cursor`. Si es nulo no hay más páginas.
+                    """
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Página de carritos obtenida exitosamente",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = PaginaCarritosDto.class)
+                    )
+            )
+    })
+    @GetMapping(value = "/pagina", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<PaginaCarritosDto> listarCarritos(
+            @Parameter(description = "Estado del carrito (true = activo, false = abandonado)", example = "false")
+            @RequestParam(required = false) Boolean estado,
+            @Parameter(description = "Último movimiento desde (inclusive)", example = "2025-11-01T00:00:00")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime desde,
+            @Parameter(description = "Último movimiento hasta (exclusive)", example = "2025-12-01T00:00:00")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime hasta,
+            @Parameter(description = "Id del último carrito de la página anterior", example = "150")
+            @RequestParam(required = false) Long cursor,
+            @Parameter(description = "Tamaño de página (por defecto 50)", example = "50")
+            @RequestParam(required = false) Integer tamano) {
+        return cartAdminService.listarCarritos(estado, desde, hasta, cursor, tamano);
+    }
+
+    @Operation(
+            summary = "Listar carritos en streaming (NDJSON)",
+            description = """
+                    Emite un carrito por línea (application/x-ndjson) a medida que se completa con la
+                    información de su usuario, con los mismos filtros del listado paginado.
+                    
+                    **Uso:** Exportaciones y reportes sobre tablas grandes sin cargar todos los carritos en memoria.
+                    """
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Carritos emitidos exitosamente",
+                    content = @Content(
+                            mediaType = MediaType.APPLICATION_NDJSON_VALUE,
+                            schema = @Schema(implementation = CartDto.class)
+                    )
+            )
+    })
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<CartDto> streamCarritos(
+            @Parameter(description = "Estado del carrito (true = activo, false = abandonado)", example = "false")
+            @RequestParam(required = false) Boolean estado,
+            @Parameter(description = "Último movimiento desde (inclusive)", example = "2025-11-01T00:00:00")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime desde,
+            @Parameter(description = "Último movimiento hasta (exclusive)", example = "2025-12-01T00:00:00")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime hasta) {
+        return cartAdminService.streamCarritos(estado, desde, hasta);
+    }
+
     @Operation(
             summary = "Buscar carrito por ID de carrito",
             description = """
@@ -195,4 +267,50 @@ public class CardAdminController {
     public Mono<CartWithProductsDto> buscarCarritoPorIdCart(@PathVariable Long id) {
         return cartAdminService.getCartWithProductsIdCart(id);
     }
+
+    @Operation(
+            summary = "Verificar los totales de los carritos",
+            description = """
+                    Retorna los carritos cuyos totales guardados (número de productos, unidades y precio total)
+                    no coinciden con la suma de sus líneas.
+                    
+                    **Uso:** Detectar descuadres de los totales incrementales.
+                    """
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Lista de carritos descuadrados (vacía si todos los totales cuadran)",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = DescuadreTotalesDto.class)
+                    )
+            )
+    })
+    @GetMapping(value = "/totales/descuadres", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Flux<DescuadreTotalesDto> verificarTotales() {
+        return cartAdminService.verificarTotales();
+    }
+
+    @Operation(
+            summary = "Corregir los totales descuadrados",
+            description = """
+                    Recalcula desde sus líneas los totales de los carritos descuadrados
+                    y retorna los descuadres que se corrigieron.
+                    """
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Descuadres corregidos",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = DescuadreTotalesDto.class)
+                    )
+            )
+    })
+    @PostMapping(value = "/totales/corregir", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Flux<DescuadreTotalesDto> corregirTotales() {
+        return cartAdminService.corregirTotales();
+    }
 }
@@ -1,6 +1,9 @@
 package com.Arka.MSCart.controller;
 
 import com.Arka.MSCart.dto.AddProductRequestDTO;
+import com.Arka.MSCart.dto.AddProductsRequestDto;
+import com.Arka.MSCart.dto.AddProductsResultDto;
+import com.Arka.MSCart.dto.CartDeltaDto;
 import com.Arka.MSCart.dto.CartWithProductsDto;
 import com.Arka.MSCart.service.CartCustomerService;
 import com.Arka.MSCart.service.NewOrdenService;
@@ -38,6 +41,8 @@ public class CartCustomerController {
                     - Stock disponible en inventario
                     - Cantidad mayor a 0
                     - Producto existente en catálogo
+                    
+                    **Respuesta compacta:** `POST /agregarproducto/delta` retorna solo la línea modificada y los nuevos totales.
                     """,
             parameters = {
                     @Parameter(
@@ -150,11 +155,137 @@ public class CartCustomerController {
     }
 
 
+    @Operation(
+            summary = "Agregar producto al carrito (respuesta compacta)",
+            description = """
+                    Igual que `POST /agregarproducto`, pero retorna solo la línea agregada o actualizada y los nuevos
+                    totales del carrito (CartDeltaDto), sin leer las demás líneas ni consultar otros servicios.
+                    """,
+            parameters = {
+                    @Parameter(
+                            name = "X-Auth-User-Id",
+                            description = "ID del usuario autenticado",
+                            required = true,
+                            example = "123"
+                    )
+            }
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "201",
+                    description = "Producto agregado exitosamente al carrito",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = CartDeltaDto.class)
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Stock insuficiente o cantidad inválida",
+                    content = @Content(mediaType = "application/json")
+            ),
+            @ApiResponse(
+                    responseCode = "404",
+                    description = "Producto no encontrado en inventario",
+                    content = @Content(mediaType = "application/json")
+            )
+    })
+    @PostMapping("/agregarproducto/delta")
+    @ResponseStatus(HttpStatus.CREATED)
+    public Mono<CartDeltaDto> addProductToCartDelta(
+            @RequestHeader("X-Auth-User-Id") Long userId,
+            @Valid @RequestBody
+            @io.swagger.v3.oas.annotations.parameters.RequestBody(
+                    description = "Datos del producto a agregar",
+                    required = true,
+                    content = @Content(
+                            schema = @Schema(implementation = AddProductRequestDTO.class),
+                            examples = @ExampleObject(
+                                    value = """
+                                            {
+                                              "productId": 100,
+                                              "quantity": 2
+                                            }
+                                            """
+                            )
+                    )
+            )
+            AddProductRequestDTO requestDTO) {
+        return cartService.addProductToCartDelta(userId, requestDTO.getProductId(), requestDTO.getQuantity());
+    }
+
+
+    @Operation(
+            summary = "Agregar varios productos al carrito",
+            description = """
+                    Agrega o actualiza varios productos del carrito del usuario en una sola operación.
+                    Si el carrito no existe, se crea automáticamente.
+                    
+                    **Proceso:**
+                    1. Consulta el stock de todos los productos en una sola petición al inventario
+                    2. Guarda todas las líneas válidas en una única transacción
+                    3. Retorna el carrito actualizado y el resultado de cada producto
+                    
+                    Los productos sin stock suficiente o inexistentes se rechazan individualmente
+                    sin impedir que se agreguen los demás.
+                    """,
+            parameters = {
+                    @Parameter(
+                            name = "X-Auth-User-Id",
+                            description = "ID del usuario autenticado",
+                            required = true,
+                            example = "123"
+                    )
+            }
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Operación procesada; el resultado de cada producto indica si se agregó",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = AddProductsResultDto.class)
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Lista de productos vacía, demasiado grande o con datos inválidos",
+                    content = @Content(mediaType = "application/json")
+            )
+    })
+    @PostMapping("/agregarproductos")
+    public Mono<AddProductsResultDto> addProductsToCart(
+            @RequestHeader("X-Auth-User-Id") Long userId,
+            @Valid @RequestBody
+            @io.swagger.v3.oas.annotations.parameters.RequestBody(
+                    description = "Productos a agregar",
+                    required = true,
+                    content = @Content(
+                            schema = @Schema(implementation = AddProductsRequestDto.class),
+                            examples = @ExampleObject(
+                                    value = """
+                                            {
+                                              "productos": [
+                                                { "productId": 100, "quantity": 1 },
+                                                { "productId": 200, "quantity": 4 }
+                                              ]
+                                            }
+                                            """
+                            )
+                    )
+            )
+            AddProductsRequestDto requestDto) {
+        return cartService.addProductsToCart(userId, requestDto.getProductos());
+    }
+
+
     @Operation(
             summary = "Eliminar producto del carrito",
             description = """
                     Elimina un producto específico del carrito del usuario.
                     Actualiza automáticamente el contador de productos y la fecha de último movimiento.
+                    
+                    **Respuesta compacta:** `DELETE /eliminarproducto/{productId}/delta` retorna solo el producto eliminado y los nuevos totales.
                     """,
             parameters = {
                     @Parameter(
@@ -204,11 +335,59 @@ public class CartCustomerController {
     }
 
 
+    @Operation(
+            summary = "Eliminar producto del carrito (respuesta compacta)",
+            description = """
+                    Igual que `DELETE /eliminarproducto/{productId}`, pero retorna solo el producto eliminado y los
+                    nuevos totales del carrito (CartDeltaDto), sin leer las demás líneas ni consultar otros servicios.
+                    """,
+            parameters = {
+                    @Parameter(
+                            name = "X-Auth-User-Id",
+                            description = "ID del usuario autenticado",
+                            required = true,
+                            example = "123"
+                    ),
+                    @Parameter(
+                            name = "productId",
+                            description = "ID del producto a eliminar del carrito",
+                            required = true,
+                            example = "100"
+                    )
+            }
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Producto eliminado exitosamente del carrito",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = CartDeltaDto.class)
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "404",
+                    description = "Carrito o producto no encontrado",
+                    content = @Content(mediaType = "application/json")
+            )
+    })
+    @DeleteMapping("/eliminarproducto/{productId}/delta")
+    public Mono<CartDeltaDto> removeProductFromCartDelta(
+            @RequestHeader("X-Auth-User-Id") Long userId,
+            @PathVariable Long productId) {
+        return cartService.removeProductFromCartDelta(userId, productId);
+    }
+
+
     @Operation(
             summary = "Ver carrito del usuario",
             description = """
                     Retorna el carrito completo del usuario con todos los productos y sus detalles.
-                    Incluye información actualizada de inventario (nombre, descripción, precio).
+                    El nombre, la descripción y el precio unitario de cada producto son los guardados
+                    al agregarlo al carrito, sin consultar el inventario.
+                    
+                    **Refresco:** con `refresh=true` consulta la información vigente en inventario
+                    y actualiza la guardada en el carrito.
                     """,
             parameters = {
                     @Parameter(
@@ -245,8 +424,11 @@ public class CartCustomerController {
             )
     })
     @GetMapping("/vercarrito")
-    public Mono<CartWithProductsDto> viewCart(@RequestHeader("X-Auth-User-Id") Long userId) {
-        return cartService.viewCart(userId);
+    public Mono<CartWithProductsDto> viewCart(
+            @RequestHeader("X-Auth-User-Id") Long userId,
+            @Parameter(description = "Consulta la información vigente de los productos en inventario", example = "false")
+            @RequestParam(name = "refresh", defaultValue = "false") boolean refresh) {
+        return cartService.viewCart(userId, refresh);
     }
 
     @Operation(
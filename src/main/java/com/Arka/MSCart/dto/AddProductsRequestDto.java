@@ -0,0 +1,25 @@
+package com.Arka.MSCart.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+@Schema(description = "DTO para agregar o actualizar varios productos del carrito en una sola operación")
+public class AddProductsRequestDto {
+
+    @Schema(description = "Productos a agregar; si un producto se repite, sus cantidades se suman", required = true)
+    @NotEmpty(message = "La lista de productos no puede estar vacía")
+    @Size(max = 100, message = "No se pueden agregar más de 100 productos en una sola operación")
+    private List<@Valid AddProductRequestDTO> productos;
+}
@@ -0,0 +1,41 @@
+package com.Arka.MSCart.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Resultado de agregar varios productos: el carrito actualizado y el resultado de cada producto")
+public class AddProductsResultDto {
+
+    @Schema(description = "Carrito con todos sus productos tras la operación; nulo si el usuario no tiene carrito y no se agregó ningún producto")
+    private CartWithProductsDto carrito;
+
+    @Schema(description = "Resultado por producto, en el orden de la solicitud")
+    private List<ResultadoProductoDto> resultados;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Schema(description = "Resultado de agregar un producto")
+    public static class ResultadoProductoDto {
+
+        @Schema(description = "ID del producto", example = "100")
+        private Long productId;
+
+        @Schema(description = "Cantidad solicitada", example = "2")
+        private Long quantity;
+
+        @Schema(description = "Indica si el producto quedó en el carrito con la cantidad solicitada", example = "true")
+        private boolean agregado;
+
+        @Schema(description = "Motivo del rechazo; nulo si el producto se agregó",
+                example = "Stock insuficiente para el producto con ID 100. Stock disponible: 5, solicitado: 10")
+        private String error;
+    }
+}
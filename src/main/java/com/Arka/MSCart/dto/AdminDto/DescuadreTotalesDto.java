@@ -0,0 +1,36 @@
+package com.Arka.MSCart.dto.AdminDto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Schema(description = "Carrito cuyos totales guardados no coinciden con la suma de sus líneas")
+public class DescuadreTotalesDto {
+
+    @Schema(description = "ID del carrito", example = "1")
+    private Long carritoId;
+
+    @Schema(description = "Número de productos guardado en el carrito", example = "3")
+    private Long numeroProductos;
+
+    @Schema(description = "Total de unidades guardado en el carrito", example = "5")
+    private Long totalUnidades;
+
+    @Schema(description = "Precio total guardado en el carrito", example = "2500")
+    private Integer precioTotal;
+
+    @Schema(description = "Número de líneas del carrito", example = "2")
+    private Long numeroProductosReal;
+
+    @Schema(description = "Suma de las cantidades de las líneas", example = "5")
+    private Long totalUnidadesReal;
+
+    @Schema(description = "Suma de los precios totales de las líneas", example = "2500")
+    private Long precioTotalReal;
+}
@@ -0,0 +1,23 @@
+package com.Arka.MSCart.dto.AdminDto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Schema(description = "Página de carritos ordenada por id")
+public class PaginaCarritosDto {
+
+    @Schema(description = "Carritos de la página")
+    private List<CartDto> carritos;
+
+    @Schema(description = "Cursor para pedir la página siguiente (id del último carrito); nulo si no hay más páginas", example = "150")
+    private Long siguienteCursor;
+}
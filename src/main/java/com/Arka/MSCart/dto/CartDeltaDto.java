@@ -0,0 +1,36 @@
+package com.Arka.MSCart.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Respuesta compacta de una modificación del carrito: la línea modificada y los nuevos totales")
+public class CartDeltaDto {
+
+    @Schema(description = "ID único del carrito", example = "1")
+    private Long cartId;
+
+    @Schema(description = "Línea agregada o actualizada (sin id de detalle); nula cuando se eliminó un producto")
+    private ProductInCartDto linea;
+
+    @Schema(description = "ID del producto eliminado; nulo cuando se agregó o actualizó un producto", example = "100")
+    private Long productoEliminadoId;
+
+    @Schema(description = "Número total de productos en el carrito", example = "3")
+    private Long numeroProductos;
+
+    @Schema(description = "Total de unidades de todos los productos (suma de cantidades)", example = "5")
+    private Long totalUnidades;
+
+    @Schema(description = "Precio total del carrito (suma de todos los precios)", example = "2500")
+    private Integer precioTotal;
+
+    @Schema(description = "Fecha y hora del último movimiento en el carrito", example = "2025-11-15T11:45:00")
+    private LocalDateTime ultimoMovimiento;
+}
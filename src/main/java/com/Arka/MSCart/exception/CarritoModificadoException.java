@@ -0,0 +1,21 @@
+package com.Arka.MSCart.exception;
+
+// Excepción personalizada para un carrito modificado por otra operación entre su lectura y su actualización
+public class CarritoModificadoException extends RuntimeException {
+
+    private static final String CARRITO_MODIFICADO = "El carrito con ID %d fue modificado por otra operación; intente de nuevo";
+
+    public CarritoModificadoException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    // Constructor para un conflicto de versión en el carrito indicado
+    public static CarritoModificadoException conId(Long cartId) {
+        return conId(cartId, null);
+    }
+
+    // Constructor para un conflicto de versión detectado por Spring Data (OptimisticLockingFailureException)
+    public static CarritoModificadoException conId(Long cartId, Throwable cause) {
+        return new CarritoModificadoException(String.format(CARRITO_MODIFICADO, cartId), cause);
+    }
+}
@@ -88,6 +88,18 @@ public class GlobalExceptionHandler {
         );
     }
 
+    // ========== CONFLICTOS DE CONCURRENCIA (409 CONFLICT) ==========
+
+    // Maneja carritos modificados por otra operación (versión distinta a la leída)
+    @ExceptionHandler(CarritoModificadoException.class)
+    @ResponseStatus(HttpStatus.CONFLICT)
+    public ErrorDetails handleCarritoModificado(CarritoModificadoException ex) {
+        return new ErrorDetails(
+                HttpStatus.CONFLICT.value(),
+                ex.getMessage()
+        );
+    }
+
     // ========== EXCEPCIONES DE SERVICIOS EXTERNOS (503 SERVICE UNAVAILABLE) ==========
 
     // Maneja errores de servicios externos
@@ -100,6 +112,18 @@ public class GlobalExceptionHandler {
         );
     }
 
+    // ========== PLAZO AGOTADO (504 GATEWAY TIMEOUT) ==========
+
+    // Maneja peticiones cuyo plazo se agotó antes de completar las llamadas a servicios externos
+    @ExceptionHandler(PlazoVencidoException.class)
+    @ResponseStatus(HttpStatus.GATEWAY_TIMEOUT)
+    public ErrorDetails handlePlazoVencido(PlazoVencidoException ex) {
+        return new ErrorDetails(
+                HttpStatus.GATEWAY_TIMEOUT.value(),
+                ex.getMessage()
+        );
+    }
+
     // Clase para representar los detalles de un error
     public record ErrorDetails(int status, String message) {}
 }
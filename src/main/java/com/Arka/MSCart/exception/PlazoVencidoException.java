@@ -0,0 +1,18 @@
+package com.Arka.MSCart.exception;
+
+// Excepción personalizada para peticiones cuyo plazo (deadline) se agotó antes de completar el trabajo
+public class PlazoVencidoException extends RuntimeException {
+
+    private static final String PLAZO_VENCIDO_LLAMADA = "El plazo de la petición se agotó antes de completar la llamada a %s";
+
+    public PlazoVencidoException(String message) {
+        super(message);
+    }
+
+    // Constructor para una llamada a un servicio externo que no cabe en el plazo restante
+    public static PlazoVencidoException enLlamada(String nombreServicio) {
+        return new PlazoVencidoException(
+            String.format(PLAZO_VENCIDO_LLAMADA, nombreServicio)
+        );
+    }
+}
@@ -5,6 +5,7 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
 import org.springframework.data.relational.core.mapping.Column;
 import org.springframework.data.relational.core.mapping.Table;
 import java.time.LocalDateTime;
@@ -42,4 +43,9 @@ public class Cart {
 
     @Column("emailenviado")
     private boolean emailEnviado;
+
+    // Versión para el bloqueo optimista: cada modificación del carrito la incrementa
+    @Version
+    @Column("version")
+    private Long version;
 }
\ No newline at end of file
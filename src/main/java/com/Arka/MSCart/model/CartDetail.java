@@ -5,9 +5,11 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
 import org.springframework.data.relational.core.mapping.Column;
 import org.springframework.data.relational.core.mapping.Table;
-import java.math.BigDecimal;
+
+import java.time.LocalDateTime;
 
 @Data
 @Builder
@@ -27,4 +29,24 @@ public class CartDetail {
     private Long cantidad;
     @Column("precio_total")
     private int precioTotal;
+
+    // Presentación del producto al momento de agregar o actualizar la línea (nula en líneas anteriores al snapshot)
+    @Column("nombre_producto")
+    private String nombreProducto;
+    @Column("descripcion_producto")
+    private String descripcionProducto;
+    @Column("precio_unitario")
+    private Integer precioUnitario;
+    @Column("snapshot_en")
+    private LocalDateTime snapshotEn;
+
+    // Versión para el bloqueo optimista: cada modificación de la línea la incrementa
+    @Version
+    @Column("version")
+    private Long version;
+
+    // Indica si la línea guarda la presentación del producto
+    public boolean tieneSnapshot() {
+        return snapshotEn != null;
+    }
 }
\ No newline at end of file
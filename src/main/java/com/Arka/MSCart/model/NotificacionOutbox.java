@@ -0,0 +1,57 @@
+package com.Arka.MSCart.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+import java.time.LocalDateTime;
+
+/**
+ * Evento de notificación pendiente de entregar a la Lambda de email (patrón outbox)
+ * El payload es el EmailRequest serializado en JSON.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Table("notificacion_outbox")
+public class NotificacionOutbox {
+
+    public static final String PENDIENTE = "PENDIENTE";
+    // Reclamado por un relay que lo está entregando; si el relay muere, vuelve a reclamarse al vencer proximo_intento
+    public static final String EN_CURSO = "EN_CURSO";
+    public static final String ENVIADO = "ENVIADO";
+    public static final String FALLIDO = "FALLIDO";
+
+    @Id
+    @Column("id")
+    private Long id;
+
+    @Column("carrito_id")
+    private Long carritoId;
+
+    // Única por carrito y episodio de abandono: la Lambda la usa para descartar entregas repetidas
+    @Column("clave_idempotencia")
+    private String claveIdempotencia;
+
+    @Column("payload")
+    private String payload;
+
+    @Column("estado")
+    private String estado;
+
+    @Column("intentos")
+    private Integer intentos;
+
+    @Column("creado_en")
+    private LocalDateTime creadoEn;
+
+    @Column("proximo_intento")
+    private LocalDateTime proximoIntento;
+
+    @Column("enviado_en")
+    private LocalDateTime enviadoEn;
+}
@@ -2,10 +2,14 @@ package com.Arka.MSCart.repository;
 
 import com.Arka.MSCart.model.Cart;
 import com.Arka.MSCart.model.CartDetail;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.repository.reactive.ReactiveCrudRepository;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.LocalDateTime;
+
 public interface CartDetailRepository extends ReactiveCrudRepository<CartDetail, Long> {
 
     /**
@@ -21,4 +25,25 @@ public interface CartDetailRepository extends ReactiveCrudRepository<CartDetail,
     Mono<CartDetail> save(CartDetail cart);
     Flux<CartDetail> findAllByCarritoId(Long carritoId);
     Mono<Long> countByCarritoId(Long carritoId);
-}
\ No newline at end of file
+
+    /**
+     * Actualiza la presentación guardada de varias líneas del carrito con la información vigente del inventario,
+     * solo en las líneas que conservan la versión leída. No modifica cantidades ni precios totales.
+     * Retorna el número de líneas actualizadas.
+     */
+    @Modifying
+    @Query("""
+            UPDATE carrito_detalle d
+            SET nombre_producto = e.nombre_producto,
+                descripcion_producto = e.descripcion_producto,
+                precio_unitario = e.precio_unitario,
+                snapshot_en = :ahora,
+                version = d.version + 1
+            FROM unnest(CAST(:productoIds AS BIGINT[]), CAST(:versiones AS BIGINT[]), CAST(:nombres AS VARCHAR[]),
+                        CAST(:descripciones AS TEXT[]), CAST(:preciosUnitarios AS INTEGER[]))
+                AS e(producto_id, version, nombre_producto, descripcion_producto, precio_unitario)
+            WHERE d.carrito_id = :carritoId AND d.producto_id = e.producto_id AND d.version = e.version
+            """)
+    Mono<Integer> actualizarSnapshots(Long carritoId, Long[] productoIds, Long[] versiones, String[] nombres,
+                                      String[] descripciones, Integer[] preciosUnitarios, LocalDateTime ahora);
+}
@@ -0,0 +1,142 @@
+package com.Arka.MSCart.repository;
+
+import com.Arka.MSCart.dto.CartWithProductsDto;
+import com.Arka.MSCart.dto.ProductInCartDto;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.r2dbc.spi.Readable;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Modelo de lectura del carrito con sus productos
+ * Capa de Acceso a Datos
+ *
+ * Lee la cabecera del carrito y todas sus líneas en una sola consulta (LEFT JOIN) y mapea cada fila
+ * directamente a CartWithProductsDto y ProductInCartDto, sin construir las entidades Cart y CartDetail.
+ * La información del usuario no se completa aquí.
+ *
+ * Cada lectura se registra en el timer ms.cart.lectura.carrito con la etiqueta consulta (usuario o id).
+ */
+@Repository
+public class CartReadRepository {
+
+    // Presentación de las líneas que no guardan snapshot del producto; el servicio la completa desde el inventario
+    public static final String NOMBRE_NO_DISPONIBLE = "error en inventario nombre no disponible";
+    public static final String DESCRIPCION_NO_DISPONIBLE = "error en inventario descripción no disponible";
+
+    private static final String CONSULTA_CARRITO = """
+            SELECT c.id, c.userid, c.createdat, c.estado, c.ultimo_movimiento,
+                   c.numero_productos, c.total_unidades, c.precio_total,
+                   d.id AS detalle_id, d.producto_id, d.cantidad, d.precio_total AS detalle_precio_total,
+                   d.nombre_producto, d.descripcion_producto, d.precio_unitario, d.snapshot_en
+            FROM carrito c
+            LEFT JOIN carrito_detalle d ON d.carrito_id = c.id
+            WHERE %s
+            ORDER BY d.id
+            """;
+
+    private static final String POR_USUARIO = CONSULTA_CARRITO.formatted("c.userid = :valor");
+    private static final String POR_ID = CONSULTA_CARRITO.formatted("c.id = :valor");
+
+    private static final String METRICA_LECTURA = "ms.cart.lectura.carrito";
+
+    private final DatabaseClient databaseClient;
+    private final Timer lecturasPorUsuario;
+    private final Timer lecturasPorId;
+
+    public CartReadRepository(DatabaseClient databaseClient, MeterRegistry meterRegistry) {
+        this.databaseClient = databaseClient;
+        this.lecturasPorUsuario = meterRegistry.timer(METRICA_LECTURA, "consulta", "usuario");
+        this.lecturasPorId = meterRegistry.timer(METRICA_LECTURA, "consulta", "id");
+    }
+
+    /**
+     * Carrito leído y los productos de sus líneas sin snapshot, que deben completarse desde el inventario.
+     */
+    public record CarritoLeido(CartWithProductsDto carrito, List<Long> productosSinSnapshot) {}
+
+    // Carrito del usuario con sus productos; vacío si el usuario no tiene carrito
+    public Mono<CarritoLeido> buscarPorUsuario(Long userId) {
+        return leer(POR_USUARIO, userId, lecturasPorUsuario);
+    }
+
+    // Carrito con sus productos por ID de carrito; vacío si no existe
+    public Mono<CarritoLeido> buscarPorId(Long cartId) {
+        return leer(POR_ID, cartId, lecturasPorId);
+    }
+
+    private Mono<CarritoLeido> leer(String sql, Long valor, Timer timer) {
+        return Mono.defer(() -> {
+            LectorCarrito lector = new LectorCarrito();
+            long inicio = System.nanoTime();
+            return databaseClient.sql(sql)
+                    .bind("valor", valor)
+                    .map(lector::leerFila)
+                    .all()
+                    .then(Mono.fromSupplier(lector::resultado))
+                    .doFinally(senal -> timer.record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS));
+        });
+    }
+
+    // Acumula las filas de una consulta: la primera fila aporta la cabecera y cada fila con detalle una línea
+    private static final class LectorCarrito {
+
+        private CartWithProductsDto carrito;
+        private final List<ProductInCartDto> productos = new ArrayList<>();
+        private final List<Long> productosSinSnapshot = new ArrayList<>();
+
+        Boolean leerFila(Readable fila) {
+            if (carrito == null) {
+                carrito = new CartWithProductsDto();
+                carrito.setCartId(fila.get("id", Long.class));
+                carrito.setUserId(fila.get("userid", Long.class));
+                carrito.setEstadoCarrito(Boolean.TRUE.equals(fila.get("estado", Boolean.class)) ? "activo" : "inactivo");
+                carrito.setNumeroProductos(fila.get("numero_productos", Long.class));
+                carrito.setTotalUnidades(fila.get("total_unidades", Long.class));
+                carrito.setPrecioTotal(fila.get("precio_total", Integer.class));
+                carrito.setCreatedAt(fila.get("createdat", LocalDateTime.class));
+                carrito.setUltimoMovimiento(fila.get("ultimo_movimiento", LocalDateTime.class));
+                carrito.setProducts(productos);
+            }
+
+            Long detalleId = fila.get("detalle_id", Long.class);
+            if (detalleId == null) {
+                // Carrito sin líneas: el LEFT JOIN retorna solo la cabecera
+                return Boolean.FALSE;
+            }
+
+            Long productoId = fila.get("producto_id", Long.class);
+            Integer precioTotal = fila.get("detalle_precio_total", Integer.class);
+            ProductInCartDto producto = ProductInCartDto.builder()
+                    .id(detalleId)
+                    .productoId(productoId)
+                    .cantidad(fila.get("cantidad", Long.class))
+                    .precioTotal(precioTotal != null ? precioTotal : 0)
+                    .build();
+
+            if (fila.get("snapshot_en", LocalDateTime.class) != null) {
+                Integer precioUnitario = fila.get("precio_unitario", Integer.class);
+                producto.setNombre(fila.get("nombre_producto", String.class));
+                producto.setDescripcion(fila.get("descripcion_producto", String.class));
+                producto.setPrecioUnitario(precioUnitario != null ? precioUnitario : 0);
+            } else {
+                producto.setNombre(NOMBRE_NO_DISPONIBLE);
+                producto.setDescripcion(DESCRIPCION_NO_DISPONIBLE);
+                productosSinSnapshot.add(productoId);
+            }
+            productos.add(producto);
+            return Boolean.TRUE;
+        }
+
+        CarritoLeido resultado() {
+            return carrito == null ? null : new CarritoLeido(carrito, productosSinSnapshot);
+        }
+    }
+}
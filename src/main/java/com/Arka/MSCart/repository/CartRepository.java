@@ -1,13 +1,211 @@
 package com.Arka.MSCart.repository;
 
+import com.Arka.MSCart.dto.AdminDto.DescuadreTotalesDto;
 import com.Arka.MSCart.model.Cart;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+/**
+ * Todas las sentencias que modifican un carrito o sus líneas incrementan su versión, de modo que un save
+ * o un delete de un carrito o una línea leídos antes de la modificación falla con OptimisticLockingFailureException.
+ */
 public interface CartRepository extends ReactiveCrudRepository<Cart, Long> {
     Mono<Cart> findByUserId(Long userId);
     Mono<Cart> save(Cart cart);
     Mono<Cart> findById(Long id);
     Mono<Void> deleteByUserId(Long userId);
 
-}
\ No newline at end of file
+    /**
+     * Marca como abandonados (estado = false) hasta {@code limite} carritos activos cuyo último
+     * movimiento (o fecha de creación) es anterior al corte. Retorna el número de carritos modificados.
+     * Usa el índice parcial idx_carrito_activo_ultimo_movimiento y omite filas bloqueadas por otra transacción.
+     */
+    @Modifying
+    @Query("""
+            UPDATE carrito SET estado = FALSE, version = version + 1
+            WHERE id IN (
+                SELECT id FROM carrito
+                WHERE estado = TRUE
+                  AND coalesce(ultimo_movimiento, createdat) < :cutoff
+                ORDER BY id
+                LIMIT :limite
+                FOR UPDATE SKIP LOCKED)
+            """)
+    Mono<Integer> marcarCarritosAbandonados(LocalDateTime cutoff, int limite);
+
+    /**
+     * Carritos abandonados con productos cuyo email de recordatorio aún no se ha enviado.
+     */
+    Flux<Cart> findByEstadoFalseAndEmailEnviadoFalseAndNumeroProductosGreaterThan(Long numeroProductos);
+
+    /**
+     * Marca como notificado un carrito que sigue abandonado, sin notificar y con la versión leída.
+     * Retorna 1 si esta llamada lo marcó y 0 si el carrito se modificó desde la lectura o ya estaba notificado.
+     */
+    @Modifying
+    @Query("""
+            UPDATE carrito SET emailenviado = TRUE, version = version + 1
+            WHERE id = :cartId AND version = :version AND estado = FALSE AND emailenviado = FALSE
+            """)
+    Mono<Integer> marcarEmailEnviado(Long cartId, long version);
+
+    /**
+     * Aplica de forma atómica la variación de los totales del carrito tras modificar una línea,
+     * lo reactiva y registra el movimiento, solo si el carrito conserva la versión leída.
+     * Retorna el carrito actualizado, o vacío si otra modificación cambió la versión.
+     */
+    @Query("""
+            UPDATE carrito
+            SET numero_productos = coalesce(numero_productos, 0) + :deltaProductos,
+                total_unidades   = coalesce(total_unidades, 0) + :deltaUnidades,
+                precio_total     = coalesce(precio_total, 0) + :deltaPrecio,
+                ultimo_movimiento = :ahora,
+                estado = TRUE,
+                emailenviado = FALSE,
+                version = version + 1
+            WHERE id = :cartId AND version = :version
+            RETURNING *
+            """)
+    Mono<Cart> aplicarDeltaTotales(Long cartId, long version, long deltaProductos, long deltaUnidades, int deltaPrecio,
+                                   LocalDateTime ahora);
+
+    /**
+     * Carritos cuyos totales guardados no coinciden con la suma de sus líneas.
+     */
+    @Query("""
+            SELECT c.id AS carrito_id,
+                   c.numero_productos,
+                   c.total_unidades,
+                   c.precio_total,
+                   CAST(count(d.id) AS BIGINT)                     AS numero_productos_real,
+                   CAST(coalesce(sum(d.cantidad), 0) AS BIGINT)     AS total_unidades_real,
+                   CAST(coalesce(sum(d.precio_total), 0) AS BIGINT) AS precio_total_real
+            FROM carrito c
+            LEFT JOIN carrito_detalle d ON d.carrito_id = c.id
+            GROUP BY c.id, c.numero_productos, c.total_unidades, c.precio_total
+            HAVING coalesce(c.numero_productos, 0) <> count(d.id)
+                OR coalesce(c.total_unidades, 0) <> coalesce(sum(d.cantidad), 0)
+                OR coalesce(c.precio_total, 0) <> coalesce(sum(d.precio_total), 0)
+            """)
+    Flux<DescuadreTotalesDto> buscarDescuadresTotales();
+
+    /**
+     * Recalcula desde sus líneas los totales de los carritos indicados. Retorna el número de carritos modificados.
+     */
+    @Modifying
+    @Query("""
+            UPDATE carrito c
+            SET numero_productos = (SELECT count(*) FROM carrito_detalle d WHERE d.carrito_id = c.id),
+                total_unidades   = (SELECT coalesce(sum(d.cantidad), 0) FROM carrito_detalle d WHERE d.carrito_id = c.id),
+                precio_total     = (SELECT coalesce(sum(d.precio_total), 0) FROM carrito_detalle d WHERE d.carrito_id = c.id),
+                version          = c.version + 1
+            WHERE c.id IN (:cartIds)
+            """)
+    Mono<Integer> recalcularTotales(Collection<Long> cartIds);
+
+    /**
+     * Crea el carrito del usuario si no existe y retorna su id.
+     * Si ya existe, la actualización vacía bloquea su fila hasta el fin de la transacción,
+     * de modo que las modificaciones concurrentes del mismo carrito se ejecutan en orden.
+     */
+    @Query("""
+            INSERT INTO carrito (userid, createdat, estado, ultimo_movimiento,
+                                 numero_productos, total_unidades, precio_total, emailenviado)
+            VALUES (:userId, :ahora, TRUE, :ahora, 0, 0, 0, FALSE)
+            ON CONFLICT (userid) DO UPDATE SET userid = EXCLUDED.userid
+            RETURNING id
+            """)
+    Mono<Long> upsertCarritoUsuario(Long userId, LocalDateTime ahora);
+
+    /**
+     * Inserta o actualiza la línea del producto, con la presentación del producto consultada en inventario,
+     * y aplica a los totales del carrito la diferencia con la línea anterior, en una sola sentencia.
+     * Retorna el carrito actualizado.
+     */
+    @Query("""
+            WITH anterior AS (
+                SELECT cantidad, precio_total FROM carrito_detalle
+                WHERE carrito_id = :cartId AND producto_id = :productoId
+            ),
+            linea AS (
+                INSERT INTO carrito_detalle (carrito_id, producto_id, cantidad, precio_total,
+                                             nombre_producto, descripcion_producto, precio_unitario, snapshot_en)
+                VALUES (:cartId, :productoId, :cantidad, :precioTotal, :nombre, :descripcion, :precioUnitario, :ahora)
+                ON CONFLICT (carrito_id, producto_id)
+                    DO UPDATE SET cantidad = EXCLUDED.cantidad, precio_total = EXCLUDED.precio_total,
+                                  nombre_producto = EXCLUDED.nombre_producto,
+                                  descripcion_producto = EXCLUDED.descripcion_producto,
+                                  precio_unitario = EXCLUDED.precio_unitario,
+                                  snapshot_en = EXCLUDED.snapshot_en,
+                                  version = carrito_detalle.version + 1
+                RETURNING id
+            )
+            UPDATE carrito
+            SET numero_productos = coalesce(numero_productos, 0) + (SELECT CASE WHEN count(*) = 0 THEN 1 ELSE 0 END FROM anterior),
+                total_unidades   = coalesce(total_unidades, 0) + :cantidad - (SELECT coalesce(sum(cantidad), 0) FROM anterior),
+                precio_total     = coalesce(precio_total, 0) + :precioTotal - (SELECT coalesce(sum(precio_total), 0) FROM anterior),
+                ultimo_movimiento = :ahora,
+                estado = TRUE,
+                emailenviado = FALSE,
+                version = version + 1
+            WHERE id = :cartId AND EXISTS (SELECT 1 FROM linea)
+            RETURNING *
+            """)
+    Mono<Cart> upsertLinea(Long cartId, Long productoId, long cantidad, int precioTotal,
+                           String nombre, String descripcion, int precioUnitario, LocalDateTime ahora);
+
+    /**
+     * Inserta o actualiza varias líneas del carrito, con la presentación de cada producto, y aplica a los
+     * totales la diferencia con las líneas anteriores, en una sola sentencia. Los arreglos se recorren
+     * en paralelo y no deben repetir productos. Retorna el carrito actualizado.
+     */
+    @Query("""
+            WITH entrada AS (
+                SELECT * FROM unnest(CAST(:productoIds AS BIGINT[]), CAST(:cantidades AS BIGINT[]),
+                                     CAST(:preciosTotales AS INTEGER[]), CAST(:nombres AS VARCHAR[]),
+                                     CAST(:descripciones AS TEXT[]), CAST(:preciosUnitarios AS INTEGER[]))
+                    AS e(producto_id, cantidad, precio_total, nombre_producto, descripcion_producto, precio_unitario)
+            ),
+            anterior AS (
+                SELECT d.cantidad, d.precio_total FROM carrito_detalle d
+                JOIN entrada e ON e.producto_id = d.producto_id
+                WHERE d.carrito_id = :cartId
+            ),
+            lineas AS (
+                INSERT INTO carrito_detalle (carrito_id, producto_id, cantidad, precio_total,
+                                             nombre_producto, descripcion_producto, precio_unitario, snapshot_en)
+                SELECT :cartId, producto_id, cantidad, precio_total,
+                       nombre_producto, descripcion_producto, precio_unitario, :ahora
+                FROM entrada
+                ON CONFLICT (carrito_id, producto_id)
+                    DO UPDATE SET cantidad = EXCLUDED.cantidad, precio_total = EXCLUDED.precio_total,
+                                  nombre_producto = EXCLUDED.nombre_producto,
+                                  descripcion_producto = EXCLUDED.descripcion_producto,
+                                  precio_unitario = EXCLUDED.precio_unitario,
+                                  snapshot_en = EXCLUDED.snapshot_en,
+                                  version = carrito_detalle.version + 1
+                RETURNING id
+            )
+            UPDATE carrito
+            SET numero_productos = coalesce(numero_productos, 0) + (SELECT count(*) FROM entrada) - (SELECT count(*) FROM anterior),
+                total_unidades   = coalesce(total_unidades, 0) + (SELECT coalesce(sum(cantidad), 0) FROM entrada)
+                                   - (SELECT coalesce(sum(cantidad), 0) FROM anterior),
+                precio_total     = coalesce(precio_total, 0) + (SELECT coalesce(sum(precio_total), 0) FROM entrada)
+                                   - (SELECT coalesce(sum(precio_total), 0) FROM anterior),
+                ultimo_movimiento = :ahora,
+                estado = TRUE,
+                emailenviado = FALSE,
+                version = version + 1
+            WHERE id = :cartId AND EXISTS (SELECT 1 FROM lineas)
+            RETURNING *
+            """)
+    Mono<Cart> upsertLineas(Long cartId, Long[] productoIds, Long[] cantidades, Integer[] preciosTotales,
+                            String[] nombres, String[] descripciones, Integer[] preciosUnitarios,
+                            LocalDateTime ahora);
+}
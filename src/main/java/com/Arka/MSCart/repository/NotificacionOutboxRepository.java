@@ -0,0 +1,71 @@
+package com.Arka.MSCart.repository;
+
+import com.Arka.MSCart.model.NotificacionOutbox;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+
+/**
+ * Todas las marcas de tiempo del outbox (creación, próximo intento, entrega) se escriben con el reloj de la base
+ * de datos (LOCALTIMESTAMP), el mismo con el que reclamarPendientes las compara: una diferencia de reloj o de zona
+ * horaria entre réplicas y base de datos no adelanta ni retrasa los reintentos.
+ */
+public interface NotificacionOutboxRepository extends ReactiveCrudRepository<NotificacionOutbox, Long> {
+
+    /**
+     * Inserta un evento PENDIENTE disponible de inmediato para el relay. Retorna el evento insertado.
+     */
+    @Query("""
+            INSERT INTO notificacion_outbox (carrito_id, clave_idempotencia, payload, estado, intentos, creado_en, proximo_intento)
+            VALUES (:carritoId, :claveIdempotencia, :payload, 'PENDIENTE', 0, LOCALTIMESTAMP, LOCALTIMESTAMP)
+            RETURNING *
+            """)
+    Mono<NotificacionOutbox> encolar(Long carritoId, String claveIdempotencia, String payload);
+
+    /**
+     * Reclama de forma atómica hasta {@code limite} eventos, en orden de id, cuyo próximo intento ya llegó:
+     * los pendientes y los EN_CURSO cuyo reclamo venció (su relay murió). Los deja EN_CURSO durante
+     * {@code segundosReclamo}; omite las filas que otro relay está reclamando en ese momento.
+     * Retorna los eventos reclamados, sin orden garantizado.
+     */
+    @Query("""
+            UPDATE notificacion_outbox
+            SET estado = 'EN_CURSO',
+                proximo_intento = LOCALTIMESTAMP + CAST(:segundosReclamo AS BIGINT) * INTERVAL '1' SECOND
+            WHERE id IN (
+                SELECT id FROM notificacion_outbox
+                WHERE estado IN ('PENDIENTE', 'EN_CURSO') AND proximo_intento <= LOCALTIMESTAMP
+                ORDER BY id
+                LIMIT :limite
+                FOR UPDATE SKIP LOCKED)
+            RETURNING *
+            """)
+    Flux<NotificacionOutbox> reclamarPendientes(int limite, long segundosReclamo);
+
+    /**
+     * Marca los eventos indicados como entregados. Retorna el número de eventos modificados.
+     */
+    @Modifying
+    @Query("UPDATE notificacion_outbox SET estado = 'ENVIADO', enviado_en = LOCALTIMESTAMP WHERE id IN (:ids)")
+    Mono<Integer> marcarEnviados(Collection<Long> ids);
+
+    /**
+     * Registra un intento fallido y reprograma los eventos reclamados indicados dentro de
+     * {@code segundosReintento}; al alcanzar
+     * {@code maxIntentos} el evento pasa a FALLIDO y el relay deja de intentarlo. Un evento que otro relay
+     * ya entregó tras vencer el reclamo no se modifica.
+     */
+    @Modifying
+    @Query("""
+            UPDATE notificacion_outbox
+            SET intentos = intentos + 1,
+                proximo_intento = LOCALTIMESTAMP + CAST(:segundosReintento AS BIGINT) * INTERVAL '1' SECOND,
+                estado = CASE WHEN intentos + 1 >= :maxIntentos THEN 'FALLIDO' ELSE 'PENDIENTE' END
+            WHERE id IN (:ids) AND estado = 'EN_CURSO'
+            """)
+    Mono<Integer> registrarFallo(Collection<Long> ids, long segundosReintento, int maxIntentos);
+}
@@ -1,18 +1,24 @@
 package com.Arka.MSCart.service;
 
-import com.Arka.MSCart.client.AuthClient;
-import com.Arka.MSCart.client.InventarioClient;
+import com.Arka.MSCart.cache.UsuarioCache;
 import com.Arka.MSCart.dto.AdminDto.CartDto;
+import com.Arka.MSCart.dto.AdminDto.DescuadreTotalesDto;
+import com.Arka.MSCart.dto.AdminDto.PaginaCarritosDto;
 import com.Arka.MSCart.dto.CartWithProductsDto;
-import com.Arka.MSCart.dto.ProductInCartDto;
 import com.Arka.MSCart.exception.CarritoNoEncontradoException;
 import com.Arka.MSCart.model.Cart;
-import com.Arka.MSCart.repository.CartDetailRepository;
+import com.Arka.MSCart.repository.CartReadRepository;
 import com.Arka.MSCart.repository.CartRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.data.relational.core.query.Criteria;
+import org.springframework.data.relational.core.query.Query;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -26,10 +32,19 @@ public class CartAdminService {
 
     private static final Logger log = LoggerFactory.getLogger(CartAdminService.class);
 
+    private static final String TAREA_BARRIDO = "barrido-carritos-abandonados";
+    private static final String METRICA_BARRIDO = "ms.cart.barrido.abandonados";
+    private static final String METRICA_BARRIDO_CARRITOS = "ms.cart.barrido.abandonados.carritos";
+    private static final String METRICA_DESCUADRES = "ms.cart.totales.descuadres";
+    private static final int TAMANO_PAGINA_DEFECTO = 50;
+
     private final CartRepository cartRepository;
-    private final CartDetailRepository cartDetailRepository;
-    private final AuthClient authClient;
-    private final InventarioClient inventarioClient;
+    private final UsuarioCache usuarioCache;
+    private final RespuestaCarrito respuestaCarrito;
+    private final MeterRegistry meterRegistry;
+    private final JobLeaseService jobLeaseService;
+    private final R2dbcEntityTemplate entityTemplate;
+    private final CartReadRepository cartReadRepository;
 
     // Tiempo de abandono de carrito en minutos
     @Value("${ms.cart.abandonCart.time}")
@@ -39,14 +54,36 @@ public class CartAdminService {
     @Value("${ms.cart.functionAbandonCart.time}")
     private int functionAbandonCartTimeMinutes;
 
+    // Número máximo de carritos marcados por sentencia en el barrido de abandonados
+    @Value("${ms.cart.abandonCart.tamanoLote:1000}")
+    private int tamanoLoteBarrido;
+
+    // Tamaño máximo de página del listado paginado de carritos
+    @Value("${ms.cart.admin.tamanoMaximoPagina:500}")
+    private int tamanoMaximoPagina;
+
+    // Carritos leídos por consulta en los listados completos y en streaming
+    @Value("${ms.cart.admin.tamanoLoteStream:500}")
+    private int tamanoLoteStream;
+
+    // Consultas simultáneas máximas de usuarios hacia AuthClient en los listados
+    @Value("${ms.cart.admin.concurrenciaUsuarios:8}")
+    private int concurrenciaUsuarios;
+
     public CartAdminService(CartRepository cartRepository,
-                            CartDetailRepository cartDetailRepository,
-                            AuthClient authClient,
-                            InventarioClient inventarioClient) {
+                            UsuarioCache usuarioCache,
+                            RespuestaCarrito respuestaCarrito,
+                            MeterRegistry meterRegistry,
+                            JobLeaseService jobLeaseService,
+                            R2dbcEntityTemplate entityTemplate,
+                            CartReadRepository cartReadRepository) {
         this.cartRepository = cartRepository;
-        this.cartDetailRepository = cartDetailRepository;
-        this.authClient = authClient;
-        this.inventarioClient = inventarioClient;
+        this.usuarioCache = usuarioCache;
+        this.respuestaCarrito = respuestaCarrito;
+        this.meterRegistry = meterRegistry;
+        this.jobLeaseService = jobLeaseService;
+        this.entityTemplate = entityTemplate;
+        this.cartReadRepository = cartReadRepository;
     }
 
     // Función que se ejecuta periódicamente para determinar si un carrito está abandonado
@@ -55,133 +92,160 @@ public class CartAdminService {
         Duration intervaloEjecucionFuncion = Duration.ofMinutes(functionAbandonCartTimeMinutes);
         Duration tiempoAbandonoCarrito = Duration.ofMinutes(cartAbandonTimeMinutes);
 
+        // El lease dura más que el intervalo para que la réplica propietaria lo renueve en cada ejecución
+        Duration duracionLease = intervaloEjecucionFuncion.plus(intervaloEjecucionFuncion.dividedBy(2));
+
         Flux.interval(intervaloEjecucionFuncion, intervaloEjecucionFuncion, Schedulers.parallel())
-                .flatMap(tick -> {
-                    LocalDateTime now = LocalDateTime.now();
-                    LocalDateTime cutoff = now.minus(tiempoAbandonoCarrito);
-
-                    return cartRepository.findAll()
-                            .filter(Cart::isEstado)
-                            .filter(cart -> {
-                                LocalDateTime last = cart.getUltimoMovimiento() != null ? cart.getUltimoMovimiento() : cart.getCreatedAt();
-                                return last != null && last.isBefore(cutoff);
-                            })
-                            .flatMap(cart -> {
-                                cart.setEstado(false);
-                                return cartRepository.save(cart);
-                            })
-                            .then();
-                })
-                .doOnError(e -> log.error("Error en verificación de carritos abandonados", e))
+                .onBackpressureDrop()
+                // Un barrido no empieza hasta que termina el anterior, y solo una réplica lo ejecuta en cada intervalo
+                .concatMap(tick -> jobLeaseService.ejecutarConLease(TAREA_BARRIDO, duracionLease,
+                                Mono.defer(() -> barrerCarritosAbandonados(LocalDateTime.now().minus(tiempoAbandonoCarrito))))
+                        .onErrorResume(e -> {
+                            log.error("Error en verificación de carritos abandonados", e);
+                            return Mono.empty();
+                        }))
                 .subscribe();
     }
 
-    // Obtiene todos los carritos con información de usuario
+    /**
+     * Marca como abandonados, en la base de datos y por lotes, los carritos activos sin movimiento desde el corte.
+     * Retorna el total de carritos modificados.
+     */
+    public Mono<Long> barrerCarritosAbandonados(LocalDateTime cutoff) {
+        Timer.Sample inicio = Timer.start(meterRegistry);
+
+        return cartRepository.marcarCarritosAbandonados(cutoff, tamanoLoteBarrido)
+                // Mientras el lote venga completo puede quedar trabajo pendiente
+                .expand(modificados -> modificados >= tamanoLoteBarrido
+                        ? cartRepository.marcarCarritosAbandonados(cutoff, tamanoLoteBarrido)
+                        : Mono.empty())
+                .reduce(0L, (total, modificados) -> total + modificados)
+                .doOnNext(total -> {
+                    long duracionNanos = inicio.stop(meterRegistry.timer(METRICA_BARRIDO));
+                    meterRegistry.counter(METRICA_BARRIDO_CARRITOS).increment(total);
+                    log.info("Barrido de carritos abandonados: {} carritos marcados en {} ms",
+                            total, Duration.ofNanos(duracionNanos).toMillis());
+                });
+    }
+
+    /**
+     * Busca los carritos cuyos totales incrementales no coinciden con la suma de sus líneas.
+     */
+    public Flux<DescuadreTotalesDto> verificarTotales() {
+        return cartRepository.buscarDescuadresTotales()
+                .doOnNext(descuadre -> {
+                    meterRegistry.counter(METRICA_DESCUADRES).increment();
+                    log.warn("Totales descuadrados en el carrito {}: guardado ({}, {}, {}) real ({}, {}, {})",
+                            descuadre.getCarritoId(),
+                            descuadre.getNumeroProductos(), descuadre.getTotalUnidades(), descuadre.getPrecioTotal(),
+                            descuadre.getNumeroProductosReal(), descuadre.getTotalUnidadesReal(), descuadre.getPrecioTotalReal());
+                });
+    }
+
+    /**
+     * Recalcula desde sus líneas los totales de los carritos descuadrados.
+     * Retorna los descuadres encontrados antes de corregirlos.
+     */
+    public Flux<DescuadreTotalesDto> corregirTotales() {
+        return verificarTotales()
+                .collectList()
+                .flatMapMany(descuadres -> descuadres.isEmpty()
+                        ? Flux.empty()
+                        : cartRepository.recalcularTotales(descuadres.stream().map(DescuadreTotalesDto::getCarritoId).toList())
+                                .doOnNext(corregidos -> log.info("Totales recalculados en {} carritos", corregidos))
+                                .thenMany(Flux.fromIterable(descuadres)));
+    }
+
+    // Obtiene todos los carritos con información de usuario, leyendo la tabla por páginas de id
     public Flux<CartDto> getAllCartsAdmin() {
-        return cartRepository.findAll()
-                .flatMap(cart -> authClient.consultarUsuario(cart.getUserId())
-                        .map(userDto -> new CartDto(
-                                cart.getId(),
-                                userDto.getName(),
-                                cart.getNumeroProductos(),
-                                cart.isEstado(),
-                                cart.getCreatedAt(),
-                                cart.getUltimoMovimiento()
-                        ))
-                );
+        return streamCarritos(null, null, null);
     }
 
-    // Obtiene todos los carritos abandonados con información de usuario
+    // Obtiene todos los carritos abandonados con información de usuario (filtro en la base de datos)
     public Flux<CartDto> getAbandonedCarts() {
-        return cartRepository.findAll()
-                .filter(cart -> !cart.isEstado())
-                .flatMap(cart ->
-                        authClient.consultarUsuario(cart.getUserId())
-                            .map(userDto -> new CartDto(
-                                cart.getId(),
-                                userDto.getName(),
-                                cart.getNumeroProductos(),
-                                cart.isEstado(),
-                                cart.getCreatedAt(),
-                                cart.getUltimoMovimiento()
-                        ))
-                );
+        return streamCarritos(false, null, null);
+    }
+
+    /**
+     * Retorna una página de carritos ordenada por id, a partir del cursor indicado (id del último carrito
+     * de la página anterior). Los filtros de estado y de rango de último movimiento se aplican en la base de datos.
+     */
+    public Mono<PaginaCarritosDto> listarCarritos(Boolean estado, LocalDateTime desde, LocalDateTime hasta,
+                                                  Long cursor, Integer tamano) {
+        int tamanoPagina = tamano == null ? TAMANO_PAGINA_DEFECTO : Math.max(1, Math.min(tamano, tamanoMaximoPagina));
+
+        return buscarPagina(estado, desde, hasta, cursor, tamanoPagina)
+                .collectList()
+                .flatMap(carritos -> Flux.fromIterable(carritos)
+                        // Conserva el orden de la página con concurrencia acotada hacia AuthClient
+                        .flatMapSequential(this::construirCartDto, concurrenciaUsuarios)
+                        .collectList()
+                        .map(dtos -> new PaginaCarritosDto(dtos,
+                                carritos.size() == tamanoPagina ? carritos.get(carritos.size() - 1).getId() : null)));
     }
 
-    // Obtiene un carrito con sus productos por ID de carrito
+    /**
+     * Recorre todos los carritos que cumplen los filtros, página a página por id, y emite cada uno en cuanto
+     * se completa con la información de su usuario. La memoria usada no depende del tamaño de la tabla.
+     */
+    public Flux<CartDto> streamCarritos(Boolean estado, LocalDateTime desde, LocalDateTime hasta) {
+        return buscarPagina(estado, desde, hasta, null, tamanoLoteStream)
+                .collectList()
+                // La siguiente página se pide cuando se termina de leer la actual, a partir de su último id
+                .expand(pagina -> pagina.size() < tamanoLoteStream
+                        ? Mono.empty()
+                        : buscarPagina(estado, desde, hasta, pagina.get(pagina.size() - 1).getId(), tamanoLoteStream)
+                                .collectList())
+                .concatMapIterable(pagina -> pagina)
+                .flatMap(this::construirCartDto, concurrenciaUsuarios);
+    }
+
+    private Flux<Cart> buscarPagina(Boolean estado, LocalDateTime desde, LocalDateTime hasta, Long cursor, int limite) {
+        Criteria criteria = Criteria.empty();
+        if (cursor != null) {
+            criteria = criteria.and("id").greaterThan(cursor);
+        }
+        if (estado != null) {
+            criteria = criteria.and("estado").is(estado);
+        }
+        if (desde != null) {
+            criteria = criteria.and("ultimoMovimiento").greaterThanOrEquals(desde);
+        }
+        if (hasta != null) {
+            criteria = criteria.and("ultimoMovimiento").lessThan(hasta);
+        }
+
+        return entityTemplate.select(Cart.class)
+                .matching(Query.query(criteria).sort(Sort.by("id")).limit(limite))
+                .all();
+    }
+
+    // Completa el carrito con el nombre del usuario; si la consulta falla el carrito se lista igual
+    private Mono<CartDto> construirCartDto(Cart cart) {
+        return usuarioCache.consultarUsuario(cart.getUserId())
+                .map(userDto -> userDto.getName())
+                .onErrorResume(ex -> {
+                    log.warn("Error consultando usuario {} para carrito {}: {}",
+                            cart.getUserId(), cart.getId(), ex.getMessage());
+                    return Mono.empty();
+                })
+                .defaultIfEmpty("Usuario no disponible")
+                .map(nombreUsuario -> new CartDto(
+                        cart.getId(),
+                        nombreUsuario,
+                        cart.getNumeroProductos(),
+                        cart.isEstado(),
+                        cart.getCreatedAt(),
+                        cart.getUltimoMovimiento()
+                ));
+    }
+
+    // Obtiene un carrito con sus productos por ID de carrito; la cabecera y las líneas se leen en una sola consulta
     public Mono<CartWithProductsDto> getCartWithProductsIdCart(Long cartId) {
-        return cartRepository.findById(cartId)
+        return cartReadRepository.buscarPorId(cartId)
                 .switchIfEmpty(Mono.error(
                         CarritoNoEncontradoException.conId(cartId)))
-                .flatMap(cart ->
-                    // Consultar información del usuario en paralelo con productos
-                    Mono.zip(
-                        // 1. Obtener información del usuario
-                        authClient.consultarUsuario(cart.getUserId())
-                                .onErrorResume(ex -> {
-                                    log.warn("Error consultando usuario {} para carrito {}: {}",
-                                            cart.getUserId(), cartId, ex.getMessage());
-                                    return Mono.empty();
-                                }),
-
-                        // 2. Obtener productos del carrito
-                        cartDetailRepository.findAllByCarritoId(cart.getId())
-                                .flatMap(detail ->
-                                        inventarioClient.consultarProducto(detail.getProductoId())
-                                                .map(inv -> ProductInCartDto.builder()
-                                                        .id(detail.getId())
-                                                        .productoId(detail.getProductoId())
-                                                        .nombre(inv.getNombre())
-                                                        .descripcion(inv.getDescripcion())
-                                                        .cantidad(detail.getCantidad())
-                                                        .precioUnitario(inv.getPrice())
-                                                        .precioTotal(detail.getPrecioTotal())
-                                                        .build())
-                                                .onErrorResume(ex -> Mono.just(ProductInCartDto.builder()
-                                                        .id(detail.getId())
-                                                        .productoId(detail.getProductoId())
-                                                        .nombre("error en inventario nombre no disponible")
-                                                        .descripcion("error en inventario descripción no disponible")
-                                                        .cantidad(detail.getCantidad())
-                                                        .precioUnitario(0)
-                                                        .precioTotal(detail.getPrecioTotal())
-                                                        .build()))
-                                )
-                                .collectList()
-                    )
-                    .map(tuple -> {
-                        var userDto = tuple.getT1();
-                        var products = tuple.getT2();
-
-                        CartWithProductsDto cartDto = new CartWithProductsDto();
-                        cartDto.setCartId(cart.getId());
-                        cartDto.setUserId(cart.getUserId());
-
-                        // Información del usuario
-                        if (userDto != null) {
-                            cartDto.setNombreUsuario(userDto.getName());
-                            cartDto.setDireccionUsuario(userDto.getDireccion());
-                            cartDto.setTelefonoUsuario(userDto.getTelefono());
-                        } else {
-                            cartDto.setNombreUsuario("Usuario no disponible");
-                            cartDto.setDireccionUsuario("No disponible");
-                            cartDto.setTelefonoUsuario("No disponible");
-                        }
-
-                        // Convertir estado booleano a texto
-                        cartDto.setEstadoCarrito(cart.isEstado() ? "activo" : "inactivo");
-
-                        cartDto.setNumeroProductos(cart.getNumeroProductos());
-                        cartDto.setTotalUnidades(cart.getTotalUnidades());
-                        cartDto.setPrecioTotal(cart.getPrecioTotal());
-                        cartDto.setCreatedAt(cart.getCreatedAt());
-                        cartDto.setUltimoMovimiento(cart.getUltimoMovimiento());
-                        cartDto.setProducts(products);
-
-                        return cartDto;
-                    })
-                );
+                .flatMap(respuestaCarrito::completar);
     }
 
 }
-
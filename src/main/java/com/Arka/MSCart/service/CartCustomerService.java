@@ -1,27 +1,43 @@
 package com.Arka.MSCart.service;
 
-import com.Arka.MSCart.client.AuthClient;
+import com.Arka.MSCart.cache.VistasCarritoEnCurso;
 import com.Arka.MSCart.client.InventarioClient;
+import com.Arka.MSCart.dto.AddProductRequestDTO;
+import com.Arka.MSCart.dto.AddProductsResultDto;
+import com.Arka.MSCart.dto.CartDeltaDto;
 import com.Arka.MSCart.dto.CartWithProductsDto;
 import com.Arka.MSCart.dto.ConsultProductInventarioDto;
 import com.Arka.MSCart.dto.ProductInCartDto;
+import com.Arka.MSCart.exception.CarritoModificadoException;
 import com.Arka.MSCart.exception.CarritoNoEncontradoException;
 import com.Arka.MSCart.exception.ProductoNoEncontradoException;
 import com.Arka.MSCart.exception.StockInsuficienteException;
 import com.Arka.MSCart.model.Cart;
 import com.Arka.MSCart.model.CartDetail;
 import com.Arka.MSCart.repository.CartDetailRepository;
+import com.Arka.MSCart.repository.CartReadRepository;
 import com.Arka.MSCart.repository.CartRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
 import reactor.core.publisher.Mono;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 /**
  * Servicio de Carrito para Clientes
  * Capa de Lógica de Negocio
+ *
+ * Las lecturas concurrentes del carrito de un usuario comparten una sola ejecución (VistasCarritoEnCurso).
+ * Las mutaciones de un mismo usuario se ejecutan en orden (MutacionesCarrito) y cada una invalida la lectura
+ * en curso al terminar; entre réplicas, la versión del carrito detecta las modificaciones concurrentes.
  */
 @Service
 public class CartCustomerService {
@@ -31,102 +47,175 @@ public class CartCustomerService {
     private final CartRepository cartRepository;
     private final CartDetailRepository cartDetailRepository;
     private final InventarioClient inventarioClient;
-    private final AuthClient authClient;
+    private final RespuestaCarrito respuestaCarrito;
+    private final TransactionalOperator transactionalOperator;
+    private final CartReadRepository cartReadRepository;
+    private final VistasCarritoEnCurso vistasEnCurso;
+    private final MutacionesCarrito mutacionesCarrito;
+    private final ConflictosCarrito conflictosCarrito;
 
     public CartCustomerService(CartRepository cartRepository,
                               CartDetailRepository cartDetailRepository,
                               InventarioClient inventarioClient,
-                              AuthClient authClient) {
+                              RespuestaCarrito respuestaCarrito,
+                              TransactionalOperator transactionalOperator,
+                              CartReadRepository cartReadRepository,
+                              VistasCarritoEnCurso vistasEnCurso,
+                              MutacionesCarrito mutacionesCarrito,
+                              ConflictosCarrito conflictosCarrito) {
         this.cartRepository = cartRepository;
         this.cartDetailRepository = cartDetailRepository;
         this.inventarioClient = inventarioClient;
-        this.authClient = authClient;
+        this.respuestaCarrito = respuestaCarrito;
+        this.transactionalOperator = transactionalOperator;
+        this.cartReadRepository = cartReadRepository;
+        this.vistasEnCurso = vistasEnCurso;
+        this.mutacionesCarrito = mutacionesCarrito;
+        this.conflictosCarrito = conflictosCarrito;
+    }
+
+    // Ejecuta la mutación en orden con las demás del mismo usuario; dentro de su turno se reintenta
+    // completa si otra réplica modificó el carrito entre su lectura y su actualización
+    private <T> Mono<T> mutar(Long userId, String operacion, Mono<T> mutacion) {
+        return mutacionesCarrito.ejecutar(userId, conflictosCarrito.reintentar(operacion, mutacion));
     }
 
 
-    // Agrega un producto al carrito del usuario
+    // Agrega un producto al carrito del usuario y retorna el carrito completo
     public Mono<CartWithProductsDto> addProductToCart(Long userId, Long productId, Long quantity) {
+        return agregarProducto(userId, productId, quantity)
+                // La presentación del producto agregado ya se conoce por la consulta de stock
+                .flatMap(agregado -> construirRespuesta(agregado.cart(), Map.of(productId, agregado.producto())));
+    }
+
+    // Agrega un producto al carrito del usuario y retorna solo la línea modificada y los nuevos totales
+    public Mono<CartDeltaDto> addProductToCartDelta(Long userId, Long productId, Long quantity) {
+        return agregarProducto(userId, productId, quantity)
+                .map(agregado -> construirDelta(agregado.cart(), ProductInCartDto.builder()
+                        .productoId(productId)
+                        .nombre(agregado.producto().getNombre())
+                        .descripcion(agregado.producto().getDescripcion())
+                        .cantidad(quantity)
+                        .precioUnitario(agregado.producto().getPrice())
+                        .precioTotal((int) (quantity * agregado.producto().getPrice()))
+                        .build(), null));
+    }
+
+    // Valida el stock y guarda la línea; retorna el carrito actualizado y el producto consultado en inventario
+    private Mono<ProductoAgregado> agregarProducto(Long userId, Long productId, Long quantity) {
+        // El stock siempre se consulta directamente al inventario, nunca desde caché
         return inventarioClient.consultarProducto(productId)
                 .flatMap(stockPrice -> {
-                    // Validación de negocio: cantidad válida
-                    if (quantity <= 0) {
-                        return Mono.error(StockInsuficienteException.cantidadInvalida(quantity));
+                    StockInsuficienteException rechazo = validarStock(productId, quantity, stockPrice);
+                    if (rechazo != null) {
+                        return Mono.error(rechazo);
                     }
 
-                    // Validación de negocio: stock suficiente
-                    Integer stockInventario = stockPrice.getStock();
-                    if (stockInventario == null || stockInventario == 0) {
-                        return Mono.error(StockInsuficienteException.sinStock(productId));
-                    }
-                    if (stockInventario < quantity) {
-                        return Mono.error(StockInsuficienteException.conDetalles(productId, stockInventario, quantity));
+                    // Upsert del carrito y de la línea en una transacción de dos sentencias
+                    int precioTotalLinea = (int) (quantity * stockPrice.getPrice());
+                    LocalDateTime ahora = LocalDateTime.now();
+
+                    return mutar(userId, "agregar", cartRepository.upsertCarritoUsuario(userId, ahora)
+                            .flatMap(cartId -> cartRepository.upsertLinea(cartId, productId, quantity, precioTotalLinea,
+                                    stockPrice.getNombre(), stockPrice.getDescripcion(), stockPrice.getPrice(), ahora))
+                            .as(transactionalOperator::transactional))
+                            .map(cart -> new ProductoAgregado(cart, stockPrice));
+                });
+    }
+
+    // Validaciones de negocio de una línea; retorna el motivo del rechazo o null si la línea es válida
+    private static StockInsuficienteException validarStock(Long productId, Long quantity,
+                                                           ConsultProductInventarioDto stockPrice) {
+        // Validación de negocio: cantidad válida
+        if (quantity == null || quantity <= 0) {
+            return StockInsuficienteException.cantidadInvalida(quantity);
+        }
+
+        // Validación de negocio: stock suficiente
+        Integer stockInventario = stockPrice.getStock();
+        if (stockInventario == null || stockInventario == 0) {
+            return StockInsuficienteException.sinStock(productId);
+        }
+        if (stockInventario < quantity) {
+            return StockInsuficienteException.conDetalles(productId, stockInventario, quantity);
+        }
+        return null;
+    }
+
+    /**
+     * Agrega o actualiza varios productos del carrito del usuario en una sola operación:
+     * una consulta por lote al inventario, una transacción con todas las líneas válidas
+     * y una sola respuesta con el resultado de cada producto.
+     */
+    public Mono<AddProductsResultDto> addProductsToCart(Long userId, List<AddProductRequestDTO> productos) {
+        // Un producto repetido en la solicitud se agrega una sola vez con la suma de sus cantidades
+        Map<Long, Long> cantidades = new LinkedHashMap<>();
+        productos.forEach(p -> cantidades.merge(p.getProductId(), p.getQuantity(), Long::sum));
+
+        // El stock siempre se consulta directamente al inventario, nunca desde caché
+        return inventarioClient.consultarProductos(cantidades.keySet())
+                .flatMap(inventario -> {
+                    List<AddProductsResultDto.ResultadoProductoDto> resultados = new ArrayList<>(cantidades.size());
+                    Map<Long, ConsultProductInventarioDto> aceptados = new LinkedHashMap<>();
+
+                    cantidades.forEach((productId, quantity) -> {
+                        ConsultProductInventarioDto stockPrice = inventario.get(productId);
+                        RuntimeException rechazo = stockPrice == null
+                                ? ProductoNoEncontradoException.enInventario(productId)
+                                : validarStock(productId, quantity, stockPrice);
+                        if (rechazo == null) {
+                            aceptados.put(productId, stockPrice);
+                        }
+                        resultados.add(new AddProductsResultDto.ResultadoProductoDto(productId, quantity,
+                                rechazo == null, rechazo == null ? null : rechazo.getMessage()));
+                    });
+
+                    if (aceptados.isEmpty()) {
+                        // Nada que guardar: se responde el carrito actual, si existe
+                        return cartRepository.findByUserId(userId)
+                                .flatMap(cart -> construirRespuesta(cart, Map.of()))
+                                .map(carrito -> new AddProductsResultDto(carrito, resultados))
+                                .defaultIfEmpty(new AddProductsResultDto(null, resultados));
                     }
 
-                    // Obtener o crear el carrito del usuario
-                    return cartRepository.findByUserId(userId)
-                            .switchIfEmpty(Mono.defer(() -> {
-                                Cart newCart = Cart.builder()
-                                        .userId(userId)
-                                        .estado(true)
-                                        .createdAt(LocalDateTime.now())
-                                        .ultimoMovimiento(LocalDateTime.now())
-                                        .numeroProductos(0L)
-                                        .emailEnviado(false)
-                                        .build();
-                                return cartRepository.save(newCart);
-                            }))
-                            .flatMap(cart ->
-                                    // Verificar si el producto ya está en el carrito
-                                    cartDetailRepository.findByCarritoIdAndProductoId(cart.getId(), productId)
-                                            .flatMap(cartDetail -> {
-                                                // Si ya existe, actualizar la cantidad
-                                                cartDetail.setCantidad(quantity);
-                                                cartDetail.setPrecioTotal((int) (quantity * stockPrice.getPrice()));
-                                                return cartDetailRepository.save(cartDetail);
-                                            })
-                                            // Si no existe, crear un nuevo detalle de carrito
-                                            .switchIfEmpty(Mono.defer(() -> {
-                                                CartDetail newProductDetail = CartDetail.builder()
-                                                        .carritoId(cart.getId())
-                                                        .productoId(productId)
-                                                        .cantidad(quantity)
-                                                        .precioTotal((int) (quantity * stockPrice.getPrice()))
-                                                        .build();
-                                                return cartDetailRepository.save(newProductDetail);
-                                            }))
-                                            // Actualizar contadores y totales del carrito
-                                            .flatMap(savedDetail ->
-                                                    // Obtener todos los detalles del carrito para calcular totales
-                                                    cartDetailRepository.findAllByCarritoId(cart.getId())
-                                                            .collectList()
-                                                            .flatMap(allDetails -> {
-                                                                // Calcular número de productos diferentes
-                                                                Long numeroProductos = (long) allDetails.size();
-
-                                                                // Calcular total de unidades (suma de cantidades)
-                                                                Long totalUnidades = allDetails.stream()
-                                                                        .mapToLong(CartDetail::getCantidad)
-                                                                        .sum();
-
-                                                                // Calcular precio total (suma de precios totales)
-                                                                Integer precioTotal = allDetails.stream()
-                                                                        .mapToInt(CartDetail::getPrecioTotal)
-                                                                        .sum();
-
-                                                                // Actualizar el carrito
-                                                                cart.setUltimoMovimiento(LocalDateTime.now());
-                                                                cart.setNumeroProductos(numeroProductos);
-                                                                cart.setTotalUnidades(totalUnidades);
-                                                                cart.setPrecioTotal(precioTotal);
-                                                                cart.setEstado(true);
-                                                                cart.setEmailEnviado(false);
-
-                                                                return cartRepository.save(cart).thenReturn(savedDetail);
-                                                            })
-                                            )
-                            );
+                    return mutar(userId, "agregarLote", guardarLineas(userId, aceptados, cantidades))
+                            // La presentación de los productos agregados ya se conoce por la consulta de stock
+                            .flatMap(cart -> construirRespuesta(cart, aceptados))
+                            .map(carrito -> new AddProductsResultDto(carrito, resultados));
                 })
-                .then(Mono.defer(() -> getCartWithProducts(userId)));
+                .doOnError(ex -> log.error("Error en addProductsToCart userId={} -> {}", userId, ex.toString()));
+    }
+
+    // Upsert del carrito y de todas las líneas aceptadas en una transacción de dos sentencias
+    private Mono<Cart> guardarLineas(Long userId,
+                                     Map<Long, ConsultProductInventarioDto> aceptados,
+                                     Map<Long, Long> cantidades) {
+        int tamano = aceptados.size();
+        Long[] productoIds = new Long[tamano];
+        Long[] cantidadesLinea = new Long[tamano];
+        Integer[] preciosTotales = new Integer[tamano];
+        String[] nombres = new String[tamano];
+        String[] descripciones = new String[tamano];
+        Integer[] preciosUnitarios = new Integer[tamano];
+
+        int i = 0;
+        for (Map.Entry<Long, ConsultProductInventarioDto> aceptado : aceptados.entrySet()) {
+            ConsultProductInventarioDto producto = aceptado.getValue();
+            long cantidad = cantidades.get(aceptado.getKey());
+            productoIds[i] = aceptado.getKey();
+            cantidadesLinea[i] = cantidad;
+            preciosTotales[i] = (int) (cantidad * producto.getPrice());
+            nombres[i] = producto.getNombre();
+            descripciones[i] = producto.getDescripcion();
+            preciosUnitarios[i] = producto.getPrice();
+            i++;
+        }
+
+        LocalDateTime ahora = LocalDateTime.now();
+        return cartRepository.upsertCarritoUsuario(userId, ahora)
+                .flatMap(cartId -> cartRepository.upsertLineas(cartId, productoIds, cantidadesLinea, preciosTotales,
+                        nombres, descripciones, preciosUnitarios, ahora))
+                .as(transactionalOperator::transactional);
     }
 
     // Consulta la información de un producto en inventario
@@ -135,144 +224,182 @@ public class CartCustomerService {
     }
 
     /**
-     * Obtiene el carrito del usuario con toda la información de productos y datos del usuario
+     * Obtiene el carrito del usuario con toda la información de productos y datos del usuario.
+     * La cabecera y las líneas se leen en una sola consulta.
      */
     public Mono<CartWithProductsDto> getCartWithProducts(Long userId) {
-        return cartRepository.findByUserId(userId)
+        return cartReadRepository.buscarPorUsuario(userId)
                 .switchIfEmpty(Mono.error(
                         CarritoNoEncontradoException.paraUsuario(userId)))
-                .flatMap(cart ->
-                    // Consultar información del usuario en paralelo con productos
-                    Mono.zip(
-                        // 1. Obtener información del usuario
-                        authClient.consultarUsuario(userId)
-                                .onErrorResume(ex -> {
-                                    log.warn("Error consultando usuario {}: {}", userId, ex.getMessage());
-                                    return Mono.empty();
-                                }),
-
-                        // 2. Obtener productos del carrito
-                        cartDetailRepository.findAllByCarritoId(cart.getId())
-                                .flatMap(detail ->
-                                        inventarioClient.consultarProducto(detail.getProductoId())
-                                            .map(inv -> ProductInCartDto.builder()
-                                                    .id(detail.getId())
-                                                    .productoId(detail.getProductoId())
-                                                    .nombre(inv.getNombre())
-                                                    .descripcion(inv.getDescripcion())
-                                                    .cantidad(detail.getCantidad())
-                                                    .precioUnitario(inv.getPrice())
-                                                    .precioTotal(detail.getPrecioTotal())
-                                                    .build())
-                                                .onErrorResume(ex -> Mono.just(ProductInCartDto.builder()
-                                                        .id(detail.getId())
-                                                        .productoId(detail.getProductoId())
-                                                        .nombre("error en inventario nombre no disponible")
-                                                        .descripcion("error en inventario descripción no disponible")
-                                                        .cantidad(detail.getCantidad())
-                                                        .precioUnitario(0)
-                                                        .precioTotal(detail.getPrecioTotal())
-                                                        .build()))
-                                )
-                                .collectList()
-                    )
-                    .map(tuple -> {
-                        var userDto = tuple.getT1();
-                        var products = tuple.getT2();
-
-                        CartWithProductsDto cartDto = new CartWithProductsDto();
-                        cartDto.setCartId(cart.getId());
-                        cartDto.setUserId(cart.getUserId());
-
-                        // Información del usuario
-                        if (userDto != null) {
-                            cartDto.setNombreUsuario(userDto.getName());
-                            cartDto.setDireccionUsuario(userDto.getDireccion());
-                            cartDto.setTelefonoUsuario(userDto.getTelefono());
-                        } else {
-                            cartDto.setNombreUsuario("Usuario no disponible");
-                            cartDto.setDireccionUsuario("No disponible");
-                            cartDto.setTelefonoUsuario("No disponible");
-                        }
+                .flatMap(respuestaCarrito::completar);
+    }
 
-                        // Convertir estado booleano a texto
-                        cartDto.setEstadoCarrito(cart.isEstado() ? "activo" : "inactivo");
+    // Lee las líneas del carrito y construye la respuesta completa; los productos ya conocidos no se consultan
+    private Mono<CartWithProductsDto> construirRespuesta(Cart cart, Map<Long, ConsultProductInventarioDto> conocidos) {
+        return cartDetailRepository.findAllByCarritoId(cart.getId())
+                .collectList()
+                .flatMap(detalles -> respuestaCarrito.construir(cart, detalles, conocidos));
+    }
 
-                        cartDto.setNumeroProductos(cart.getNumeroProductos());
-                        cartDto.setTotalUnidades(cart.getTotalUnidades());
-                        cartDto.setPrecioTotal(cart.getPrecioTotal());
-                        cartDto.setCreatedAt(cart.getCreatedAt());
-                        cartDto.setUltimoMovimiento(cart.getUltimoMovimiento());
-                        cartDto.setProducts(products);
+    // Respuesta compacta: la línea modificada (o el producto eliminado) y los nuevos totales del carrito
+    private CartDeltaDto construirDelta(Cart cart, ProductInCartDto linea, Long productoEliminadoId) {
+        CartDeltaDto delta = new CartDeltaDto();
+        delta.setCartId(cart.getId());
+        delta.setLinea(linea);
+        delta.setProductoEliminadoId(productoEliminadoId);
+        delta.setNumeroProductos(cart.getNumeroProductos());
+        delta.setTotalUnidades(cart.getTotalUnidades());
+        delta.setPrecioTotal(cart.getPrecioTotal());
+        delta.setUltimoMovimiento(cart.getUltimoMovimiento());
+        return delta;
+    }
 
-                        return cartDto;
-                    })
-                );
+    // Aplica al carrito leído la variación de totales de una línea y registra el movimiento;
+    // si otra operación lo modificó desde la lectura falla con CarritoModificadoException
+    private Mono<Cart> aplicarDelta(Cart cart, DeltaTotales delta) {
+        return cartRepository.aplicarDeltaTotales(cart.getId(), cart.getVersion(), delta.productos(), delta.unidades(),
+                        delta.precio(), LocalDateTime.now())
+                .switchIfEmpty(Mono.error(() -> CarritoModificadoException.conId(cart.getId())));
     }
 
-    // Elimina un producto del carrito del usuario
+    // Variación de los totales del carrito producida por el cambio de una línea
+    private record DeltaTotales(long productos, long unidades, int precio) {}
+
+    // Carrito actualizado tras agregar un producto, junto con la información del producto en inventario
+    private record ProductoAgregado(Cart cart, ConsultProductInventarioDto producto) {}
+
+    // Elimina un producto del carrito del usuario y retorna el carrito completo
     public Mono<CartWithProductsDto> removeProductFromCart(Long userId, Long productId) {
-        return cartRepository.findByUserId(userId)
+        return eliminarProducto(userId, productId)
+                .flatMap(cart -> construirRespuesta(cart, Map.of()))
+                .doOnError(ex -> log.error("Error en removeProductFromCart userId={} productId={} -> {}", userId, productId, ex.toString()));
+    }
+
+    // Elimina un producto del carrito del usuario y retorna solo el producto eliminado y los nuevos totales
+    public Mono<CartDeltaDto> removeProductFromCartDelta(Long userId, Long productId) {
+        return eliminarProducto(userId, productId)
+                .map(cart -> construirDelta(cart, null, productId))
+                .doOnError(ex -> log.error("Error en removeProductFromCart userId={} productId={} -> {}", userId, productId, ex.toString()));
+    }
+
+    private Mono<Cart> eliminarProducto(Long userId, Long productId) {
+        return mutar(userId, "eliminar", cartRepository.findByUserId(userId)
                 .switchIfEmpty(Mono.error(CarritoNoEncontradoException.paraUsuario(userId)))
                 .flatMap(cart ->
                         cartDetailRepository.findByCarritoIdAndProductoId(cart.getId(), productId)
                                 .switchIfEmpty(Mono.error(ProductoNoEncontradoException.enCarrito(productId)))
                                 .flatMap(cartDetail ->
-                                        cartDetailRepository.delete(cartDetail)
-                                                .then(
-                                                        // Recalcular totales después de eliminar
-                                                        cartDetailRepository.findAllByCarritoId(cart.getId())
-                                                                .collectList()
-                                                                .flatMap(allDetails -> {
-                                                                    Long numeroProductos = (long) allDetails.size();
-
-                                                                    Long totalUnidades = allDetails.stream()
-                                                                            .mapToLong(CartDetail::getCantidad)
-                                                                            .sum();
-
-                                                                    Integer precioTotal = allDetails.stream()
-                                                                            .mapToInt(CartDetail::getPrecioTotal)
-                                                                            .sum();
-
-                                                                    cart.setNumeroProductos(numeroProductos);
-                                                                    cart.setTotalUnidades(totalUnidades);
-                                                                    cart.setPrecioTotal(precioTotal);
-                                                                    cart.setUltimoMovimiento(LocalDateTime.now());
-                                                                    cart.setEstado(true);
-
-                                                                    return cartRepository.save(cart).thenReturn(cart);
-                                                                })
-                                                )
+                                        // Descontar la línea de los totales antes de borrarla, en la misma transacción:
+                                        // el carrito se bloquea antes que sus líneas, como en los upserts
+                                        aplicarDelta(cart, new DeltaTotales(-1,
+                                                        -cartDetail.getCantidad(), -cartDetail.getPrecioTotal()))
+                                                .flatMap(actualizado -> cartDetailRepository.delete(cartDetail)
+                                                        .thenReturn(actualizado))
+                                                .onErrorMap(OptimisticLockingFailureException.class,
+                                                        ex -> CarritoModificadoException.conId(cart.getId(), ex))
+                                                .as(transactionalOperator::transactional)
                                 )
-                )
-                .flatMap(cart -> getCartWithProducts(userId))
-                .doOnError(ex -> log.error("Error en removeProductFromCart userId={} productId={} -> {}", userId, productId, ex.toString()));
+                ));
     }
 
-    // Muestra el carrito del usuario con productos
+    // Muestra el carrito del usuario con productos, desde la presentación guardada en sus líneas
     public Mono<CartWithProductsDto> viewCart(Long userId) {
-        return getCartWithProducts(userId)
+        return viewCart(userId, false);
+    }
+
+    /**
+     * Muestra el carrito del usuario con productos. Con refrescar, consulta antes la información vigente
+     * de todos los productos en inventario y actualiza la presentación guardada de las líneas que cambiaron.
+     */
+    public Mono<CartWithProductsDto> viewCart(Long userId, boolean refrescar) {
+        // Refrescar guarda la presentación de las líneas: es una mutación y no se comparte
+        Mono<CartWithProductsDto> carrito = refrescar
+                ? mutar(userId, "refrescar", cartRepository.findByUserId(userId)
+                        .switchIfEmpty(Mono.error(CarritoNoEncontradoException.paraUsuario(userId)))
+                        .flatMap(this::refrescarSnapshots))
+                : vistasEnCurso.compartir(userId, () -> getCartWithProducts(userId));
+        return carrito
                 .doOnError(ex -> log.error("Error en viewCart userId={} -> {}", userId, ex.toString()));
     }
 
+    // Actualiza la presentación guardada de las líneas con el inventario y construye la respuesta con ella;
+    // si el inventario no responde, la respuesta sale de la presentación guardada
+    private Mono<CartWithProductsDto> refrescarSnapshots(Cart cart) {
+        return cartDetailRepository.findAllByCarritoId(cart.getId())
+                .collectList()
+                .flatMap(detalles -> inventarioClient.consultarProductos(
+                                detalles.stream().map(CartDetail::getProductoId).toList())
+                        .onErrorResume(ex -> {
+                            log.warn("Error refrescando productos del carrito {}: {}", cart.getId(), ex.getMessage());
+                            return Mono.just(Map.of());
+                        })
+                        .flatMap(vigentes -> guardarSnapshots(cart.getId(), detalles, vigentes)
+                                .then(respuestaCarrito.construir(cart, detalles, vigentes))));
+    }
+
+    // Guarda en una sola sentencia la presentación de las líneas cuyo snapshot difiere del inventario;
+    // si alguna línea cambió desde su lectura falla con CarritoModificadoException
+    private Mono<Integer> guardarSnapshots(Long cartId, List<CartDetail> detalles,
+                                           Map<Long, ConsultProductInventarioDto> vigentes) {
+        List<CartDetail> desactualizadas = detalles.stream()
+                .filter(detalle -> {
+                    ConsultProductInventarioDto vigente = vigentes.get(detalle.getProductoId());
+                    return vigente != null && (!detalle.tieneSnapshot()
+                            || !Objects.equals(detalle.getNombreProducto(), vigente.getNombre())
+                            || !Objects.equals(detalle.getDescripcionProducto(), vigente.getDescripcion())
+                            || !Objects.equals(detalle.getPrecioUnitario(), vigente.getPrice()));
+                })
+                .toList();
+        if (desactualizadas.isEmpty()) {
+            return Mono.just(0);
+        }
+
+        int tamano = desactualizadas.size();
+        Long[] productoIds = new Long[tamano];
+        Long[] versiones = new Long[tamano];
+        String[] nombres = new String[tamano];
+        String[] descripciones = new String[tamano];
+        Integer[] preciosUnitarios = new Integer[tamano];
+        for (int i = 0; i < tamano; i++) {
+            ConsultProductInventarioDto vigente = vigentes.get(desactualizadas.get(i).getProductoId());
+            productoIds[i] = desactualizadas.get(i).getProductoId();
+            versiones[i] = desactualizadas.get(i).getVersion();
+            nombres[i] = vigente.getNombre();
+            descripciones[i] = vigente.getDescripcion();
+            preciosUnitarios[i] = vigente.getPrice();
+        }
+
+        return cartDetailRepository.actualizarSnapshots(cartId, productoIds, versiones, nombres, descripciones,
+                        preciosUnitarios, LocalDateTime.now())
+                .flatMap(actualizadas -> actualizadas == tamano
+                        ? Mono.just(actualizadas)
+                        : Mono.error(CarritoModificadoException.conId(cartId)))
+                .doOnNext(actualizadas -> log.debug("Snapshots refrescados en el carrito {}: {}", cartId, actualizadas));
+    }
+
     // Limpia el carrito del usuario
     public Mono<CartWithProductsDto> clearCart(Long userId) {
-        return cartRepository.findByUserId(userId)
+        return mutar(userId, "vaciar", cartRepository.findByUserId(userId)
                 .switchIfEmpty(Mono.error(CarritoNoEncontradoException.paraUsuario(userId)))
-                .flatMap(cart ->
-                        cartDetailRepository.findAllByCarritoId(cart.getId())
-                                .flatMap(cartDetailRepository::delete)
-                                .then(Mono.defer(() -> {
-                                        cart.setNumeroProductos(0L);
-                                        cart.setTotalUnidades(0L);
-                                        cart.setPrecioTotal(0);
-                                        cart.setUltimoMovimiento(LocalDateTime.now());
-                                        cart.setEstado(true);
-                                        return cartRepository.save(cart).thenReturn(cart);
-                                }))
-                )
-                .flatMap(c -> getCartWithProducts(userId))
+                .flatMap(cart -> {
+                        cart.setNumeroProductos(0L);
+                        cart.setTotalUnidades(0L);
+                        cart.setPrecioTotal(0);
+                        cart.setUltimoMovimiento(LocalDateTime.now());
+                        cart.setEstado(true);
+                        // El save comprueba la versión leída y bloquea el carrito antes que sus líneas,
+                        // como en los upserts; un carrito o una línea modificados entretanto no borran nada
+                        return cartRepository.save(cart)
+                                .flatMap(vaciado -> cartDetailRepository.findAllByCarritoId(vaciado.getId())
+                                        .flatMap(cartDetailRepository::delete)
+                                        .then(Mono.just(vaciado)))
+                                .onErrorMap(OptimisticLockingFailureException.class,
+                                        ex -> CarritoModificadoException.conId(cart.getId(), ex));
+                })
+                .as(transactionalOperator::transactional))
+                // El carrito queda vacío: no hace falta releerlo ni consultar el inventario
+                .flatMap(cart -> respuestaCarrito.construir(cart, List.of(), Map.of()))
                 .doOnError(ex -> log.error("Error en clearCart userId={} -> {}", userId, ex.toString()));
     }
 
-}
\ No newline at end of file
+}
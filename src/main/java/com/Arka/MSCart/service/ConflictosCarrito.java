@@ -0,0 +1,63 @@
+package com.Arka.MSCart.service;
+
+import com.Arka.MSCart.exception.CarritoModificadoException;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+
+/**
+ * Conflictos de versión en las modificaciones del carrito
+ * Capa de Lógica de Negocio
+ *
+ * Una mutación que encuentra el carrito o una de sus líneas con una versión distinta a la leída
+ * (CarritoModificadoException) se vuelve a ejecutar completa, releyendo el carrito, con espera exponencial
+ * acotada y con jitter. Agotados los reintentos el error llega al cliente como 409 CONFLICT.
+ *
+ * Cada conflicto se cuenta en ms.cart.conflictos con la operación y resultado=reintentado, agotado o descartado
+ * (conflictos de los procesos programados, que se resuelven en su siguiente ejecución).
+ */
+@Component
+public class ConflictosCarrito {
+
+    public static final String REINTENTADO = "reintentado";
+    public static final String AGOTADO = "agotado";
+    public static final String DESCARTADO = "descartado";
+
+    private static final String METRICA = "ms.cart.conflictos";
+
+    private final MeterRegistry meterRegistry;
+    private final int reintentos;
+    private final Duration espera;
+    private final Duration esperaMaxima;
+
+    public ConflictosCarrito(MeterRegistry meterRegistry,
+                             @Value("${ms.cart.conflictos.reintentos:3}") int reintentos,
+                             @Value("${ms.cart.conflictos.espera:10ms}") Duration espera,
+                             @Value("${ms.cart.conflictos.esperaMaxima:200ms}") Duration esperaMaxima) {
+        this.meterRegistry = meterRegistry;
+        this.reintentos = reintentos;
+        this.espera = espera;
+        this.esperaMaxima = esperaMaxima;
+    }
+
+    // Vuelve a ejecutar la mutación mientras falle por conflicto de versión, hasta agotar los reintentos
+    public <T> Mono<T> reintentar(String operacion, Mono<T> mutacion) {
+        return mutacion.retryWhen(Retry.backoff(reintentos, espera)
+                .maxBackoff(esperaMaxima)
+                .filter(CarritoModificadoException.class::isInstance)
+                .doBeforeRetry(senal -> registrar(operacion, REINTENTADO))
+                .onRetryExhaustedThrow((spec, senal) -> {
+                    registrar(operacion, AGOTADO);
+                    return senal.failure();
+                }));
+    }
+
+    // Cuenta un conflicto de la operación con el resultado indicado
+    public void registrar(String operacion, String resultado) {
+        meterRegistry.counter(METRICA, "operacion", operacion, "resultado", resultado).increment();
+    }
+}
@@ -0,0 +1,128 @@
+package com.Arka.MSCart.service;
+
+import com.Arka.MSCart.client.EmailClient;
+import com.Arka.MSCart.dto.notificationDto.EmailRequest;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Servicio de despacho de emails de carritos abandonados
+ * Capa de Lógica de Negocio
+ *
+ * Envía cada email en su propia llamada a la Lambda (con su clave de idempotencia), limita las llamadas por segundo
+ * y la concurrencia hacia la Lambda, y reintenta los errores transitorios con backoff exponencial con jitter.
+ * Informa por cada email si la Lambda lo confirmó, para que quien despacha (el relay del outbox) registre la entrega
+ * o reprograme el email.
+ */
+@Service
+public class EmailDispatcherService {
+
+    private static final Logger log = LoggerFactory.getLogger(EmailDispatcherService.class);
+
+    private final EmailClient emailClient;
+
+    private final Counter emailsEnviados;
+    private final Counter emailsFallidos;
+    private final Timer duracionLlamada;
+    private final AtomicInteger llamadasEnVuelo = new AtomicInteger();
+
+    // Llamadas simultáneas máximas a la Lambda
+    @Value("${lambda.email.concurrencia:4}")
+    private int concurrencia;
+
+    // Llamadas por segundo máximas a la Lambda
+    @Value("${lambda.email.llamadasPorSegundo:10}")
+    private int llamadasPorSegundo;
+
+    @Value("${lambda.email.reintentos:3}")
+    private int reintentos;
+
+    @Value("${lambda.email.backoffMinimo:200ms}")
+    private Duration backoffMinimo;
+
+    @Value("${lambda.email.timeout:10s}")
+    private Duration timeoutLlamada;
+
+    public EmailDispatcherService(EmailClient emailClient, MeterRegistry meterRegistry) {
+        this.emailClient = emailClient;
+        this.emailsEnviados = meterRegistry.counter("ms.cart.email.enviados");
+        this.emailsFallidos = meterRegistry.counter("ms.cart.email.fallidos");
+        this.duracionLlamada = meterRegistry.timer("ms.cart.email.llamada");
+        Gauge.builder("ms.cart.email.en_vuelo", llamadasEnVuelo, AtomicInteger::get)
+                .description("Llamadas a la Lambda de email en curso")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Despacha los emails pendientes respetando la tasa y la concurrencia configuradas.
+     * Emite el resultado de cada email enviado; un email fallido no interrumpe el despacho del resto.
+     */
+    public Flux<ResultadoEnvio> despachar(Flux<EmailPendiente> pendientes) {
+        Duration intervaloEntreLlamadas = Duration.ofNanos(1_000_000_000L / Math.max(1, llamadasPorSegundo));
+
+        return pendientes
+                // Limita la tasa de llamadas: como máximo una llamada por intervalo
+                .delayElements(intervaloEntreLlamadas)
+                .flatMap(this::enviarEmail, Math.max(1, concurrencia));
+    }
+
+    // Envía un email y reporta si la Lambda lo confirmó
+    private Mono<ResultadoEnvio> enviarEmail(EmailPendiente pendiente) {
+        return Mono.defer(() -> {
+                    llamadasEnVuelo.incrementAndGet();
+                    Timer.Sample inicio = Timer.start();
+                    return emailClient.enviar(pendiente.emailRequest(), pendiente.claveIdempotencia())
+                            .timeout(timeoutLlamada)
+                            .doFinally(senal -> {
+                                inicio.stop(duracionLlamada);
+                                llamadasEnVuelo.decrementAndGet();
+                            });
+                })
+                .retryWhen(Retry.backoff(reintentos, backoffMinimo)
+                        .jitter(0.5)
+                        .filter(EmailDispatcherService::esErrorTransitorio))
+                .then(Mono.fromCallable(() -> {
+                    emailsEnviados.increment();
+                    return new ResultadoEnvio(pendiente, true);
+                }))
+                .onErrorResume(ex -> {
+                    emailsFallidos.increment();
+                    log.error("Error enviando el email de carrito abandonado {}: {}", pendiente.claveIdempotencia(), ex.getMessage());
+                    return Mono.just(new ResultadoEnvio(pendiente, false));
+                });
+    }
+
+    // Errores de red, timeouts, 429 y 5xx se reintentan; el resto de errores 4xx no
+    private static boolean esErrorTransitorio(Throwable ex) {
+        if (ex instanceof WebClientResponseException respuesta) {
+            return respuesta.getStatusCode().is5xxServerError() || respuesta.getStatusCode().value() == 429;
+        }
+        return ex instanceof WebClientRequestException || ex instanceof TimeoutException;
+    }
+
+    // Email listo para enviar junto con el evento del outbox que lo originó y su clave de idempotencia
+    public record EmailPendiente(Long outboxId, String claveIdempotencia, EmailRequest emailRequest) {}
+
+    // Email enviado y si la Lambda confirmó su recepción
+    public record ResultadoEnvio(EmailPendiente pendiente, boolean confirmado) {
+
+        public Long outboxId() {
+            return pendiente.outboxId();
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.Arka.MSCart.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Servicio de lease para tareas programadas en un clúster de réplicas
+ * Capa de Lógica de Negocio
+ *
+ * Cada tarea tiene una fila en job_lease con su propietario y fecha de expiración. Una réplica solo ejecuta
+ * la tarea si toma o renueva el lease con una actualización atómica; si el propietario deja de renovarlo
+ * (por ejemplo, porque la réplica murió), otra réplica lo toma cuando expira.
+ *
+ * La expiración se escribe y se compara siempre con el reloj de la base de datos (LOCALTIMESTAMP), de modo
+ * que el desfase de reloj entre réplicas no permite dos propietarios a la vez. Mientras la tarea se ejecuta,
+ * el propietario renueva el lease cada tercio de su duración; si una renovación falla o el lease ya es de
+ * otra réplica, la tarea se cancela (ms.cart.lease.perdidos).
+ */
+@Service
+public class JobLeaseService {
+
+    private static final Logger log = LoggerFactory.getLogger(JobLeaseService.class);
+
+    private static final String METRICA_ADQUISICIONES = "ms.cart.lease.adquisiciones";
+    private static final String METRICA_TRASPASOS = "ms.cart.lease.traspasos";
+    private static final String METRICA_DURACION_TAREA = "ms.cart.tarea.duracion";
+    private static final String METRICA_PERDIDOS = "ms.cart.lease.perdidos";
+
+    private final DatabaseClient databaseClient;
+    private final MeterRegistry meterRegistry;
+    private final String propietario;
+
+    public JobLeaseService(DatabaseClient databaseClient,
+                           MeterRegistry meterRegistry,
+                           @Value("${ms.cart.lease.propietario:}") String propietario) {
+        this.databaseClient = databaseClient;
+        this.meterRegistry = meterRegistry;
+        this.propietario = propietario == null || propietario.isBlank() ? generarPropietario() : propietario;
+    }
+
+    /**
+     * Ejecuta la tarea solo si esta réplica toma o renueva el lease indicado, y lo renueva mientras se ejecuta.
+     * Si otra réplica tiene el lease vigente, completa vacío sin ejecutar la tarea; si el lease se pierde
+     * durante la ejecución, cancela la tarea y completa vacío.
+     */
+    public <T> Mono<T> ejecutarConLease(String nombreTarea, Duration duracionLease, Mono<T> tarea) {
+        return adquirir(nombreTarea, duracionLease)
+                .flatMap(adquirido -> {
+                    if (!adquirido) {
+                        log.debug("Tarea {} omitida: el lease lo tiene otra réplica", nombreTarea);
+                        return Mono.empty();
+                    }
+                    Timer.Sample inicio = Timer.start(meterRegistry);
+                    return tarea
+                            .takeUntilOther(leasePerdido(nombreTarea, duracionLease))
+                            .doFinally(senal -> inicio.stop(meterRegistry.timer(METRICA_DURACION_TAREA,
+                                    "tarea", nombreTarea, "resultado", senal.toString())));
+                });
+    }
+
+    // Toma o renueva el lease de la tarea; retorna true si esta réplica queda como propietaria
+    public Mono<Boolean> adquirir(String nombreTarea, Duration duracionLease) {
+        return crearSiNoExiste(nombreTarea)
+                .then(consultarPropietario(nombreTarea))
+                .flatMap(propietarioAnterior -> actualizar(nombreTarea, duracionLease)
+                        .map(filas -> {
+                            boolean adquirido = filas == 1;
+                            registrarAdquisicion(nombreTarea, adquirido, propietarioAnterior);
+                            return adquirido;
+                        }));
+    }
+
+    // Extiende el lease solo si esta réplica sigue siendo la propietaria
+    public Mono<Boolean> renovar(String nombreTarea, Duration duracionLease) {
+        return databaseClient.sql("""
+                        UPDATE job_lease SET expira_en = LOCALTIMESTAMP + CAST(:milisegundos AS BIGINT) * INTERVAL '0.001' SECOND
+                        WHERE nombre = :nombre AND propietario = :propietario
+                        """)
+                .bind("milisegundos", duracionLease.toMillis())
+                .bind("nombre", nombreTarea)
+                .bind("propietario", propietario)
+                .fetch()
+                .rowsUpdated()
+                .map(filas -> filas == 1);
+    }
+
+    // Libera el lease si esta réplica es la propietaria, para que otra réplica pueda tomarlo de inmediato
+    public Mono<Void> liberar(String nombreTarea) {
+        return databaseClient.sql("""
+                        UPDATE job_lease SET propietario = NULL, expira_en = LOCALTIMESTAMP
+                        WHERE nombre = :nombre AND propietario = :propietario
+                        """)
+                .bind("nombre", nombreTarea)
+                .bind("propietario", propietario)
+                .fetch()
+                .rowsUpdated()
+                .then();
+    }
+
+    public String getPropietario() {
+        return propietario;
+    }
+
+    // Emite cuando una renovación del lease falla o lo encuentra en manos de otra réplica
+    private Mono<Boolean> leasePerdido(String nombreTarea, Duration duracionLease) {
+        return Flux.interval(duracionLease.dividedBy(3))
+                .concatMap(tick -> renovar(nombreTarea, duracionLease)
+                        .onErrorResume(ex -> {
+                            log.warn("Error renovando el lease de la tarea {}: {}", nombreTarea, ex.getMessage());
+                            return Mono.just(false);
+                        }))
+                .filter(renovado -> !renovado)
+                .next()
+                .doOnNext(perdido -> {
+                    meterRegistry.counter(METRICA_PERDIDOS, "tarea", nombreTarea).increment();
+                    log.warn("Lease de la tarea {} perdido durante la ejecución: se cancela la tarea", nombreTarea);
+                });
+    }
+
+    private Mono<Void> crearSiNoExiste(String nombreTarea) {
+        return databaseClient.sql("""
+                        INSERT INTO job_lease (nombre, propietario, expira_en)
+                        SELECT :nombre, NULL, LOCALTIMESTAMP
+                        WHERE NOT EXISTS (SELECT 1 FROM job_lease WHERE nombre = :nombre)
+                        """)
+                .bind("nombre", nombreTarea)
+                .fetch()
+                .rowsUpdated()
+                // Otra réplica creó la fila al mismo tiempo
+                .onErrorResume(DataIntegrityViolationException.class, ex -> Mono.just(0L))
+                .then();
+    }
+
+    private Mono<String> consultarPropietario(String nombreTarea) {
+        return databaseClient.sql("SELECT propietario FROM job_lease WHERE nombre = :nombre")
+                .bind("nombre", nombreTarea)
+                .map(row -> Objects.requireNonNullElse(row.get("propietario", String.class), ""))
+                .one()
+                .defaultIfEmpty("");
+    }
+
+    // Actualización atómica: solo la réplica propietaria o cualquiera con el lease vencido puede tomarlo
+    private Mono<Long> actualizar(String nombreTarea, Duration duracionLease) {
+        return databaseClient.sql("""
+                        UPDATE job_lease
+                        SET propietario = :propietario,
+                            expira_en = LOCALTIMESTAMP + CAST(:milisegundos AS BIGINT) * INTERVAL '0.001' SECOND
+                        WHERE nombre = :nombre
+                          AND (propietario = :propietario OR propietario IS NULL OR expira_en < LOCALTIMESTAMP)
+                        """)
+                .bind("propietario", propietario)
+                .bind("milisegundos", duracionLease.toMillis())
+                .bind("nombre", nombreTarea)
+                .fetch()
+                .rowsUpdated();
+    }
+
+    private void registrarAdquisicion(String nombreTarea, boolean adquirido, String propietarioAnterior) {
+        meterRegistry.counter(METRICA_ADQUISICIONES,
+                "tarea", nombreTarea, "resultado", adquirido ? "adquirido" : "ocupado").increment();
+
+        if (adquirido && !propietarioAnterior.isEmpty() && !propietarioAnterior.equals(propietario)) {
+            meterRegistry.counter(METRICA_TRASPASOS, "tarea", nombreTarea).increment();
+            log.info("Lease de la tarea {} traspasado de {} a {}", nombreTarea, propietarioAnterior, propietario);
+        }
+    }
+
+    private static String generarPropietario() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            host = "desconocido";
+        }
+        return host + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+}
@@ -0,0 +1,76 @@
+package com.Arka.MSCart.service;
+
+import com.Arka.MSCart.cache.VistasCarritoEnCurso;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Ordena las mutaciones del carrito de cada usuario dentro de la réplica
+ * Capa de Lógica de Negocio
+ *
+ * Cada usuario tiene una cola reactiva implícita: una mutación se suscribe cuando termina la anterior del mismo
+ * usuario, sin bloquear hilos ni tomar bloqueos en la base de datos. Las mutaciones de usuarios distintos se
+ * ejecutan en paralelo; la cola de un usuario desaparece cuando no le quedan mutaciones pendientes.
+ *
+ * Solo ordena las mutaciones de esta réplica: entre réplicas, los conflictos los detecta la versión del carrito
+ * (CarritoModificadoException). Una mutación cancelada mientras espera cede su turno cuando termina la anterior,
+ * de modo que la siguiente nunca se adelanta. Una mutación no debe ejecutar otra mutación del mismo usuario
+ * dentro de su turno: esperaría a sí misma.
+ *
+ * Al terminar, cada mutación invalida la lectura en curso del carrito del usuario (VistasCarritoEnCurso).
+ * El tiempo de espera por el turno se registra en ms.cart.mutacion.espera.
+ */
+@Component
+public class MutacionesCarrito {
+
+    private final ConcurrentMap<Long, Turno> ultimos = new ConcurrentHashMap<>();
+    private final VistasCarritoEnCurso vistasEnCurso;
+    private final Timer espera;
+
+    public MutacionesCarrito(VistasCarritoEnCurso vistasEnCurso, MeterRegistry meterRegistry) {
+        this.vistasEnCurso = vistasEnCurso;
+        this.espera = Timer.builder("ms.cart.mutacion.espera")
+                .description("Tiempo de espera de una mutación del carrito por la anterior del mismo usuario")
+                .register(meterRegistry);
+    }
+
+    // Ejecuta la mutación cuando terminan las anteriores del mismo usuario
+    public <T> Mono<T> ejecutar(Long userId, Mono<T> mutacion) {
+        return Mono.defer(() -> {
+            Turno turno = new Turno();
+            // Intercambio atómico del último turno: cada mutación espera exactamente a la anterior
+            Turno anterior = ultimos.put(userId, turno);
+            Mono<Void> turnoAnterior = anterior == null ? Mono.empty() : anterior.terminado();
+            Timer.Sample inicioEspera = Timer.start();
+
+            return turnoAnterior
+                    .doOnTerminate(() -> inicioEspera.stop(espera))
+                    .then(mutacion)
+                    .doFinally(senal -> {
+                        ultimos.remove(userId, turno);
+                        vistasEnCurso.invalidar(userId);
+                        // Cancelada antes de terminar la anterior: cede el turno cuando la anterior termina
+                        turnoAnterior.subscribe(null, null, turno::liberar);
+                    });
+        });
+    }
+
+    private static final class Turno {
+
+        private final Sinks.Empty<Void> fin = Sinks.empty();
+
+        private Mono<Void> terminado() {
+            return fin.asMono();
+        }
+
+        private void liberar() {
+            fin.tryEmitEmpty();
+        }
+    }
+}
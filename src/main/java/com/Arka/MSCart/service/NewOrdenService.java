@@ -8,31 +8,38 @@ import com.Arka.MSCart.exception.CarritoNoEncontradoException;
 import com.Arka.MSCart.exception.CarritoVacioException;
 import com.Arka.MSCart.repository.CartDetailRepository;
 import com.Arka.MSCart.repository.CartRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
 
 @Service
 public class NewOrdenService {
 
+    private static final Logger log = LoggerFactory.getLogger(NewOrdenService.class);
+
     private final CartRepository cartRepository;
     private final CartDetailRepository cartDetailRepository;
     private final CartCustomerService cartCustomerService;
     private final OrdenClient ordenClient;
+    private final MutacionesCarrito mutacionesCarrito;
 
     public NewOrdenService(CartRepository cartRepository,
                            CartDetailRepository cartDetailRepository,
                            CartCustomerService cartCustomerService,
-                           OrdenClient ordenClient) {
+                           OrdenClient ordenClient,
+                           MutacionesCarrito mutacionesCarrito) {
         this.cartRepository = cartRepository;
         this.cartDetailRepository = cartDetailRepository;
         this.cartCustomerService = cartCustomerService;
         this.ordenClient = ordenClient;
+        this.mutacionesCarrito = mutacionesCarrito;
     }
 
 
-    // Crear una nueva orden a partir del carrito del usuario
+    // Crear una nueva orden a partir del carrito del usuario, en orden con las demás mutaciones de su carrito
     public Mono<CartWithProductsDto> crearNuevaOrden(Long userId) {
-        return cartRepository.findByUserId(userId)
+        return mutacionesCarrito.ejecutar(userId, cartRepository.findByUserId(userId)
                 .switchIfEmpty(Mono.error(
                         CarritoNoEncontradoException.paraUsuario(userId)))
                 .flatMap(cart -> {
@@ -61,10 +68,16 @@ public class NewOrdenService {
                 // Después de crear la orden exitosamente, mostrar el carrito y luego eliminarlo
                 .then(Mono.defer(() ->
                         cartCustomerService.getCartWithProducts(userId)
-                                .doOnSuccess(cartView ->
-                                        cartRepository.deleteByUserId(userId).subscribe()
-                                )
-                ));
+                                // El borrado termina dentro del turno: una mutación posterior no lo adelanta.
+                                // La orden ya está creada, así que un fallo del borrado no cambia la respuesta
+                                .flatMap(cartView -> cartRepository.deleteByUserId(userId)
+                                        .onErrorResume(ex -> {
+                                            log.warn("Error eliminando el carrito del usuario {} tras crear la orden: {}",
+                                                    userId, ex.getMessage());
+                                            return Mono.empty();
+                                        })
+                                        .thenReturn(cartView))
+                )));
     }
 
 }
@@ -0,0 +1,159 @@
+package com.Arka.MSCart.service;
+
+import com.Arka.MSCart.dto.notificationDto.EmailRequest;
+import com.Arka.MSCart.model.NotificacionOutbox;
+import com.Arka.MSCart.repository.NotificacionOutboxRepository;
+import com.Arka.MSCart.service.EmailDispatcherService.EmailPendiente;
+import com.Arka.MSCart.service.EmailDispatcherService.ResultadoEnvio;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Relay del outbox de notificaciones
+ * Capa de Lógica de Negocio
+ *
+ * Drena notificacion_outbox en lotes ordenados por id y entrega los emails a través de EmailDispatcherService.
+ * La entrega es al menos una vez: un evento solo pasa a ENVIADO cuando la Lambda confirma su email, así que
+ * una caída entre el envío y la confirmación provoca un reenvío que la Lambda descarta por la clave de idempotencia.
+ *
+ * Cada lote se reclama en la base de datos antes de enviarlo (estado EN_CURSO con FOR UPDATE SKIP LOCKED), de modo
+ * que dos drenajes concurrentes nunca leen los mismos eventos. En cada réplica solo corre un drenaje a la vez:
+ * una ejecución programada que encuentra otro en curso se omite. El lease de la tarea se renueva mientras
+ * se drena (JobLeaseService).
+ */
+@Service
+public class NotificacionOutboxRelay {
+
+    private static final Logger log = LoggerFactory.getLogger(NotificacionOutboxRelay.class);
+
+    private static final String TAREA_RELAY = "relay-notificaciones";
+
+    private final NotificacionOutboxRepository outboxRepository;
+    private final EmailDispatcherService emailDispatcherService;
+    private final JobLeaseService jobLeaseService;
+    private final ObjectMapper objectMapper;
+
+    private final Counter eventosEntregados;
+    private final Counter eventosReprogramados;
+    private final Counter eventosLeidos;
+
+    // Drenaje en curso en esta réplica; el siguiente tick programado se omite mientras dure
+    private final AtomicBoolean drenando = new AtomicBoolean();
+
+    // Eventos leídos del outbox por lote
+    @Value("${lambda.email.relay.tamanoLectura:500}")
+    private int tamanoLectura;
+
+    // Lotes máximos drenados por ejecución, para acotar la duración de cada ejecución
+    @Value("${lambda.email.relay.maxLotes:20}")
+    private int maxLotes;
+
+    // Intentos de entrega antes de dejar el evento como FALLIDO
+    @Value("${lambda.email.relay.maxIntentos:10}")
+    private int maxIntentos;
+
+    // Espera antes de volver a intentar un evento cuyo lote falló
+    @Value("${lambda.email.relay.reintentarEn:1m}")
+    private Duration reintentarEn;
+
+    @Value("${lambda.email.relay.intervalo:30s}")
+    private Duration intervalo;
+
+    // Tiempo durante el que un lote reclamado es de su relay; debe cubrir con holgura el envío de un lote
+    // (tamanoLectura / tasa de llamadas a la Lambda). Vencido, otro relay vuelve a reclamar sus eventos
+    @Value("${lambda.email.relay.reclamo:5m}")
+    private Duration reclamo;
+
+    public NotificacionOutboxRelay(NotificacionOutboxRepository outboxRepository,
+                                   EmailDispatcherService emailDispatcherService,
+                                   JobLeaseService jobLeaseService,
+                                   ObjectMapper objectMapper,
+                                   MeterRegistry meterRegistry) {
+        this.outboxRepository = outboxRepository;
+        this.emailDispatcherService = emailDispatcherService;
+        this.jobLeaseService = jobLeaseService;
+        this.objectMapper = objectMapper;
+        this.eventosEntregados = meterRegistry.counter("ms.cart.outbox.entregados");
+        this.eventosReprogramados = meterRegistry.counter("ms.cart.outbox.reprogramados");
+        this.eventosLeidos = meterRegistry.counter("ms.cart.outbox.leidos");
+    }
+
+    // Tarea programada que entrega los eventos pendientes del outbox; solo la réplica con el lease la ejecuta
+    @Scheduled(fixedDelayString = "${lambda.email.relay.intervalo:30s}")
+    void relayProgramado() {
+        if (!drenando.compareAndSet(false, true)) {
+            log.debug("Drenaje del outbox omitido: el anterior sigue en curso");
+            return;
+        }
+        jobLeaseService.ejecutarConLease(TAREA_RELAY, intervalo.plus(intervalo.dividedBy(2)), drenar())
+                .doFinally(senal -> drenando.set(false))
+                .subscribe(
+                        entregados -> log.debug("Eventos del outbox entregados: {}", entregados),
+                        e -> log.error("Error drenando el outbox de notificaciones: {}", e.getMessage())
+                );
+    }
+
+    /**
+     * Drena el outbox lote a lote hasta vaciar los eventos disponibles o alcanzar el máximo de lotes.
+     * Retorna el número de eventos entregados.
+     */
+    public Mono<Long> drenar() {
+        return Mono.defer(this::drenarLote)
+                .repeat(Math.max(1, maxLotes) - 1L)
+                // Un lote incompleto indica que no quedan eventos disponibles
+                .takeUntil(lote -> lote.leidos() < tamanoLectura)
+                .reduce(0L, (total, lote) -> total + lote.entregados());
+    }
+
+    private Mono<LoteRelay> drenarLote() {
+        return outboxRepository.reclamarPendientes(tamanoLectura, reclamo.toSeconds())
+                .collectSortedList(Comparator.comparing(NotificacionOutbox::getId))
+                .doOnNext(eventos -> eventosLeidos.increment(eventos.size()))
+                .flatMap(eventos -> emailDispatcherService
+                        .despachar(Flux.fromIterable(eventos).concatMap(this::aEmailPendiente))
+                        // Los resultados se registran de uno en uno para no competir por las mismas filas
+                        .concatMap(this::registrarResultado)
+                        .reduce(0L, Long::sum)
+                        .map(entregados -> new LoteRelay(eventos.size(), entregados)));
+    }
+
+    private Mono<EmailPendiente> aEmailPendiente(NotificacionOutbox evento) {
+        return Mono.fromCallable(() -> objectMapper.readValue(evento.getPayload(), EmailRequest.class))
+                .map(email -> new EmailPendiente(evento.getId(), evento.getClaveIdempotencia(), email))
+                .onErrorResume(ex -> {
+                    // Un payload ilegible no se arregla reintentando: se deja como FALLIDO
+                    log.error("Payload inválido en el evento {} del outbox: {}", evento.getId(), ex.getMessage());
+                    return outboxRepository.registrarFallo(List.of(evento.getId()), 0, 0)
+                            .then(Mono.empty());
+                });
+    }
+
+    private Mono<Long> registrarResultado(ResultadoEnvio resultado) {
+        List<Long> ids = List.of(resultado.outboxId());
+
+        if (resultado.confirmado()) {
+            return outboxRepository.marcarEnviados(ids)
+                    .doOnNext(marcados -> eventosEntregados.increment())
+                    .thenReturn(1L);
+        }
+        return outboxRepository.registrarFallo(ids, reintentarEn.toSeconds(), maxIntentos)
+                .doOnNext(reprogramados -> eventosReprogramados.increment())
+                .thenReturn(0L);
+    }
+
+    // Eventos leídos del outbox en un lote y cuántos de ellos se entregaron
+    private record LoteRelay(int leidos, long entregados) {}
+}
@@ -1,118 +1,222 @@
 package com.Arka.MSCart.service;
 
-import com.Arka.MSCart.client.AuthClient;
-import com.Arka.MSCart.client.InventarioClient;
+import com.Arka.MSCart.cache.ProductoInfoCache;
+import com.Arka.MSCart.cache.UsuarioCache;
+import com.Arka.MSCart.dto.ConsultProductInventarioDto;
 import com.Arka.MSCart.dto.notificationDto.CarritoAbandonado;
 import com.Arka.MSCart.dto.notificationDto.EmailRequest;
 import com.Arka.MSCart.dto.notificationDto.ProductoAbandonado;
+import com.Arka.MSCart.model.Cart;
+import com.Arka.MSCart.model.CartDetail;
+import com.Arka.MSCart.model.NotificacionOutbox;
 import com.Arka.MSCart.repository.CartDetailRepository;
 import com.Arka.MSCart.repository.CartRepository;
+import com.Arka.MSCart.repository.NotificacionOutboxRepository;
+import com.Arka.MSCart.template.PlantillaCarritoAbandonado;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.support.CronExpression;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
-
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Detección de carritos abandonados pendientes de notificar
+ * Capa de Lógica de Negocio
+ *
+ * Por cada carrito construye el email y, en una sola transacción, marca emailenviado y escribe el evento
+ * en notificacion_outbox. El envío a la Lambda lo hace NotificacionOutboxRelay, desacoplado de la detección.
+ */
 @Service
 public class NotificationCartAbandonedService {
 
+    private static final Logger log = LoggerFactory.getLogger(NotificationCartAbandonedService.class);
+
     private final CartRepository cartRepository;
     private final CartDetailRepository cartDetailRepository;
-    private final AuthClient authClient;
-    private final InventarioClient inventarioClient;
-
-    @Value("${lambda.email.url}")
-    private String lambdaEmailUrl;
-
-    private static final String TEMPLATE_CARRITO =
-            "<!DOCTYPE html><html><head><title>¡Tu Carrito Te Espera! - Arka</title><style>body{font-family:'Helvetica Neue',Helvetica,Arial,sans-serif;background-color:#f8f8f8;margin:0;padding:0;}.container{max-width:600px;margin:30px auto;background-color:#ffffff;padding:0;border-radius:10px;box-shadow:0 4px 12px rgba(0,0,0,0.1);}.header{background-color:#3f51b5;color:#ffffff;padding:25px 0;text-align:center;border-radius:10px 10px 0 0;}.header h2{margin:0;font-size:24px;}.content{padding:30px 40px;text-align:center;color:#333;line-height:1.6;}.content p{margin-bottom:15px;font-size:16px;}.cta-button{background-color:#ff9800;color:#ffffff;padding:15px 35px;text-decoration:none;font-weight:700;border-radius:8px;display:inline-block;margin-top:30px;font-size:18px;transition:background-color 0.3s;}.cta-button:hover{background-color:#f57c00;}.product-list{margin:30px 0;border-top:2px solid #eeeeee;border-bottom:2px solid #eeeeee;padding:15px 0;background-color:#fafafa;}.product-list ul{list-style:none;padding:0;margin:0;text-align:left;}.product-list li{padding:10px 0;border-bottom:1px dashed #e0e0e0;font-size:14px;}.product-list li:last-child{border-bottom:none;}.footer{margin-top:0;padding:20px;font-size:12px;color:#777;text-align:center;background-color:#f4f4f4;border-radius:0 0 10px 10px;}</style></head><body><div class=\"container\"><div class=\"header\"><h2>🛒 ¡Hemos guardado tus productos!</h2></div><div class=\"content\"><p>Hola <strong>[NOMBRE_CLIENTE]</strong>,</p><p>Notamos que dejaste algunos artículos increíbles en tu carrito. **¡Están listos cuando tú lo estés!**</p><div class=\"product-list\"><p style=\"font-weight:bold; color:#3f51b5;\">Artículos que te esperan:</p><ul>[LISTA_PRODUCTOS]</ul></div><a href=\"[URL_CARRITO]\" class=\"cta-button\">INICIAR SESIÓN Y COMPLETAR MI COMPRA</a></div><div class=\"footer\"><p>Si tienes alguna duda, contáctanos. ¡Gracias por elegir Arka!</p><p style=\"margin-top:5px; font-size:10px;\">© [AÑO ACTUAL] Arka E-commerce</p></div></div></body></html>";
-
-    private final RestTemplate restTemplate = new RestTemplate();
+    private final UsuarioCache usuarioCache;
+    private final ProductoInfoCache productoInfoCache;
+    private final JobLeaseService jobLeaseService;
+    private final NotificacionOutboxRepository outboxRepository;
+    private final TransactionalOperator transactionalOperator;
+    private final ObjectMapper objectMapper;
+    private final PlantillaCarritoAbandonado plantillaCarritoAbandonado;
+    private final ConflictosCarrito conflictosCarrito;
+    private final Counter eventosEncolados;
+    private final Counter carritosRevisados;
+
+    @Value("${lambda.email.cron-expression}")
+    private String cronExpression;
+
+    // Carritos preparados en paralelo (consulta de usuario y productos) durante la detección
+    @Value("${lambda.email.concurrenciaPreparacion:16}")
+    private int concurrenciaPreparacion;
+
+    private static final String TAREA_NOTIFICACION = "notificacion-carritos-abandonados";
 
     public NotificationCartAbandonedService(CartRepository cartRepository,
                                             CartDetailRepository cartDetailRepository,
-                                            AuthClient authClient,
-                                            InventarioClient inventarioClient) {
+                                            UsuarioCache usuarioCache,
+                                            ProductoInfoCache productoInfoCache,
+                                            JobLeaseService jobLeaseService,
+                                            NotificacionOutboxRepository outboxRepository,
+                                            TransactionalOperator transactionalOperator,
+                                            ObjectMapper objectMapper,
+                                            PlantillaCarritoAbandonado plantillaCarritoAbandonado,
+                                            ConflictosCarrito conflictosCarrito,
+                                            MeterRegistry meterRegistry) {
         this.cartRepository = cartRepository;
         this.cartDetailRepository = cartDetailRepository;
-        this.authClient = authClient;
-        this.inventarioClient = inventarioClient;
+        this.usuarioCache = usuarioCache;
+        this.productoInfoCache = productoInfoCache;
+        this.jobLeaseService = jobLeaseService;
+        this.outboxRepository = outboxRepository;
+        this.transactionalOperator = transactionalOperator;
+        this.objectMapper = objectMapper;
+        this.plantillaCarritoAbandonado = plantillaCarritoAbandonado;
+        this.conflictosCarrito = conflictosCarrito;
+        this.eventosEncolados = meterRegistry.counter("ms.cart.outbox.encolados");
+        this.carritosRevisados = meterRegistry.counter("ms.cart.notificacion.revisados");
     }
 
 
-    // Tarea programada para detectar carritos abandonados y notificar vía email
+    // Tarea programada para detectar carritos abandonados y encolar su notificación por email
     @Scheduled(cron = "${lambda.email.cron-expression}")
     private void detectarYNotificarCarritosAbandonados() {
-        System.out.println("Buscando carritos abandonados según la expresión Cron...");
-
-        // Lógica de detección de carritos abandonados
-        cartRepository.findAll()
-                .filter(cart -> !cart.isEmailEnviado() && !cart.isEstado() && cart.getNumeroProductos() > 0)
-                .flatMap(cart ->
-                        // Obtener el usuario del carrito
-                        authClient.consultarUsuario(cart.getUserId())
-                                // Por cada usuario obtener la lista de productos del carrito
-                                .flatMap(user ->
-                                        cartDetailRepository.findAllByCarritoId(cart.getId())
-                                                .flatMap(detail ->
-                                                        inventarioClient.consultarProducto(detail.getProductoId())
-                                                                .map(producto -> {
-                                                                    ProductoAbandonado pa = new ProductoAbandonado();
-                                                                    pa.setNombreProducto(producto.getNombre());
-                                                                    pa.setPrecioUnitario(producto.getPrice());
-                                                                    return pa;
-                                                                })
-                                                )
-                                                .collectList()
-                                                .map(productosAbandonados -> {
-                                                    CarritoAbandonado carrito = new CarritoAbandonado();
-                                                    carrito.setNombreCliente(user.getName());
-                                                    carrito.setEmailCliente(user.getEmail());
-                                                    carrito.setUrlLogin("http://localhost:8093/api/v1/gateway/auth/login");
-                                                    carrito.setProductos(productosAbandonados);
-
-                                                    cart.setEmailEnviado(true);
-                                                    cartRepository.save(cart).subscribe();
-
-                                                    construirJson(carrito);
-                                                    return carrito;
-                                                })
-                                )
-                )
-                .doOnNext(carrito -> System.out.println("Carrito preparado para notificar a: " + carrito.getEmailCliente()))
-                .doOnError(e -> System.err.println("Error detectando carritos: " + e.getMessage()))
-                .subscribe();
+        log.info("Buscando carritos abandonados según la expresión Cron...");
+
+        // Solo la réplica con el lease vigente ejecuta la detección
+        jobLeaseService.ejecutarConLease(TAREA_NOTIFICACION, duracionLease(), notificarCarritosAbandonados())
+                .subscribe(
+                        encolados -> log.info("Notificaciones de carritos abandonados encoladas: {}", encolados),
+                        e -> log.error("Error detectando carritos: {}", e.getMessage())
+                );
+    }
+
+    /**
+     * Detecta los carritos abandonados pendientes de notificar y encola sus emails en el outbox.
+     * Retorna el número de notificaciones encoladas.
+     */
+    public Mono<Long> notificarCarritosAbandonados() {
+        return cartRepository
+                .findByEstadoFalseAndEmailEnviadoFalseAndNumeroProductosGreaterThan(0L)
+                .doOnNext(cart -> carritosRevisados.increment())
+                .flatMap(cart -> prepararEmail(cart)
+                        .flatMap(email -> encolar(cart, email))
+                        .onErrorResume(ex -> {
+                            log.warn("No se pudo encolar el email del carrito {}: {}", cart.getId(), ex.getMessage());
+                            return Mono.empty();
+                        }), concurrenciaPreparacion)
+                .count();
+    }
+
+    // Marca el carrito como notificado y escribe el evento del outbox en la misma transacción
+    private Mono<NotificacionOutbox> encolar(Cart cart, EmailRequest email) {
+        return Mono.fromCallable(() -> objectMapper.writeValueAsString(email))
+                .flatMap(payload -> cartRepository.marcarEmailEnviado(cart.getId(), cart.getVersion())
+                        // Si el carrito cambió desde su lectura el email preparado ya no lo describe: no se encola
+                        // nada y, si sigue abandonado, la siguiente ejecución lo vuelve a preparar
+                        .filter(marcados -> {
+                            if (marcados == 0) {
+                                conflictosCarrito.registrar("notificar", ConflictosCarrito.DESCARTADO);
+                            }
+                            return marcados == 1;
+                        })
+                        // Creación y próximo intento con el reloj de la base de datos, el que usa el relay al reclamar
+                        .flatMap(marcados -> outboxRepository.encolar(cart.getId(), claveIdempotencia(cart), payload))
+                        .as(transactionalOperator::transactional))
+                .doOnNext(evento -> eventosEncolados.increment());
     }
 
-    // Construye el contenido del email en formato HTML y llama a la Lambda para envío
-    private void construirJson(CarritoAbandonado carrito) {
-        String html = TEMPLATE_CARRITO;
-        html = html.replace("[NOMBRE_CLIENTE]", carrito.getNombreCliente());
-        html = html.replace("[URL_CARRITO]", carrito.getUrlLogin());
-
-        StringBuilder productosHtml = new StringBuilder();
-        if (carrito.getProductos() != null) {
-            for (ProductoAbandonado p : carrito.getProductos()) {
-                productosHtml.append(String.format("<li><strong>%s</strong> - %s</li>", p.getNombreProducto(), p.getPrecioUnitario()));
-            }
+    // Un episodio de abandono se identifica por el último movimiento del carrito antes de abandonarse
+    static String claveIdempotencia(Cart cart) {
+        LocalDateTime ultimoMovimiento = cart.getUltimoMovimiento() != null
+                ? cart.getUltimoMovimiento()
+                : cart.getCreatedAt();
+        long episodio = ultimoMovimiento != null ? ultimoMovimiento.toInstant(ZoneOffset.UTC).toEpochMilli() : 0L;
+        return "carrito-" + cart.getId() + "-" + episodio;
+    }
+
+    // Obtiene el usuario y los productos del carrito y construye su email
+    private Mono<EmailRequest> prepararEmail(Cart cart) {
+        return usuarioCache.consultarUsuario(cart.getUserId())
+                .flatMap(user -> cartDetailRepository.findAllByCarritoId(cart.getId())
+                        .collectList()
+                        .flatMap(detalles -> consultarPresentacion(detalles)
+                                .map(productos -> construirProductosAbandonados(detalles, productos)))
+                        .map(productosAbandonados -> {
+                            CarritoAbandonado carrito = new CarritoAbandonado();
+                            carrito.setNombreCliente(user.getName());
+                            carrito.setEmailCliente(user.getEmail());
+                            carrito.setUrlLogin("http://localhost:8093/api/v1/gateway/auth/login");
+                            carrito.setProductos(productosAbandonados);
+                            return construirEmail(carrito);
+                        }));
+    }
+
+    // Presentación guardada en las líneas; solo las líneas sin ella se consultan al inventario
+    private Mono<Map<Long, ConsultProductInventarioDto>> consultarPresentacion(List<CartDetail> detalles) {
+        Map<Long, ConsultProductInventarioDto> snapshots = ProductoInfoCache.desdeSnapshots(detalles);
+        List<Long> productoIds = detalles.stream()
+                .map(CartDetail::getProductoId)
+                .filter(productoId -> !snapshots.containsKey(productoId))
+                .toList();
+        if (productoIds.isEmpty()) {
+            return Mono.just(snapshots);
         }
-        html = html.replace("[LISTA_PRODUCTOS]", productosHtml.toString());
+        return productoInfoCache.consultarProductos(productoIds)
+                .map(consultados -> {
+                    Map<Long, ConsultProductInventarioDto> productos = new HashMap<>(consultados);
+                    productos.putAll(snapshots);
+                    return productos;
+                });
+    }
 
+    private List<ProductoAbandonado> construirProductosAbandonados(List<CartDetail> detalles,
+                                                                   Map<Long, ConsultProductInventarioDto> productos) {
+        return detalles.stream()
+                .filter(detail -> productos.containsKey(detail.getProductoId()))
+                .map(detail -> {
+                    ConsultProductInventarioDto producto = productos.get(detail.getProductoId());
+                    ProductoAbandonado pa = new ProductoAbandonado();
+                    pa.setNombreProducto(producto.getNombre());
+                    pa.setCantidad(detail.getCantidad().intValue());
+                    pa.setPrecioUnitario(producto.getPrice());
+                    return pa;
+                })
+                .toList();
+    }
+
+    // Construye el email a partir de la plantilla precompilada
+    private EmailRequest construirEmail(CarritoAbandonado carrito) {
         EmailRequest emailRequest = new EmailRequest();
         emailRequest.setDestination(carrito.getEmailCliente());
         emailRequest.setAsunto("¡Tu Carrito Te Espera! 🛒 - Arka");
-        emailRequest.setCuerpoMensaje(html);
+        emailRequest.setCuerpoMensaje(plantillaCarritoAbandonado.renderizar(carrito));
         emailRequest.setTipoEvento("CARRITO_ABANDONADO");
-
-        llamarLambda(emailRequest);
+        return emailRequest;
     }
 
-    // Llama a la función Lambda para enviar el email
-    private void llamarLambda(EmailRequest request) {
-        try {
-            restTemplate.postForObject(lambdaEmailUrl, request, Void.class);
-            System.out.println("Correo enviado con éxito a la Lambda para: " + request.getDestination());
-        } catch (Exception e) {
-            System.err.println("Error al llamar a la Lambda: " + e.getMessage());
-        }
+    // El lease dura más que el intervalo entre ejecuciones del cron para que la réplica propietaria lo renueve
+    private Duration duracionLease() {
+        CronExpression cron = CronExpression.parse(cronExpression);
+        LocalDateTime siguiente = cron.next(LocalDateTime.now());
+        LocalDateTime posterior = siguiente != null ? cron.next(siguiente) : null;
+        Duration intervalo = siguiente != null && posterior != null
+                ? Duration.between(siguiente, posterior)
+                : Duration.ofMinutes(10);
+        return intervalo.plus(intervalo.dividedBy(2));
     }
-}
\ No newline at end of file
+}
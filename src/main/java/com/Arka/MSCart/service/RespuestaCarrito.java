@@ -0,0 +1,169 @@
+package com.Arka.MSCart.service;
+
+import com.Arka.MSCart.cache.ProductoInfoCache;
+import com.Arka.MSCart.cache.UsuarioCache;
+import com.Arka.MSCart.dto.AdminDto.ConsultUserInAuthDto;
+import com.Arka.MSCart.dto.CartWithProductsDto;
+import com.Arka.MSCart.dto.ConsultProductInventarioDto;
+import com.Arka.MSCart.dto.ProductInCartDto;
+import com.Arka.MSCart.model.Cart;
+import com.Arka.MSCart.model.CartDetail;
+import com.Arka.MSCart.repository.CartReadRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Construcción de la respuesta completa del carrito (CartWithProductsDto)
+ * Capa de Lógica de Negocio
+ *
+ * Completa el carrito con la información del usuario y con la presentación de los productos, en paralelo.
+ * La presentación sale de la guardada en cada línea (snapshot) o de la ya conocida por el llamador; solo las
+ * líneas sin ninguna de las dos se consultan en ProductoInfoCache. Si el usuario o el inventario no responden,
+ * la respuesta sale igual con los textos de "no disponible". La usan las vistas del cliente y del administrador.
+ */
+@Component
+public class RespuestaCarrito {
+
+    private static final Logger log = LoggerFactory.getLogger(RespuestaCarrito.class);
+
+    private final UsuarioCache usuarioCache;
+    private final ProductoInfoCache productoInfoCache;
+
+    public RespuestaCarrito(UsuarioCache usuarioCache, ProductoInfoCache productoInfoCache) {
+        this.usuarioCache = usuarioCache;
+        this.productoInfoCache = productoInfoCache;
+    }
+
+    // Completa el carrito leído con la información del usuario y la presentación de las líneas sin snapshot
+    public Mono<CartWithProductsDto> completar(CartReadRepository.CarritoLeido leido) {
+        CartWithProductsDto cartDto = leido.carrito();
+
+        return Mono.zip(consultarUsuario(cartDto.getUserId()), consultarProductos(leido.productosSinSnapshot()))
+                .map(tuple -> {
+                    asignarUsuario(cartDto, tuple.getT1().orElse(null));
+
+                    Map<Long, ConsultProductInventarioDto> productos = tuple.getT2();
+                    for (ProductInCartDto producto : cartDto.getProducts()) {
+                        ConsultProductInventarioDto inv = productos.get(producto.getProductoId());
+                        if (inv != null) {
+                            producto.setNombre(inv.getNombre());
+                            producto.setDescripcion(inv.getDescripcion());
+                            producto.setPrecioUnitario(inv.getPrice());
+                        }
+                    }
+                    return cartDto;
+                });
+    }
+
+    // Construye la respuesta del carrito y sus líneas; los productos ya conocidos no se consultan
+    public Mono<CartWithProductsDto> construir(Cart cart,
+                                               List<CartDetail> detalles,
+                                               Map<Long, ConsultProductInventarioDto> conocidos) {
+        // Consultar información del usuario en paralelo con productos
+        return Mono.zip(consultarUsuario(cart.getUserId()), construirProductos(detalles, conocidos))
+                .map(tuple -> {
+                    CartWithProductsDto cartDto = new CartWithProductsDto();
+                    cartDto.setCartId(cart.getId());
+                    cartDto.setUserId(cart.getUserId());
+
+                    // Información del usuario
+                    asignarUsuario(cartDto, tuple.getT1().orElse(null));
+
+                    // Convertir estado booleano a texto
+                    cartDto.setEstadoCarrito(cart.isEstado() ? "activo" : "inactivo");
+
+                    cartDto.setNumeroProductos(cart.getNumeroProductos());
+                    cartDto.setTotalUnidades(cart.getTotalUnidades());
+                    cartDto.setPrecioTotal(cart.getPrecioTotal());
+                    cartDto.setCreatedAt(cart.getCreatedAt());
+                    cartDto.setUltimoMovimiento(cart.getUltimoMovimiento());
+                    cartDto.setProducts(tuple.getT2());
+
+                    return cartDto;
+                });
+    }
+
+    // Completa los detalles del carrito con la presentación del producto: la que viene en conocidos,
+    // o la guardada en la línea; solo las líneas sin ninguna de las dos se consultan al inventario (caché + lote)
+    private Mono<List<ProductInCartDto>> construirProductos(List<CartDetail> detalles,
+                                                            Map<Long, ConsultProductInventarioDto> conocidos) {
+        Map<Long, ConsultProductInventarioDto> presentacion = new HashMap<>(ProductoInfoCache.desdeSnapshots(detalles));
+        presentacion.putAll(conocidos);
+
+        List<Long> productoIds = detalles.stream()
+                .map(CartDetail::getProductoId)
+                .filter(productoId -> !presentacion.containsKey(productoId))
+                .toList();
+
+        return consultarProductos(productoIds)
+                .map(productos -> detalles.stream()
+                        .map(detail -> {
+                            ConsultProductInventarioDto inv = presentacion.containsKey(detail.getProductoId())
+                                    ? presentacion.get(detail.getProductoId())
+                                    : productos.get(detail.getProductoId());
+                            if (inv == null) {
+                                return ProductInCartDto.builder()
+                                        .id(detail.getId())
+                                        .productoId(detail.getProductoId())
+                                        .nombre(CartReadRepository.NOMBRE_NO_DISPONIBLE)
+                                        .descripcion(CartReadRepository.DESCRIPCION_NO_DISPONIBLE)
+                                        .cantidad(detail.getCantidad())
+                                        .precioUnitario(0)
+                                        .precioTotal(detail.getPrecioTotal())
+                                        .build();
+                            }
+                            return ProductInCartDto.builder()
+                                    .id(detail.getId())
+                                    .productoId(detail.getProductoId())
+                                    .nombre(inv.getNombre())
+                                    .descripcion(inv.getDescripcion())
+                                    .cantidad(detail.getCantidad())
+                                    .precioUnitario(inv.getPrice())
+                                    .precioTotal(detail.getPrecioTotal())
+                                    .build();
+                        })
+                        .toList());
+    }
+
+    // Presentación de los productos indicados; si el inventario falla se retorna vacía
+    private Mono<Map<Long, ConsultProductInventarioDto>> consultarProductos(List<Long> productoIds) {
+        if (productoIds.isEmpty()) {
+            return Mono.just(Map.of());
+        }
+        return productoInfoCache.consultarProductos(productoIds)
+                .onErrorResume(ex -> {
+                    log.warn("Error consultando productos en inventario: {}", ex.getMessage());
+                    return Mono.just(Map.of());
+                });
+    }
+
+    // Información del usuario; si la consulta falla se retorna vacía y la respuesta sale sin sus datos
+    private Mono<Optional<ConsultUserInAuthDto>> consultarUsuario(Long userId) {
+        return usuarioCache.consultarUsuario(userId)
+                .map(Optional::of)
+                .onErrorResume(ex -> {
+                    log.warn("Error consultando usuario {}: {}", userId, ex.getMessage());
+                    return Mono.just(Optional.empty());
+                })
+                .defaultIfEmpty(Optional.empty());
+    }
+
+    private static void asignarUsuario(CartWithProductsDto cartDto, ConsultUserInAuthDto userDto) {
+        if (userDto != null) {
+            cartDto.setNombreUsuario(userDto.getName());
+            cartDto.setDireccionUsuario(userDto.getDireccion());
+            cartDto.setTelefonoUsuario(userDto.getTelefono());
+        } else {
+            cartDto.setNombreUsuario("Usuario no disponible");
+            cartDto.setDireccionUsuario("No disponible");
+            cartDto.setTelefonoUsuario("No disponible");
+        }
+    }
+}
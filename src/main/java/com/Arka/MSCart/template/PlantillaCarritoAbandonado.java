@@ -0,0 +1,62 @@
+package com.Arka.MSCart.template;
+
+import com.Arka.MSCart.dto.notificationDto.CarritoAbandonado;
+import com.Arka.MSCart.dto.notificationDto.ProductoAbandonado;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Year;
+
+/**
+ * Plantilla del email de carrito abandonado
+ * Capa de Presentación - Notificaciones
+ *
+ * La plantilla se compila una sola vez al crear el bean. El nombre del cliente y los nombres de producto
+ * se escapan como HTML porque provienen de datos ingresados por usuarios.
+ */
+@Component
+public class PlantillaCarritoAbandonado {
+
+    public static final String TEMPLATE_CARRITO =
+            "<!DOCTYPE html><html><head><title>¡Tu Carrito Te Espera! - Arka</title><style>body{font-family:'Helvetica Neue',Helvetica,Arial,sans-serif;background-color:#f8f8f8;margin:0;padding:0;}.container{max-width:600px;margin:30px auto;background-color:#ffffff;padding:0;border-radius:10px;box-shadow:0 4px 12px rgba(0,0,0,0.1);}.header{background-color:#3f51b5;color:#ffffff;padding:25px 0;text-align:center;border-radius:10px 10px 0 0;}.header h2{margin:0;font-size:24px;}.content{padding:30px 40px;text-align:center;color:#333;line-height:1.6;}.content p{margin-bottom:15px;font-size:16px;}.cta-button{background-color:#ff9800;color:#ffffff;padding:15px 35px;text-decoration:none;font-weight:700;border-radius:8px;display:inline-block;margin-top:30px;font-size:18px;transition:background-color 0.3s;}.cta-button:hover{background-color:#f57c00;}.product-list{margin:30px 0;border-top:2px solid #eeeeee;border-bottom:2px solid #eeeeee;padding:15px 0;background-color:#fafafa;}.product-list ul{list-style:none;padding:0;margin:0;text-align:left;}.product-list li{padding:10px 0;border-bottom:1px dashed #e0e0e0;font-size:14px;}.product-list li:last-child{border-bottom:none;}.footer{margin-top:0;padding:20px;font-size:12px;color:#777;text-align:center;background-color:#f4f4f4;border-radius:0 0 10px 10px;}</style></head><body><div class=\"container\"><div class=\"header\"><h2>🛒 ¡Hemos guardado tus productos!</h2></div><div class=\"content\"><p>Hola <strong>[NOMBRE_CLIENTE]</strong>,</p><p>Notamos que dejaste algunos artículos increíbles en tu carrito. **¡Están listos cuando tú lo estés!**</p><div class=\"product-list\"><p style=\"font-weight:bold; color:#3f51b5;\">Artículos que te esperan:</p><ul>[LISTA_PRODUCTOS]</ul></div><a href=\"[URL_CARRITO]\" class=\"cta-button\">INICIAR SESIÓN Y COMPLETAR MI COMPRA</a></div><div class=\"footer\"><p>Si tienes alguna duda, contáctanos. ¡Gracias por elegir Arka!</p><p style=\"margin-top:5px; font-size:10px;\">© [AÑO ACTUAL] Arka E-commerce</p></div></div></body></html>";
+
+    private static final PlantillaHtml PLANTILLA = PlantillaHtml.compilar(TEMPLATE_CARRITO);
+
+    private final Clock clock;
+
+    @Autowired
+    public PlantillaCarritoAbandonado() {
+        this(Clock.systemDefaultZone());
+    }
+
+    PlantillaCarritoAbandonado(Clock clock) {
+        this.clock = clock;
+    }
+
+    // Construye el contenido del email en formato HTML
+    public String renderizar(CarritoAbandonado carrito) {
+        int anioActual = Year.now(clock).getValue();
+
+        return PLANTILLA.renderizar((marcador, destino) -> {
+            switch (marcador) {
+                case "NOMBRE_CLIENTE" -> PlantillaHtml.escaparHtml(carrito.getNombreCliente(), destino);
+                case "URL_CARRITO" -> PlantillaHtml.escaparHtml(carrito.getUrlLogin(), destino);
+                case "LISTA_PRODUCTOS" -> escribirProductos(carrito, destino);
+                case "AÑO ACTUAL" -> destino.append(anioActual);
+                default -> destino.append('[').append(marcador).append(']');
+            }
+        });
+    }
+
+    private static void escribirProductos(CarritoAbandonado carrito, StringBuilder destino) {
+        if (carrito.getProductos() == null) {
+            return;
+        }
+        for (ProductoAbandonado p : carrito.getProductos()) {
+            destino.append("<li><strong>");
+            PlantillaHtml.escaparHtml(p.getNombreProducto(), destino);
+            destino.append("</strong> - ").append(p.getPrecioUnitario()).append("</li>");
+        }
+    }
+}
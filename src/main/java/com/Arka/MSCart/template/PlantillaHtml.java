@@ -0,0 +1,131 @@
+package com.Arka.MSCart.template;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Plantilla HTML precompilada
+ * Capa de Presentación - Notificaciones
+ *
+ * El texto se analiza una sola vez en segmentos literales y marcadores con la forma [NOMBRE_MARCADOR].
+ * Al renderizar se copian los literales y se delega cada marcador en un escritor, sin recorrer
+ * la plantilla completa por cada valor reemplazado.
+ */
+public final class PlantillaHtml {
+
+    // Tamaño por encima del cual el StringBuilder de un hilo se descarta en lugar de reutilizarse
+    private static final int CAPACIDAD_MAXIMA_REUTILIZABLE = 64 * 1024;
+
+    private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(4096));
+
+    private final String[] literales;
+    private final String[] marcadores;
+    private final int longitudLiterales;
+
+    private PlantillaHtml(String[] literales, String[] marcadores) {
+        this.literales = literales;
+        this.marcadores = marcadores;
+        int longitud = 0;
+        for (String literal : literales) {
+            longitud += literal.length();
+        }
+        this.longitudLiterales = longitud;
+    }
+
+    /**
+     * Escribe el valor de un marcador directamente en el destino.
+     */
+    @FunctionalInterface
+    public interface EscritorMarcador {
+        void escribir(String marcador, StringBuilder destino);
+    }
+
+    /**
+     * Analiza la plantilla en segmentos. Un marcador es un texto entre corchetes formado por
+     * letras mayúsculas, guiones bajos y espacios; cualquier otro corchete se conserva como literal.
+     */
+    public static PlantillaHtml compilar(String plantilla) {
+        List<String> literales = new ArrayList<>();
+        List<String> marcadores = new ArrayList<>();
+
+        int inicioLiteral = 0;
+        int i = 0;
+        while (i < plantilla.length()) {
+            int fin = plantilla.charAt(i) == '[' ? finMarcador(plantilla, i) : -1;
+            if (fin < 0) {
+                i++;
+                continue;
+            }
+            literales.add(plantilla.substring(inicioLiteral, i));
+            marcadores.add(plantilla.substring(i + 1, fin));
+            inicioLiteral = fin + 1;
+            i = fin + 1;
+        }
+        literales.add(plantilla.substring(inicioLiteral));
+
+        return new PlantillaHtml(literales.toArray(String[]::new), marcadores.toArray(String[]::new));
+    }
+
+    /**
+     * Renderiza la plantilla en el StringBuilder reutilizable del hilo actual y retorna el resultado.
+     */
+    public String renderizar(EscritorMarcador escritor) {
+        StringBuilder destino = BUFFER.get();
+        destino.setLength(0);
+        destino.ensureCapacity(longitudLiterales * 2);
+
+        renderizar(destino, escritor);
+        String resultado = destino.toString();
+
+        // Un documento excepcionalmente grande no debe quedar retenido por el hilo
+        if (destino.capacity() > CAPACIDAD_MAXIMA_REUTILIZABLE) {
+            BUFFER.remove();
+        }
+        return resultado;
+    }
+
+    /**
+     * Renderiza la plantilla al final del destino indicado.
+     */
+    public void renderizar(StringBuilder destino, EscritorMarcador escritor) {
+        for (int i = 0; i < marcadores.length; i++) {
+            destino.append(literales[i]);
+            escritor.escribir(marcadores[i], destino);
+        }
+        destino.append(literales[marcadores.length]);
+    }
+
+    /**
+     * Escribe el texto en el destino escapando los caracteres especiales de HTML.
+     */
+    public static void escaparHtml(String texto, StringBuilder destino) {
+        if (texto == null) {
+            return;
+        }
+        for (int i = 0; i < texto.length(); i++) {
+            char c = texto.charAt(i);
+            switch (c) {
+                case '&' -> destino.append("&amp;");
+                case '<' -> destino.append("&lt;");
+                case '>' -> destino.append("&gt;");
+                case '"' -> destino.append("&quot;");
+                case '\'' -> destino.append("&#39;");
+                default -> destino.append(c);
+            }
+        }
+    }
+
+    // Posición del corchete de cierre del marcador que empieza en inicio, o -1 si no es un marcador
+    private static int finMarcador(String plantilla, int inicio) {
+        for (int j = inicio + 1; j < plantilla.length(); j++) {
+            char c = plantilla.charAt(j);
+            if (c == ']') {
+                return j > inicio + 1 ? j : -1;
+            }
+            if (!(Character.isUpperCase(c) || c == '_' || c == ' ')) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+}
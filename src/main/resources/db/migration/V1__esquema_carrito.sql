@@ -0,0 +1,59 @@
+-- Esquema del Microservicio de Carritos (PostgreSQL)
+-- Idempotente: las bases creadas antes de las migraciones ya tienen estas tablas y columnas (baselineVersion 0)
+
+-- ALTER TABLE toma un bloqueo ACCESS EXCLUSIVE: si no se obtiene enseguida la migración falla en lugar de
+-- dejar en cola todas las consultas del carrito detrás de ella
+SET LOCAL lock_timeout = '5s';
+
+CREATE TABLE IF NOT EXISTS carrito (
+    id                BIGSERIAL PRIMARY KEY,
+    userid            BIGINT    NOT NULL,
+    createdat         TIMESTAMP,
+    estado            BOOLEAN   NOT NULL DEFAULT TRUE,
+    ultimo_movimiento TIMESTAMP,
+    numero_productos  BIGINT    DEFAULT 0,
+    total_unidades    BIGINT    DEFAULT 0,
+    precio_total      INTEGER   DEFAULT 0,
+    emailenviado      BOOLEAN   NOT NULL DEFAULT FALSE
+);
+
+CREATE TABLE IF NOT EXISTS carrito_detalle (
+    id           BIGSERIAL PRIMARY KEY,
+    carrito_id   BIGINT  NOT NULL REFERENCES carrito (id) ON DELETE CASCADE,
+    producto_id  BIGINT  NOT NULL,
+    cantidad     BIGINT  NOT NULL,
+    precio_total INTEGER NOT NULL DEFAULT 0
+);
+
+-- Presentación del producto guardada en la línea al agregarla o actualizarla: las vistas del carrito
+-- se sirven desde aquí sin consultar el inventario; snapshot_en indica cuándo se tomó
+ALTER TABLE carrito_detalle ADD COLUMN IF NOT EXISTS nombre_producto      VARCHAR(255);
+ALTER TABLE carrito_detalle ADD COLUMN IF NOT EXISTS descripcion_producto TEXT;
+ALTER TABLE carrito_detalle ADD COLUMN IF NOT EXISTS precio_unitario      INTEGER;
+ALTER TABLE carrito_detalle ADD COLUMN IF NOT EXISTS snapshot_en          TIMESTAMP;
+
+-- Versión del carrito y de sus líneas para el bloqueo optimista: toda sentencia que los modifica la incrementa.
+-- Con un DEFAULT constante PostgreSQL no reescribe la tabla: el bloqueo dura lo que el cambio de catálogo
+ALTER TABLE carrito ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE carrito_detalle ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
+
+-- Lease de tareas programadas: solo una réplica ejecuta cada tarea mientras su lease esté vigente
+CREATE TABLE IF NOT EXISTS job_lease (
+    nombre      VARCHAR(100) PRIMARY KEY,
+    propietario VARCHAR(200),
+    expira_en   TIMESTAMP    NOT NULL
+);
+
+-- Outbox de notificaciones: se escribe en la misma transacción que marca emailenviado en el carrito
+-- y un relay lo drena en orden de id con entrega al menos una vez
+CREATE TABLE IF NOT EXISTS notificacion_outbox (
+    id                  BIGSERIAL PRIMARY KEY,
+    carrito_id          BIGINT       NOT NULL,
+    clave_idempotencia  VARCHAR(100) NOT NULL UNIQUE,
+    payload             TEXT         NOT NULL,
+    estado              VARCHAR(20)  NOT NULL DEFAULT 'PENDIENTE',
+    intentos            INTEGER      NOT NULL DEFAULT 0,
+    creado_en           TIMESTAMP    NOT NULL,
+    proximo_intento     TIMESTAMP    NOT NULL,
+    enviado_en          TIMESTAMP
+);
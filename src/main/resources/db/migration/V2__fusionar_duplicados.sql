@@ -0,0 +1,77 @@
+-- Fusiona los carritos y líneas duplicados que pudieron crearse antes de los índices únicos de V3
+-- (uq_carrito_userid y uq_carrito_detalle_producto), que de otro modo no se podrían construir.
+-- Sin duplicados no modifica ninguna fila.
+
+SET LOCAL lock_timeout = '5s';
+
+-- Las réplicas no crean carritos ni líneas mientras se fusionan; las lecturas continúan
+LOCK TABLE carrito, carrito_detalle IN SHARE ROW EXCLUSIVE MODE;
+
+-- Cada usuario conserva su carrito más antiguo
+CREATE TEMPORARY TABLE carrito_fusion ON COMMIT DROP AS
+SELECT id, superviviente
+FROM (SELECT id, min(id) OVER (PARTITION BY userid) AS superviviente FROM carrito) c
+WHERE id <> superviviente;
+
+-- Las líneas de los carritos duplicados pasan al carrito conservado
+UPDATE carrito_detalle d
+SET carrito_id = f.superviviente
+FROM carrito_fusion f
+WHERE d.carrito_id = f.id;
+
+-- El carrito conservado reúne la actividad de los duplicados: sigue activo si alguno lo estaba y
+-- solo se da por notificado si todos lo estaban
+UPDATE carrito c
+SET createdat         = s.createdat,
+    ultimo_movimiento = s.ultimo_movimiento,
+    estado            = s.estado,
+    emailenviado      = s.emailenviado
+FROM (SELECT coalesce(f.superviviente, c.id) AS id,
+             min(c.createdat)                AS createdat,
+             max(c.ultimo_movimiento)        AS ultimo_movimiento,
+             bool_or(c.estado)               AS estado,
+             bool_and(c.emailenviado)        AS emailenviado
+      FROM carrito c
+      LEFT JOIN carrito_fusion f ON f.id = c.id
+      WHERE c.id IN (SELECT id FROM carrito_fusion UNION SELECT superviviente FROM carrito_fusion)
+      GROUP BY coalesce(f.superviviente, c.id)) s
+WHERE c.id = s.id;
+
+DELETE FROM carrito c
+USING carrito_fusion f
+WHERE c.id = f.id;
+
+-- Las líneas repetidas del mismo producto se suman en la más antigua
+UPDATE carrito_detalle d
+SET cantidad     = s.cantidad,
+    precio_total = s.precio_total,
+    version      = d.version + 1
+FROM (SELECT min(id) AS id, sum(cantidad) AS cantidad, sum(precio_total) AS precio_total
+      FROM carrito_detalle
+      GROUP BY carrito_id, producto_id
+      HAVING count(*) > 1) s
+WHERE d.id = s.id;
+
+DELETE FROM carrito_detalle d
+USING carrito_detalle o
+WHERE o.carrito_id = d.carrito_id
+  AND o.producto_id = d.producto_id
+  AND o.id < d.id;
+
+-- Totales recalculados a partir de las líneas en los carritos que no cuadran
+UPDATE carrito c
+SET numero_productos = t.numero_productos,
+    total_unidades   = t.total_unidades,
+    precio_total     = t.precio_total,
+    version          = c.version + 1
+FROM (SELECT c.id,
+             count(d.id)                      AS numero_productos,
+             coalesce(sum(d.cantidad), 0)     AS total_unidades,
+             coalesce(sum(d.precio_total), 0) AS precio_total
+      FROM carrito c
+      LEFT JOIN carrito_detalle d ON d.carrito_id = c.id
+      GROUP BY c.id) t
+WHERE c.id = t.id
+  AND (coalesce(c.numero_productos, 0) <> t.numero_productos
+       OR coalesce(c.total_unidades, 0) <> t.total_unidades
+       OR coalesce(c.precio_total, 0) <> t.precio_total);
@@ -0,0 +1,26 @@
+-- Índices del carrito y del outbox, construidos sin bloquear las escrituras (CONCURRENTLY). Flyway ejecuta esta
+-- migración fuera de transacción.
+-- Si la migración falla, el índice a medio construir queda INVALID y IF NOT EXISTS lo daría por creado:
+-- eliminarlo con DROP INDEX CONCURRENTLY, ejecutar flyway repair y volver a migrar. Los duplicados existentes se
+-- fusionan antes en V2.
+
+-- Un carrito por usuario y una línea por producto: claves de los upsert de agregar producto
+CREATE UNIQUE INDEX CONCURRENTLY IF NOT EXISTS uq_carrito_userid
+    ON carrito (userid);
+
+CREATE UNIQUE INDEX CONCURRENTLY IF NOT EXISTS uq_carrito_detalle_producto
+    ON carrito_detalle (carrito_id, producto_id);
+
+-- Barrido de carritos abandonados: solo indexa carritos activos por su último movimiento
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_carrito_activo_ultimo_movimiento
+    ON carrito ((coalesce(ultimo_movimiento, createdat)), id)
+    WHERE estado = TRUE;
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_notificacion_outbox_pendiente
+    ON notificacion_outbox (id)
+    WHERE estado = 'PENDIENTE';
+
+-- Eventos reclamados por una instancia del relay; se vuelven a reclamar si vence el reclamo sin resolverse
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_notificacion_outbox_en_curso
+    ON notificacion_outbox (id)
+    WHERE estado = 'EN_CURSO';
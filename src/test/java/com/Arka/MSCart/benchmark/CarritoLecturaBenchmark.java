@@ -0,0 +1,165 @@
+package com.Arka.MSCart.benchmark;
+
+import com.Arka.MSCart.dto.CartWithProductsDto;
+import com.Arka.MSCart.dto.ProductInCartDto;
+import com.Arka.MSCart.model.Cart;
+import com.Arka.MSCart.model.CartDetail;
+import com.Arka.MSCart.repository.CartReadRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.data.relational.core.query.Criteria;
+import org.springframework.data.relational.core.query.Query;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Flux;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark JMH de la lectura del carrito con sus productos sobre H2 en memoria
+ * Compara dos consultas dependientes (carrito y luego sus líneas, mapeadas a Cart y CartDetail)
+ * con la consulta unida de CartReadRepository mapeada directamente a los DTO, para 1, 20 y 200 líneas.
+ *
+ * Consultas por operación: 2 en lecturaEnDosConsultas y 1 en lecturaUnida. Con una base de datos remota
+ * cada consulta ahorrada es un viaje de red menos; en H2 en memoria la diferencia refleja solo el costo
+ * de ejecución y de mapeo.
+ *
+ * Ejecución: mvn -Pbenchmark verify -Djmh.incluir=CarritoLecturaBenchmark (resultados en target/jmh-resultados.json, con las
+ * asignaciones de memoria por operación del perfilador gc), o el main de esta clase con el classpath de pruebas.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CarritoLecturaBenchmark {
+
+    private static final Long USER_ID = 5L;
+
+    @Param({"1", "20", "200"})
+    private int numeroLineas;
+
+    private R2dbcEntityTemplate entityTemplate;
+    private CartReadRepository cartReadRepository;
+
+    @Setup
+    public void preparar() {
+        ConnectionFactory connectionFactory = ConnectionFactories.get(
+                "r2dbc:h2:mem:///benchmark-" + UUID.randomUUID() + "?options=DB_CLOSE_DELAY=-1");
+        DatabaseClient databaseClient = DatabaseClient.create(connectionFactory);
+        entityTemplate = new R2dbcEntityTemplate(connectionFactory);
+        cartReadRepository = new CartReadRepository(databaseClient, new SimpleMeterRegistry());
+
+        databaseClient.sql("""
+                        CREATE TABLE carrito (
+                            id                BIGINT    PRIMARY KEY,
+                            userid            BIGINT    NOT NULL,
+                            createdat         TIMESTAMP,
+                            estado            BOOLEAN   NOT NULL,
+                            ultimo_movimiento TIMESTAMP,
+                            numero_productos  BIGINT,
+                            total_unidades    BIGINT,
+                            precio_total      INTEGER,
+                            emailenviado      BOOLEAN   NOT NULL
+                        )
+                        """)
+                .then()
+                .then(databaseClient.sql("""
+                        CREATE TABLE carrito_detalle (
+                            id                   BIGINT  AUTO_INCREMENT PRIMARY KEY,
+                            carrito_id           BIGINT  NOT NULL,
+                            producto_id          BIGINT  NOT NULL,
+                            cantidad             BIGINT  NOT NULL,
+                            precio_total         INTEGER NOT NULL,
+                            nombre_producto      VARCHAR(255),
+                            descripcion_producto VARCHAR(1000),
+                            precio_unitario      INTEGER,
+                            snapshot_en          TIMESTAMP
+                        )
+                        """).then())
+                .then(databaseClient.sql("CREATE INDEX idx_detalle_carrito ON carrito_detalle (carrito_id)").then())
+                .then(databaseClient.sql("""
+                                INSERT INTO carrito VALUES (1, :userId, :ahora, TRUE, :ahora, :lineas, :lineas, :precio, FALSE)
+                                """)
+                        .bind("userId", USER_ID)
+                        .bind("ahora", LocalDateTime.now())
+                        .bind("lineas", (long) numeroLineas)
+                        .bind("precio", numeroLineas * 100)
+                        .then())
+                .block();
+
+        Flux.range(0, numeroLineas)
+                .concatMap(i -> databaseClient.sql("""
+                                INSERT INTO carrito_detalle (carrito_id, producto_id, cantidad, precio_total,
+                                                             nombre_producto, descripcion_producto, precio_unitario, snapshot_en)
+                                VALUES (1, :productoId, 1, 100, :nombre, 'Descripción del producto', 100, :ahora)
+                                """)
+                        .bind("productoId", 1000L + i)
+                        .bind("nombre", "Producto " + i)
+                        .bind("ahora", LocalDateTime.now())
+                        .then())
+                .then()
+                .block();
+    }
+
+    // Implementación anterior: findByUserId y luego findAllByCarritoId, con entidades intermedias
+    @Benchmark
+    public CartWithProductsDto lecturaEnDosConsultas() {
+        Cart cart = entityTemplate.selectOne(Query.query(Criteria.where("userId").is(USER_ID)), Cart.class).block();
+        List<CartDetail> detalles = entityTemplate.select(Query.query(Criteria.where("carritoId").is(cart.getId())),
+                CartDetail.class).collectList().block();
+
+        CartWithProductsDto dto = new CartWithProductsDto();
+        dto.setCartId(cart.getId());
+        dto.setUserId(cart.getUserId());
+        dto.setEstadoCarrito(cart.isEstado() ? "activo" : "inactivo");
+        dto.setNumeroProductos(cart.getNumeroProductos());
+        dto.setTotalUnidades(cart.getTotalUnidades());
+        dto.setPrecioTotal(cart.getPrecioTotal());
+        dto.setCreatedAt(cart.getCreatedAt());
+        dto.setUltimoMovimiento(cart.getUltimoMovimiento());
+        dto.setProducts(detalles.stream()
+                .map(detalle -> ProductInCartDto.builder()
+                        .id(detalle.getId())
+                        .productoId(detalle.getProductoId())
+                        .nombre(detalle.getNombreProducto())
+                        .descripcion(detalle.getDescripcionProducto())
+                        .cantidad(detalle.getCantidad())
+                        .precioUnitario(detalle.getPrecioUnitario())
+                        .precioTotal(detalle.getPrecioTotal())
+                        .build())
+                .toList());
+        return dto;
+    }
+
+    @Benchmark
+    public CartWithProductsDto lecturaUnida() {
+        return cartReadRepository.buscarPorUsuario(USER_ID).block().carrito();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CarritoLecturaBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+}
@@ -0,0 +1,148 @@
+package com.Arka.MSCart.benchmark;
+
+import com.Arka.MSCart.dto.CartWithProductsDto;
+import com.Arka.MSCart.dto.ProductInCartDto;
+import com.Arka.MSCart.model.CartDetail;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Benchmark JMH del armado de la respuesta del carrito (getCartWithProducts) para 1, 20 y 200 líneas
+ * - Construcción de ProductInCartDto con el builder de Lombok frente al constructor.
+ * - Cálculo de totales (productos, unidades y precio) sobre List<CartDetail>: tres streams frente a una pasada.
+ *   En producción los totales se mantienen en la cabecera del carrito; este cálculo es el costo de recalcularlos.
+ * - Serialización JSON de CartWithProductsDto con un ObjectMapper configurado como el de Spring Boot.
+ *
+ * Ejecución: mvn -Pbenchmark verify -Djmh.incluir=CarritoRespuestaBenchmark (resultados en target/jmh-resultados.json).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CarritoRespuestaBenchmark {
+
+    @Param({"1", "20", "200"})
+    private int numeroLineas;
+
+    private List<CartDetail> detalles;
+    private CartWithProductsDto carrito;
+    private ObjectMapper objectMapper;
+
+    @Setup
+    public void preparar() {
+        LocalDateTime ahora = LocalDateTime.of(2025, 11, 15, 10, 30);
+        detalles = IntStream.range(0, numeroLineas)
+                .mapToObj(i -> CartDetail.builder()
+                        .id(10_000L + i)
+                        .carritoId(1L)
+                        .productoId(1_000L + i)
+                        .cantidad(1L + i % 3)
+                        .precioTotal((1 + i % 3) * 2_500)
+                        .nombreProducto("Producto de prueba " + i)
+                        .descripcionProducto("Descripción del producto de prueba " + i)
+                        .precioUnitario(2_500)
+                        .snapshotEn(ahora)
+                        .build())
+                .toList();
+
+        carrito = new CartWithProductsDto();
+        carrito.setCartId(1L);
+        carrito.setUserId(5L);
+        carrito.setNombreUsuario("Cliente de prueba");
+        carrito.setDireccionUsuario("Calle Principal 123");
+        carrito.setTelefonoUsuario("+57 300 123 4567");
+        carrito.setEstadoCarrito("activo");
+        carrito.setNumeroProductos((long) numeroLineas);
+        carrito.setTotalUnidades(totalesEnUnaPasada()[1]);
+        carrito.setPrecioTotal((int) totalesEnUnaPasada()[2]);
+        carrito.setCreatedAt(ahora);
+        carrito.setUltimoMovimiento(ahora);
+        carrito.setProducts(productosConConstructor());
+
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    }
+
+    @Benchmark
+    public List<ProductInCartDto> productosConBuilder() {
+        List<ProductInCartDto> productos = new ArrayList<>(detalles.size());
+        for (CartDetail detalle : detalles) {
+            productos.add(ProductInCartDto.builder()
+                    .id(detalle.getId())
+                    .productoId(detalle.getProductoId())
+                    .nombre(detalle.getNombreProducto())
+                    .descripcion(detalle.getDescripcionProducto())
+                    .cantidad(detalle.getCantidad())
+                    .precioUnitario(detalle.getPrecioUnitario())
+                    .precioTotal(detalle.getPrecioTotal())
+                    .build());
+        }
+        return productos;
+    }
+
+    @Benchmark
+    public List<ProductInCartDto> productosConConstructor() {
+        List<ProductInCartDto> productos = new ArrayList<>(detalles.size());
+        for (CartDetail detalle : detalles) {
+            productos.add(new ProductInCartDto(detalle.getId(), detalle.getProductoId(), detalle.getNombreProducto(),
+                    detalle.getDescripcionProducto(), detalle.getCantidad(), detalle.getPrecioUnitario(),
+                    detalle.getPrecioTotal()));
+        }
+        return productos;
+    }
+
+    // Productos, unidades y precio total con un stream por total
+    @Benchmark
+    public long[] totalesConStreams() {
+        return new long[] {
+                detalles.size(),
+                detalles.stream().mapToLong(CartDetail::getCantidad).sum(),
+                detalles.stream().mapToLong(CartDetail::getPrecioTotal).sum()
+        };
+    }
+
+    @Benchmark
+    public long[] totalesEnUnaPasada() {
+        long unidades = 0;
+        long precio = 0;
+        for (CartDetail detalle : detalles) {
+            unidades += detalle.getCantidad();
+            precio += detalle.getPrecioTotal();
+        }
+        return new long[] {detalles.size(), unidades, precio};
+    }
+
+    @Benchmark
+    public byte[] serializarJson() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(carrito);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CarritoRespuestaBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+}
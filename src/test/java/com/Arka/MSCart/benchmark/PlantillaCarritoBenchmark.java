@@ -0,0 +1,82 @@
+package com.Arka.MSCart.benchmark;
+
+import com.Arka.MSCart.dto.notificationDto.CarritoAbandonado;
+import com.Arka.MSCart.dto.notificationDto.ProductoAbandonado;
+import com.Arka.MSCart.template.PlantillaCarritoAbandonado;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Benchmark JMH del renderizado del email de carrito abandonado
+ * Compara la plantilla precompilada con los reemplazos sucesivos (String.replace + String.format)
+ * para 1, 10 y 100 productos.
+ *
+ * Ejecución: mvn -Pbenchmark verify -Djmh.incluir=PlantillaCarritoBenchmark (resultados en target/jmh-resultados.json, con las
+ * asignaciones de memoria por operación del perfilador gc), o el main de esta clase con el classpath de pruebas.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlantillaCarritoBenchmark {
+
+    @Param({"1", "10", "100"})
+    private int numeroProductos;
+
+    private CarritoAbandonado carrito;
+    private PlantillaCarritoAbandonado plantilla;
+
+    @Setup
+    public void preparar() {
+        List<ProductoAbandonado> productos = IntStream.range(0, numeroProductos)
+                .mapToObj(i -> new ProductoAbandonado("Producto de prueba " + i, 1 + i % 3, 1000.0 + i))
+                .toList();
+        carrito = new CarritoAbandonado("Cliente de prueba", "cliente@example.com",
+                "http://localhost:8093/api/v1/gateway/auth/login", productos);
+        plantilla = new PlantillaCarritoAbandonado();
+    }
+
+    @Benchmark
+    public String plantillaPrecompilada() {
+        return plantilla.renderizar(carrito);
+    }
+
+    // Implementación anterior: una pasada completa de String.replace por marcador y String.format por producto
+    @Benchmark
+    public String reemplazosSucesivos() {
+        String html = PlantillaCarritoAbandonado.TEMPLATE_CARRITO;
+        html = html.replace("[NOMBRE_CLIENTE]", carrito.getNombreCliente());
+        html = html.replace("[URL_CARRITO]", carrito.getUrlLogin());
+
+        StringBuilder productosHtml = new StringBuilder();
+        for (ProductoAbandonado p : carrito.getProductos()) {
+            productosHtml.append(String.format("<li><strong>%s</strong> - %s</li>", p.getNombreProducto(), p.getPrecioUnitario()));
+        }
+        return html.replace("[LISTA_PRODUCTOS]", productosHtml.toString());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(PlantillaCarritoBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+}
@@ -0,0 +1,142 @@
+package com.Arka.MSCart.cache;
+
+import com.Arka.MSCart.client.InventarioClient;
+import com.Arka.MSCart.dto.ConsultProductInventarioDto;
+import com.Arka.MSCart.exception.ServicioExternoException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Pruebas unitarias para ProductoInfoCache
+ * Capa de Acceso a Datos - Caché
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("ProductoInfoCache - Pruebas Unitarias")
+class ProductoInfoCacheTest {
+
+    @Mock
+    private InventarioClient inventarioClient;
+
+    private SimpleMeterRegistry meterRegistry;
+    private ProductoInfoCache productoInfoCache;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        productoInfoCache = new ProductoInfoCache(inventarioClient, meterRegistry,
+                100, Duration.ofMinutes(10), Duration.ofMinutes(1), Duration.ofHours(24));
+    }
+
+    @Test
+    @DisplayName("Debería consultar el inventario una sola vez para lecturas repetidas y concurrentes")
+    void deberiaConsultarInventarioUnaSolaVez() {
+        ConsultProductInventarioDto producto = new ConsultProductInventarioDto("Mouse", "Inalámbrico", 10, 250);
+        when(inventarioClient.consultarProducto(100L))
+                .thenReturn(Mono.just(producto).delayElement(Duration.ofMillis(50)));
+
+        StepVerifier.create(Flux.range(0, 5)
+                        .flatMap(i -> productoInfoCache.consultarProducto(100L))
+                        .collectList())
+                .assertNext(productos -> assertThat(productos).hasSize(5).allMatch(p -> p.getNombre().equals("Mouse")))
+                .verifyComplete();
+
+        StepVerifier.create(productoInfoCache.consultarProducto(100L))
+                .expectNextMatches(p -> p.getPrice() == 250)
+                .verifyComplete();
+
+        verify(inventarioClient, times(1)).consultarProducto(100L);
+        assertThat(meterRegistry.get("cache.gets").tag("cache", "productos").tag("result", "hit")
+                .functionCounter().count()).isPositive();
+    }
+
+    @Test
+    @DisplayName("Debería consultar por lote solo los productos ausentes en caché")
+    void deberiaConsultarPorLoteSoloLosAusentes() {
+        when(inventarioClient.consultarProductos(anyCollection()))
+                .thenReturn(Mono.just(Map.of(
+                        1L, new ConsultProductInventarioDto("A", "a", 1, 10),
+                        2L, new ConsultProductInventarioDto("B", "b", 1, 20))));
+
+        StepVerifier.create(productoInfoCache.consultarProductos(List.of(1L, 2L, 3L)))
+                .assertNext(productos -> assertThat(productos).containsOnlyKeys(1L, 2L))
+                .verifyComplete();
+
+        StepVerifier.create(productoInfoCache.consultarProductos(List.of(1L, 2L)))
+                .assertNext(productos -> assertThat(productos).containsOnlyKeys(1L, 2L))
+                .verifyComplete();
+
+        verify(inventarioClient, times(1)).consultarProductos(anyCollection());
+        verify(inventarioClient, never()).consultarProducto(1L);
+    }
+
+    @Test
+    @DisplayName("Debería servir los últimos valores conocidos cuando el inventario no está disponible")
+    void deberiaServirUltimosConocidosSinInventario() {
+        when(inventarioClient.consultarProductos(anyCollection()))
+                .thenReturn(Mono.just(Map.of(1L, new ConsultProductInventarioDto("A", "a", 1, 10))))
+                .thenReturn(Mono.error(ServicioExternoException.noDisponible("inventario")));
+
+        StepVerifier.create(productoInfoCache.consultarProductos(List.of(1L))).expectNextCount(1).verifyComplete();
+        productoInfoCache.invalidar(1L);
+
+        // El producto 1 se sirve con su último valor; el 2 nunca se obtuvo y queda fuera del mapa
+        StepVerifier.create(productoInfoCache.consultarProductos(List.of(1L, 2L)))
+                .assertNext(productos -> {
+                    assertThat(productos).containsOnlyKeys(1L);
+                    assertThat(productos.get(1L).getNombre()).isEqualTo("A");
+                })
+                .verifyComplete();
+        assertThat(meterRegistry.get("ms.cart.fallback.servidos").tag("origen", "productos").counter().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Debería excluir y olvidar los productos que el inventario responde como inexistentes")
+    void deberiaOlvidarProductosNoEncontrados() {
+        when(inventarioClient.consultarProductos(anyCollection()))
+                .thenReturn(Mono.just(Map.of(
+                        1L, new ConsultProductInventarioDto("A", "a", 1, 10),
+                        2L, new ConsultProductInventarioDto("B", "b", 1, 20))))
+                // El producto 2 se eliminó del inventario
+                .thenReturn(Mono.just(Map.of(1L, new ConsultProductInventarioDto("A", "a", 1, 10))))
+                .thenReturn(Mono.error(ServicioExternoException.noDisponible("inventario")));
+
+        StepVerifier.create(productoInfoCache.consultarProductos(List.of(1L, 2L)))
+                .assertNext(productos -> assertThat(productos).containsOnlyKeys(1L, 2L))
+                .verifyComplete();
+        productoInfoCache.invalidar(1L);
+        productoInfoCache.invalidar(2L);
+
+        // La respuesta sin el producto 2 no se completa con su último valor conocido
+        StepVerifier.create(productoInfoCache.consultarProductos(List.of(1L, 2L)))
+                .assertNext(productos -> assertThat(productos).containsOnlyKeys(1L))
+                .verifyComplete();
+        productoInfoCache.invalidar(1L);
+
+        // Con el inventario caído tampoco se sirve: su último valor conocido se descartó
+        StepVerifier.create(productoInfoCache.consultarProductos(List.of(1L, 2L)))
+                .assertNext(productos -> assertThat(productos).containsOnlyKeys(1L))
+                .verifyComplete();
+        assertThat(meterRegistry.get("ms.cart.fallback.servidos").tag("origen", "productos").counter().count())
+                .isEqualTo(1);
+    }
+}
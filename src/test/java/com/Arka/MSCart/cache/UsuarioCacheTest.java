@@ -0,0 +1,134 @@
+package com.Arka.MSCart.cache;
+
+import com.Arka.MSCart.client.AuthClient;
+import com.Arka.MSCart.config.Plazo;
+import com.Arka.MSCart.dto.AdminDto.ConsultUserInAuthDto;
+import com.Arka.MSCart.exception.PlazoVencidoException;
+import com.Arka.MSCart.exception.ServicioExternoException;
+import com.Arka.MSCart.exception.UsuarioNoEncontradoException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cloud.context.environment.EnvironmentChangeEvent;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Pruebas unitarias para UsuarioCache
+ * Capa de Acceso a Datos - Caché
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("UsuarioCache - Pruebas Unitarias")
+class UsuarioCacheTest {
+
+    @Mock
+    private AuthClient authClient;
+
+    private SimpleMeterRegistry meterRegistry;
+    private UsuarioCache usuarioCache;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        usuarioCache = new UsuarioCache(authClient, meterRegistry, 100, Duration.ofMinutes(5), Duration.ofSeconds(30), Duration.ofHours(24));
+    }
+
+    @Test
+    @DisplayName("Debería combinar consultas concurrentes del mismo usuario en una sola llamada")
+    void deberiaCombinarConsultasConcurrentes() {
+        when(authClient.consultarUsuario(1L)).thenReturn(Mono.just(ConsultUserInAuthDto.builder()
+                .name("Juan Pérez").build()).delayElement(Duration.ofMillis(50)));
+
+        StepVerifier.create(Flux.range(0, 5).flatMap(i -> usuarioCache.consultarUsuario(1L)).count())
+                .expectNext(5L)
+                .verifyComplete();
+
+        verify(authClient, times(1)).consultarUsuario(1L);
+        assertThat(meterRegistry.get("cache.hit.ratio").tag("cache", "usuarios").gauge().value()).isPositive();
+    }
+
+    @Test
+    @DisplayName("Debería recordar usuarios inexistentes sin volver a consultarlos")
+    void deberiaRecordarUsuariosInexistentes() {
+        when(authClient.consultarUsuario(999L)).thenReturn(Mono.error(UsuarioNoEncontradoException.conId(999L)));
+
+        StepVerifier.create(usuarioCache.consultarUsuario(999L))
+                .expectError(UsuarioNoEncontradoException.class)
+                .verify();
+        StepVerifier.create(usuarioCache.consultarUsuario(999L))
+                .expectError(UsuarioNoEncontradoException.class)
+                .verify();
+
+        verify(authClient, times(1)).consultarUsuario(999L);
+    }
+
+    @Test
+    @DisplayName("Debería servir el último usuario conocido cuando el servicio de autenticación no está disponible")
+    void deberiaServirUltimoConocidoSinAutenticacion() {
+        when(authClient.consultarUsuario(3L))
+                .thenReturn(Mono.just(ConsultUserInAuthDto.builder().name("Luis").build()))
+                .thenReturn(Mono.error(ServicioExternoException.noDisponible("auth")));
+
+        StepVerifier.create(usuarioCache.consultarUsuario(3L)).expectNextCount(1).verifyComplete();
+        usuarioCache.invalidar(3L);
+
+        StepVerifier.create(usuarioCache.consultarUsuario(3L))
+                .expectNextMatches(usuario -> usuario.getName().equals("Luis"))
+                .verifyComplete();
+        assertThat(meterRegistry.get("ms.cart.fallback.servidos").tag("origen", "usuarios").counter().count())
+                .isEqualTo(1);
+
+        // Un usuario nunca visto no tiene respaldo: el error se propaga
+        when(authClient.consultarUsuario(4L)).thenReturn(Mono.error(ServicioExternoException.noDisponible("auth")));
+        StepVerifier.create(usuarioCache.consultarUsuario(4L))
+                .expectError(ServicioExternoException.class)
+                .verify();
+    }
+
+    @Test
+    @DisplayName("Debería acotar la espera al plazo de la petición sin cancelar la carga compartida")
+    void deberiaAcotarEsperaAlPlazo() {
+        Sinks.One<ConsultUserInAuthDto> respuesta = Sinks.one();
+        when(authClient.consultarUsuario(4L)).thenReturn(respuesta.asMono());
+
+        StepVerifier.create(usuarioCache.consultarUsuario(4L)
+                        .contextWrite(Plazo.desde(Duration.ofMillis(50))::guardarEn))
+                .expectError(PlazoVencidoException.class)
+                .verify(Duration.ofSeconds(5));
+
+        // La carga sigue en curso y la recibe el siguiente llamador sin una nueva consulta
+        StepVerifier.create(usuarioCache.consultarUsuario(4L))
+                .then(() -> respuesta.tryEmitValue(ConsultUserInAuthDto.builder().name("Eva").build()))
+                .assertNext(usuario -> assertThat(usuario.getName()).isEqualTo("Eva"))
+                .verifyComplete();
+        verify(authClient, times(1)).consultarUsuario(4L);
+    }
+
+    @Test
+    @DisplayName("Debería vaciarse cuando un refresco de configuración cambia propiedades ms.auth.*")
+    void deberiaVaciarseAlRefrescarConfiguracionAuth() {
+        when(authClient.consultarUsuario(2L)).thenReturn(Mono.just(ConsultUserInAuthDto.builder().name("Ana").build()));
+
+        StepVerifier.create(usuarioCache.consultarUsuario(2L)).expectNextCount(1).verifyComplete();
+        usuarioCache.alCambiarConfiguracion(new EnvironmentChangeEvent(Set.of("ms.inventario.baseUri")));
+        StepVerifier.create(usuarioCache.consultarUsuario(2L)).expectNextCount(1).verifyComplete();
+        usuarioCache.alCambiarConfiguracion(new EnvironmentChangeEvent(Set.of("ms.auth.baseUri")));
+        StepVerifier.create(usuarioCache.consultarUsuario(2L)).expectNextCount(1).verifyComplete();
+
+        verify(authClient, times(2)).consultarUsuario(2L);
+    }
+}
@@ -0,0 +1,167 @@
+package com.Arka.MSCart.cache;
+
+import com.Arka.MSCart.config.Plazo;
+import com.Arka.MSCart.dto.CartWithProductsDto;
+import com.Arka.MSCart.exception.CarritoNoEncontradoException;
+import com.Arka.MSCart.exception.PlazoVencidoException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Pruebas unitarias para VistasCarritoEnCurso
+ * Capa de Acceso a Datos - Caché
+ *
+ * Las lecturas se controlan con Sinks para mantenerlas en curso mientras llegan las demás.
+ */
+@DisplayName("VistasCarritoEnCurso - Pruebas Unitarias")
+class VistasCarritoEnCursoTest {
+
+    private static final Long USER_ID = 5L;
+
+    private SimpleMeterRegistry meterRegistry;
+    private VistasCarritoEnCurso vistasEnCurso;
+    private final AtomicInteger ejecuciones = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        vistasEnCurso = new VistasCarritoEnCurso(meterRegistry, true);
+    }
+
+    @Test
+    @DisplayName("Debería compartir una sola lectura entre las lecturas concurrentes del mismo usuario")
+    void deberiaCompartirLecturaEnCurso() {
+        Sinks.One<CartWithProductsDto> lectura = Sinks.one();
+        CartWithProductsDto carrito = carrito(1L);
+
+        StepVerifier primera = StepVerifier.create(leer(lectura)).expectNext(carrito).expectComplete().verifyLater();
+        StepVerifier segunda = StepVerifier.create(leer(lectura)).expectNext(carrito).expectComplete().verifyLater();
+        StepVerifier otroUsuario = StepVerifier.create(vistasEnCurso.compartir(6L, () -> Mono.just(carrito(2L))))
+                .expectNextCount(1).expectComplete().verifyLater();
+
+        lectura.tryEmitValue(carrito);
+        primera.verify();
+        segunda.verify();
+        otroUsuario.verify();
+
+        assertThat(ejecuciones).hasValue(1);
+        assertThat(contador("ejecutada")).isEqualTo(2.0);
+        assertThat(contador("compartida")).isEqualTo(1.0);
+
+        // Terminada la lectura, la siguiente vuelve a consultar
+        StepVerifier.create(leer(Sinks.one(), carrito(3L))).expectNextCount(1).verifyComplete();
+        assertThat(ejecuciones).hasValue(2);
+    }
+
+    @Test
+    @DisplayName("Debería ejecutar una nueva lectura tras una mutación sin afectar a las lecturas ya unidas")
+    void deberiaEjecutarNuevaLecturaTrasInvalidar() {
+        Sinks.One<CartWithProductsDto> anterior = Sinks.one();
+        Sinks.One<CartWithProductsDto> posterior = Sinks.one();
+
+        StepVerifier unida = StepVerifier.create(leer(anterior))
+                .assertNext(dto -> assertThat(dto.getPrecioTotal()).isEqualTo(100))
+                .expectComplete().verifyLater();
+
+        vistasEnCurso.invalidar(USER_ID);
+        StepVerifier trasMutacion = StepVerifier.create(leer(posterior))
+                .assertNext(dto -> assertThat(dto.getPrecioTotal()).isEqualTo(200))
+                .expectComplete().verifyLater();
+        // La lectura anterior termina después: no debe retirar a la nueva
+        anterior.tryEmitValue(carrito(1L, 100));
+        StepVerifier compartida = StepVerifier.create(leer(Sinks.one()))
+                .assertNext(dto -> assertThat(dto.getPrecioTotal()).isEqualTo(200))
+                .expectComplete().verifyLater();
+        posterior.tryEmitValue(carrito(1L, 200));
+
+        unida.verify();
+        trasMutacion.verify();
+        compartida.verify();
+        assertThat(ejecuciones).hasValue(2);
+    }
+
+    @Test
+    @DisplayName("Debería propagar el error de la lectura a todas las lecturas unidas")
+    void deberiaCompartirError() {
+        Sinks.One<CartWithProductsDto> lectura = Sinks.one();
+
+        StepVerifier primera = StepVerifier.create(leer(lectura))
+                .expectError(CarritoNoEncontradoException.class).verifyLater();
+        StepVerifier segunda = StepVerifier.create(leer(lectura))
+                .expectError(CarritoNoEncontradoException.class).verifyLater();
+
+        lectura.tryEmitError(CarritoNoEncontradoException.paraUsuario(USER_ID));
+        primera.verify();
+        segunda.verify();
+        assertThat(ejecuciones).hasValue(1);
+    }
+
+    @Test
+    @DisplayName("Debería acotar cada lectura unida a su propio plazo y no al de la primera petición")
+    void deberiaAcotarCadaLecturaASuPlazo() {
+        Sinks.One<CartWithProductsDto> lectura = Sinks.one();
+        AtomicReference<Optional<Plazo>> plazoDeLectura = new AtomicReference<>();
+        CartWithProductsDto carrito = carrito(1L);
+        Mono<CartWithProductsDto> compartida = vistasEnCurso.compartir(USER_ID, () -> Mono.deferContextual(contexto -> {
+            ejecuciones.incrementAndGet();
+            plazoDeLectura.set(Plazo.delContexto(contexto));
+            return lectura.asMono();
+        }));
+
+        // La primera petición tiene un plazo corto y la que se une, uno largo
+        StepVerifier corta = StepVerifier.create(compartida.contextWrite(Plazo.desde(Duration.ofMillis(100))::guardarEn))
+                .expectError(PlazoVencidoException.class).verifyLater();
+        StepVerifier larga = StepVerifier.create(leer(lectura).contextWrite(Plazo.desde(Duration.ofSeconds(10))::guardarEn))
+                .expectNext(carrito).expectComplete().verifyLater();
+
+        corta.verify(Duration.ofSeconds(5));
+        // Agotado el plazo de la primera, la lectura sigue en curso para la que se unió
+        lectura.tryEmitValue(carrito);
+        larga.verify(Duration.ofSeconds(5));
+
+        assertThat(plazoDeLectura.get()).isEmpty();
+        assertThat(ejecuciones).hasValue(1);
+        assertThat(contador("compartida")).isEqualTo(1.0);
+    }
+
+    // Lectura del usuario de prueba que cuenta sus ejecuciones y completa con el valor emitido en el sink
+    private Mono<CartWithProductsDto> leer(Sinks.One<CartWithProductsDto> lectura) {
+        return vistasEnCurso.compartir(USER_ID, () -> {
+            ejecuciones.incrementAndGet();
+            return lectura.asMono();
+        });
+    }
+
+    private Mono<CartWithProductsDto> leer(Sinks.One<CartWithProductsDto> lectura, CartWithProductsDto valor) {
+        lectura.tryEmitValue(valor);
+        return leer(lectura);
+    }
+
+    private double contador(String resultado) {
+        return meterRegistry.get("ms.cart.lectura.compartida").tag("resultado", resultado).counter().count();
+    }
+
+    private static CartWithProductsDto carrito(Long cartId) {
+        return carrito(cartId, 0);
+    }
+
+    private static CartWithProductsDto carrito(Long cartId, int precioTotal) {
+        CartWithProductsDto dto = new CartWithProductsDto();
+        dto.setCartId(cartId);
+        dto.setUserId(USER_ID);
+        dto.setPrecioTotal(precioTotal);
+        return dto;
+    }
+}
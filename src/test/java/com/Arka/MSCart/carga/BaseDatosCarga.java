@@ -0,0 +1,71 @@
+package com.Arka.MSCart.carga;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+
+import java.io.IOException;
+
+/**
+ * Base de datos PostgreSQL para la prueba de carga
+ * Prueba de carga
+ *
+ * Por defecto arranca un PostgreSQL embebido (binarios de io.zonky.test) en un directorio temporal; las consultas
+ * del servicio usan SQL propio de PostgreSQL (upsert con ON CONFLICT, unnest, CTE con modificación de datos), así que
+ * H2 no sirve como sustituto. Con carga.db.host se usa en su lugar un PostgreSQL local existente
+ * (carga.db.puerto, carga.db.nombre, carga.db.usuario, carga.db.clave).
+ */
+final class BaseDatosCarga implements AutoCloseable {
+
+    private final EmbeddedPostgres embebida;
+    private final String host;
+    private final int puerto;
+    private final String nombre;
+    private final String usuario;
+    private final String clave;
+
+    private BaseDatosCarga(EmbeddedPostgres embebida, String host, int puerto, String nombre, String usuario, String clave) {
+        this.embebida = embebida;
+        this.host = host;
+        this.puerto = puerto;
+        this.nombre = nombre;
+        this.usuario = usuario;
+        this.clave = clave;
+    }
+
+    static BaseDatosCarga iniciar() throws IOException {
+        String host = System.getProperty("carga.db.host");
+        if (host != null && !host.isBlank()) {
+            return new BaseDatosCarga(null, host,
+                    Integer.getInteger("carga.db.puerto", 5432),
+                    System.getProperty("carga.db.nombre", "postgres"),
+                    System.getProperty("carga.db.usuario", "postgres"),
+                    System.getProperty("carga.db.clave", "postgres"));
+        }
+
+        EmbeddedPostgres embebida = EmbeddedPostgres.builder().start();
+        return new BaseDatosCarga(embebida, "localhost", embebida.getPort(), "postgres", "postgres", "postgres");
+    }
+
+    String urlR2dbc() {
+        return "r2dbc:postgresql://" + host + ":" + puerto + "/" + nombre;
+    }
+
+    // El starter de JPA también necesita un DataSource, aunque el servicio solo use R2DBC
+    String urlJdbc() {
+        return "jdbc:postgresql://" + host + ":" + puerto + "/" + nombre;
+    }
+
+    String usuario() {
+        return usuario;
+    }
+
+    String clave() {
+        return clave;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (embebida != null) {
+            embebida.close();
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.Arka.MSCart.carga;
+
+import org.springframework.boot.convert.DurationStyle;
+
+import java.time.Duration;
+import java.util.random.RandomGenerator;
+
+/**
+ * Latencia y tasa de errores de un microservicio simulado
+ * Prueba de carga
+ *
+ * La latencia de cada respuesta es la base más una cola exponencial de media cola, lo que produce percentiles
+ * altos muy por encima de la mediana, como en un servicio real. Una fracción errores de las respuestas es un 503.
+ * Se configura con carga.stub.<nombre>.latencia, carga.stub.<nombre>.cola y carga.stub.<nombre>.errores.
+ */
+record ComportamientoStub(Duration latencia, Duration cola, double errores) {
+
+    static ComportamientoStub desdePropiedades(String nombre) {
+        String prefijo = "carga.stub." + nombre + ".";
+        return new ComportamientoStub(
+                DurationStyle.detectAndParse(System.getProperty(prefijo + "latencia", "5ms")),
+                DurationStyle.detectAndParse(System.getProperty(prefijo + "cola", "5ms")),
+                Double.parseDouble(System.getProperty(prefijo + "errores", "0")));
+    }
+
+    Duration muestrearLatencia(RandomGenerator aleatorio) {
+        long colaNanos = (long) (-Math.log(1 - aleatorio.nextDouble()) * cola.toNanos());
+        return latencia.plusNanos(colaNanos);
+    }
+
+    boolean muestrearError(RandomGenerator aleatorio) {
+        return aleatorio.nextDouble() < errores;
+    }
+
+    @Override
+    public String toString() {
+        return "latencia=" + latencia.toMillis() + "ms cola=" + cola.toMillis() + "ms errores=" + errores;
+    }
+}
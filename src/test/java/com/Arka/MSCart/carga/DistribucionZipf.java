@@ -0,0 +1,37 @@
+package com.Arka.MSCart.carga;
+
+import java.util.Arrays;
+import java.util.random.RandomGenerator;
+
+/**
+ * Distribución de Zipf sobre los rangos 1..n con exponente s
+ * Prueba de carga
+ *
+ * El rango 1 es el más frecuente: con s cercano a 1 unos pocos usuarios y productos concentran gran parte
+ * del tráfico, como en producción. La muestra es una búsqueda binaria sobre la distribución acumulada precalculada.
+ */
+final class DistribucionZipf {
+
+    private final double[] acumulada;
+
+    DistribucionZipf(int n, double exponente) {
+        if (n < 1) {
+            throw new IllegalArgumentException("La distribución necesita al menos un elemento");
+        }
+        acumulada = new double[n];
+        double suma = 0;
+        for (int rango = 1; rango <= n; rango++) {
+            suma += 1.0 / Math.pow(rango, exponente);
+            acumulada[rango - 1] = suma;
+        }
+        for (int i = 0; i < n; i++) {
+            acumulada[i] /= suma;
+        }
+    }
+
+    // Rango entre 1 y n
+    int muestrear(RandomGenerator aleatorio) {
+        int indice = Arrays.binarySearch(acumulada, aleatorio.nextDouble());
+        return (indice >= 0 ? indice : -indice - 1) + 1;
+    }
+}
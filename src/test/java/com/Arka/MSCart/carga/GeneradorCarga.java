@@ -0,0 +1,212 @@
+package com.Arka.MSCart.carga;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Generador de carga de ciclo cerrado sobre los endpoints del cliente
+ * Prueba de carga
+ *
+ * Cada usuario virtual envía una petición, espera la respuesta y envía la siguiente, de modo que la concurrencia
+ * es fija y el throughput medido es el que el servicio sostiene. La operación se elige según la mezcla configurada;
+ * el usuario (X-Auth-User-Id) y el producto siguen distribuciones de Zipf, así que los carritos y SKU más populares
+ * concentran el tráfico y la contención. Cada usuario virtual tiene su propio generador con semilla derivada
+ * de carga.semilla: con la misma semilla la secuencia de operaciones se repite entre ejecuciones.
+ *
+ * Las latencias se registran en un histograma HdrHistogram por endpoint solo después del calentamiento.
+ */
+final class GeneradorCarga {
+
+    private static final String BASE = "/api/v1/carts";
+    private static final String CABECERA_USUARIO = "X-Auth-User-Id";
+    private static final long LATENCIA_MAXIMA_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    enum Operacion {
+        VER(HttpMethod.GET, "/vercarrito"),
+        AGREGAR(HttpMethod.POST, "/agregarproducto"),
+        ELIMINAR(HttpMethod.DELETE, "/eliminarproducto/{productId}"),
+        VACIAR(HttpMethod.DELETE, "/vaciarcarrito"),
+        COMPRAR(HttpMethod.GET, "/realizarcompra");
+
+        private final HttpMethod metodo;
+        private final String ruta;
+
+        Operacion(HttpMethod metodo, String ruta) {
+            this.metodo = metodo;
+            this.ruta = ruta;
+        }
+
+        String endpoint() {
+            return metodo.name() + " " + BASE + ruta;
+        }
+    }
+
+    /**
+     * Resultados de un endpoint: histograma de latencias en nanosegundos y respuestas por clase de estado.
+     * Las respuestas 4xx son esperables (eliminar un producto que no está en el carrito, comprar un carrito vacío).
+     */
+    static final class ResultadoEndpoint {
+
+        final Histogram latencias = new ConcurrentHistogram(LATENCIA_MAXIMA_NANOS, 3);
+        final LongAdder exitosas = new LongAdder();
+        final LongAdder erroresCliente = new LongAdder();
+        final LongAdder erroresServidor = new LongAdder();
+        final LongAdder erroresConexion = new LongAdder();
+
+        long total() {
+            return exitosas.sum() + erroresCliente.sum() + erroresServidor.sum() + erroresConexion.sum();
+        }
+
+        private void registrar(int estado, long nanos) {
+            latencias.recordValue(Math.min(nanos, LATENCIA_MAXIMA_NANOS));
+            if (estado < 400) {
+                exitosas.increment();
+            } else if (estado < 500) {
+                erroresCliente.increment();
+            } else {
+                erroresServidor.increment();
+            }
+        }
+    }
+
+    private final WebClient webClient;
+    private final ConnectionProvider pool;
+    private final int concurrencia;
+    private final long semilla;
+    private final DistribucionZipf usuarios;
+    private final DistribucionZipf productos;
+    private final Operacion[] operacionesPorPeso;
+    private final Map<Operacion, ResultadoEndpoint> resultados = new EnumMap<>(Operacion.class);
+
+    private volatile boolean midiendo;
+
+    GeneradorCarga(String urlServicio, int concurrencia, long semilla, DistribucionZipf usuarios,
+                   DistribucionZipf productos, Map<Operacion, Integer> mezcla) {
+        this.pool = ConnectionProvider.builder("carga")
+                .maxConnections(concurrencia)
+                .pendingAcquireMaxCount(-1)
+                .build();
+        this.webClient = WebClient.builder()
+                .baseUrl(urlServicio + BASE)
+                .clientConnector(new ReactorClientHttpConnector(HttpClient.create(pool)))
+                .build();
+        this.concurrencia = concurrencia;
+        this.semilla = semilla;
+        this.usuarios = usuarios;
+        this.productos = productos;
+        this.operacionesPorPeso = expandirMezcla(mezcla);
+        for (Operacion operacion : mezcla.keySet()) {
+            resultados.put(operacion, new ResultadoEndpoint());
+        }
+    }
+
+    /**
+     * Lee la mezcla de operaciones con el formato ver:50,agregar:25,eliminar:10,vaciar:5,comprar:5.
+     * Los pesos son relativos; una operación omitida no se ejecuta.
+     */
+    static Map<Operacion, Integer> leerMezcla(String mezcla) {
+        Map<Operacion, Integer> pesos = new LinkedHashMap<>();
+        for (String parte : mezcla.split(",")) {
+            String[] operacionPeso = parte.trim().split(":");
+            if (operacionPeso.length != 2) {
+                throw new IllegalArgumentException("Entrada de mezcla inválida: " + parte);
+            }
+            int peso = Integer.parseInt(operacionPeso[1].trim());
+            if (peso > 0) {
+                pesos.put(Operacion.valueOf(operacionPeso[0].trim().toUpperCase()), peso);
+            }
+        }
+        if (pesos.isEmpty()) {
+            throw new IllegalArgumentException("La mezcla no tiene operaciones con peso positivo: " + mezcla);
+        }
+        return pesos;
+    }
+
+    /**
+     * Ejecuta el calentamiento y luego la medición; completa cuando todos los usuarios virtuales terminan
+     * su última petición. Devuelve los resultados de la medición por operación.
+     */
+    Mono<Map<Operacion, ResultadoEndpoint>> ejecutar(Duration calentamiento, Duration duracion) {
+        long inicio = System.nanoTime();
+        long finCalentamiento = inicio + calentamiento.toNanos();
+        long fin = finCalentamiento + duracion.toNanos();
+
+        return Flux.range(0, concurrencia)
+                .flatMap(usuarioVirtual -> {
+                    SplittableRandom aleatorio = new SplittableRandom(semilla + usuarioVirtual);
+                    return Mono.defer(() -> {
+                                if (!midiendo && System.nanoTime() >= finCalentamiento) {
+                                    midiendo = true;
+                                }
+                                return ejecutarOperacion(aleatorio);
+                            })
+                            .repeat(() -> System.nanoTime() < fin)
+                            .then();
+                }, concurrencia)
+                .then(Mono.fromCallable(() -> resultados));
+    }
+
+    void cerrar() {
+        pool.disposeLater().block();
+    }
+
+    private Mono<Void> ejecutarOperacion(SplittableRandom aleatorio) {
+        Operacion operacion = operacionesPorPeso[aleatorio.nextInt(operacionesPorPeso.length)];
+        long userId = usuarios.muestrear(aleatorio);
+        long productId = productos.muestrear(aleatorio);
+
+        WebClient.RequestBodySpec spec = webClient.method(operacion.metodo)
+                .uri(operacion.ruta, productId)
+                .header(CABECERA_USUARIO, String.valueOf(userId));
+        WebClient.RequestHeadersSpec<?> peticion = operacion == Operacion.AGREGAR
+                ? spec.contentType(MediaType.APPLICATION_JSON)
+                        .bodyValue(Map.of("productId", productId, "quantity", 1 + aleatorio.nextInt(3)))
+                : spec;
+
+        ResultadoEndpoint resultado = resultados.get(operacion);
+        boolean registrar = midiendo;
+        long inicio = System.nanoTime();
+        return peticion.exchangeToMono(respuesta -> respuesta.releaseBody()
+                        .thenReturn(respuesta.statusCode().value()))
+                .doOnNext(estado -> {
+                    if (registrar) {
+                        resultado.registrar(estado, System.nanoTime() - inicio);
+                    }
+                })
+                .onErrorResume(ex -> {
+                    if (registrar) {
+                        resultado.erroresConexion.increment();
+                    }
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    private static Operacion[] expandirMezcla(Map<Operacion, Integer> mezcla) {
+        List<Operacion> expandida = new ArrayList<>();
+        mezcla.forEach((operacion, peso) -> {
+            for (int i = 0; i < peso; i++) {
+                expandida.add(operacion);
+            }
+        });
+        return expandida.toArray(Operacion[]::new);
+    }
+}
@@ -0,0 +1,174 @@
+package com.Arka.MSCart.carga;
+
+import com.Arka.MSCart.MsCartApplication;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.boot.web.reactive.context.ReactiveWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Prueba de carga reproducible de MSCart en un solo proceso
+ * Prueba de carga
+ *
+ * Arranca PostgreSQL (BaseDatosCarga), los microservicios simulados (StubsDownstream) y MSCart con el perfil carga,
+ * y ejecuta el GeneradorCarga contra sus endpoints. Al terminar imprime por endpoint el throughput, las respuestas
+ * por clase de estado y los percentiles de latencia, y los guarda en JSON para compararlos entre versiones.
+ *
+ * Ejecución: mvn -Pcarga verify, con las propiedades de sistema (valores por defecto en el perfil del pom):
+ *   carga.duracion, carga.calentamiento     tiempo de medición y de calentamiento (30s, 10s)
+ *   carga.concurrencia                      usuarios virtuales simultáneos (64)
+ *   carga.usuarios, carga.productos         usuarios y SKU distintos (10000, 2000)
+ *   carga.zipf                              exponente de las distribuciones de usuarios y SKU (1.0)
+ *   carga.mezcla                            pesos de las operaciones (ver:50,agregar:25,eliminar:10,vaciar:5,comprar:5)
+ *   carga.semilla                           semilla de los usuarios virtuales (42)
+ *   carga.stub.<auth|inventario|orden|email>.latencia|cola|errores   comportamiento de cada microservicio simulado
+ *   carga.resultados                        archivo JSON de resultados (target/carga-resultados.json)
+ */
+public final class PruebaCarga {
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    private PruebaCarga() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Duration duracion = DurationStyle.detectAndParse(System.getProperty("carga.duracion", "30s"));
+        Duration calentamiento = DurationStyle.detectAndParse(System.getProperty("carga.calentamiento", "10s"));
+        int concurrencia = Integer.getInteger("carga.concurrencia", 64);
+        int usuarios = Integer.getInteger("carga.usuarios", 10_000);
+        int productos = Integer.getInteger("carga.productos", 2_000);
+        double zipf = Double.parseDouble(System.getProperty("carga.zipf", "1.0"));
+        String mezcla = System.getProperty("carga.mezcla", "ver:50,agregar:25,eliminar:10,vaciar:5,comprar:5");
+        long semilla = Long.getLong("carga.semilla", 42L);
+        File archivoResultados = new File(System.getProperty("carga.resultados", "target/carga-resultados.json"));
+
+        Map<String, ComportamientoStub> comportamientos = new LinkedHashMap<>();
+        for (String nombre : new String[]{"auth", "inventario", "orden", "email"}) {
+            comportamientos.put(nombre, ComportamientoStub.desdePropiedades(nombre));
+        }
+
+        try (BaseDatosCarga baseDatos = BaseDatosCarga.iniciar();
+             StubsDownstream stubs = new StubsDownstream(comportamientos.get("auth"), comportamientos.get("inventario"),
+                     comportamientos.get("orden"), comportamientos.get("email"));
+             ConfigurableApplicationContext contexto = iniciarServicio(baseDatos, stubs)) {
+
+            int puerto = ((ReactiveWebServerApplicationContext) contexto).getWebServer().getPort();
+            System.out.printf("MSCart en el puerto %d; %d usuarios virtuales, calentamiento %ss, medición %ss%n",
+                    puerto, concurrencia, calentamiento.toSeconds(), duracion.toSeconds());
+            comportamientos.forEach((nombre, comportamiento) ->
+                    System.out.printf("  stub %-10s %s%n", nombre, comportamiento));
+
+            GeneradorCarga generador = new GeneradorCarga("http://localhost:" + puerto, concurrencia, semilla,
+                    new DistribucionZipf(usuarios, zipf), new DistribucionZipf(productos, zipf),
+                    GeneradorCarga.leerMezcla(mezcla));
+            try {
+                Map<GeneradorCarga.Operacion, GeneradorCarga.ResultadoEndpoint> resultados =
+                        generador.ejecutar(calentamiento, duracion).block();
+                imprimir(resultados, duracion);
+                guardar(archivoResultados, resultados, duracion, concurrencia, mezcla, zipf, semilla, comportamientos);
+            } finally {
+                generador.cerrar();
+            }
+        }
+    }
+
+    private static ConfigurableApplicationContext iniciarServicio(BaseDatosCarga baseDatos, StubsDownstream stubs) {
+        return new SpringApplicationBuilder(MsCartApplication.class)
+                .profiles("carga")
+                .properties(
+                        "carga.url.auth=" + stubs.urlAuth(),
+                        "carga.url.inventario=" + stubs.urlInventario(),
+                        "carga.url.orden=" + stubs.urlOrden(),
+                        "carga.url.email=" + stubs.urlEmail(),
+                        "carga.db.r2dbc=" + baseDatos.urlR2dbc(),
+                        "carga.db.jdbc=" + baseDatos.urlJdbc(),
+                        "carga.db.usuarioConexion=" + baseDatos.usuario(),
+                        "carga.db.claveConexion=" + baseDatos.clave())
+                .run();
+    }
+
+    private static void imprimir(Map<GeneradorCarga.Operacion, GeneradorCarga.ResultadoEndpoint> resultados,
+                                 Duration duracion) {
+        double segundos = duracion.toMillis() / 1000.0;
+        System.out.println();
+        System.out.printf("%-42s %9s %9s %8s %7s %7s %7s %9s %9s %9s %9s %9s%n", "endpoint", "peticiones", "rps",
+                "2xx/3xx", "4xx", "5xx", "conexión", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        resultados.forEach((operacion, resultado) -> {
+            Histogram latencias = resultado.latencias;
+            System.out.printf("%-42s %9d %9.1f %8d %7d %7d %7d %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                    operacion.endpoint(), resultado.total(), resultado.total() / segundos,
+                    resultado.exitosas.sum(), resultado.erroresCliente.sum(), resultado.erroresServidor.sum(),
+                    resultado.erroresConexion.sum(),
+                    milisegundos(latencias.getValueAtPercentile(PERCENTILES[0])),
+                    milisegundos(latencias.getValueAtPercentile(PERCENTILES[1])),
+                    milisegundos(latencias.getValueAtPercentile(PERCENTILES[2])),
+                    milisegundos(latencias.getValueAtPercentile(PERCENTILES[3])),
+                    milisegundos(latencias.getMaxValue()));
+        });
+        long total = resultados.values().stream().mapToLong(GeneradorCarga.ResultadoEndpoint::total).sum();
+        System.out.printf("%nTotal: %d peticiones, %.1f rps%n", total, total / segundos);
+    }
+
+    private static void guardar(File archivo, Map<GeneradorCarga.Operacion, GeneradorCarga.ResultadoEndpoint> resultados,
+                                Duration duracion, int concurrencia, String mezcla, double zipf, long semilla,
+                                Map<String, ComportamientoStub> comportamientos) throws Exception {
+        double segundos = duracion.toMillis() / 1000.0;
+        Map<String, Object> endpoints = new LinkedHashMap<>();
+        resultados.forEach((operacion, resultado) -> {
+            Map<String, Object> latencia = new LinkedHashMap<>();
+            for (double percentil : PERCENTILES) {
+                latencia.put(etiqueta(percentil), milisegundos(resultado.latencias.getValueAtPercentile(percentil)));
+            }
+            latencia.put("max", milisegundos(resultado.latencias.getMaxValue()));
+            latencia.put("media", milisegundos((long) resultado.latencias.getMean()));
+
+            Map<String, Object> datos = new LinkedHashMap<>();
+            datos.put("peticiones", resultado.total());
+            datos.put("rps", resultado.total() / segundos);
+            datos.put("exitosas", resultado.exitosas.sum());
+            datos.put("erroresCliente", resultado.erroresCliente.sum());
+            datos.put("erroresServidor", resultado.erroresServidor.sum());
+            datos.put("erroresConexion", resultado.erroresConexion.sum());
+            datos.put("latenciaMs", latencia);
+            endpoints.put(operacion.endpoint(), datos);
+        });
+
+        Map<String, Object> configuracion = new LinkedHashMap<>();
+        configuracion.put("duracionSegundos", segundos);
+        configuracion.put("concurrencia", concurrencia);
+        configuracion.put("mezcla", mezcla);
+        configuracion.put("zipf", zipf);
+        configuracion.put("semilla", semilla);
+        Map<String, String> stubs = new LinkedHashMap<>();
+        comportamientos.forEach((nombre, comportamiento) -> stubs.put(nombre, comportamiento.toString()));
+        configuracion.put("stubs", stubs);
+
+        Map<String, Object> documento = new LinkedHashMap<>();
+        documento.put("configuracion", configuracion);
+        documento.put("endpoints", endpoints);
+
+        File directorio = archivo.getAbsoluteFile().getParentFile();
+        if (directorio != null) {
+            directorio.mkdirs();
+        }
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(archivo, documento);
+        System.out.println("Resultados guardados en " + archivo.getPath());
+    }
+
+    // p50, p90, p99, p99.9
+    private static String etiqueta(double percentil) {
+        return percentil % 1 == 0 ? "p" + (int) percentil : "p" + percentil;
+    }
+
+    private static double milisegundos(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
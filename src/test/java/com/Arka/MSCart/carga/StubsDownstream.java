@@ -0,0 +1,164 @@
+package com.Arka.MSCart.carga;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.http.server.HttpServerResponse;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Microservicios simulados en el mismo proceso: autenticación, inventario, órdenes y la Lambda de email
+ * Prueba de carga
+ *
+ * Cada uno es un servidor HTTP de Reactor Netty en un puerto libre con su propio ComportamientoStub
+ * (latencia y tasa de errores). Responden con datos deterministas derivados del ID consultado, con stock
+ * suficiente para que las validaciones de stock no limiten la carga.
+ */
+final class StubsDownstream implements AutoCloseable {
+
+    static final String RUTA_USUARIO = "/api/v1/auth/consuluser";
+    static final String RUTA_PRODUCTO = "/api/v1/inventario/producto";
+    static final String RUTA_PRODUCTOS_LOTE = "/api/v1/inventario/productos/lote";
+    static final String RUTA_ORDEN = "/api/v1/orden/crear";
+    static final String RUTA_EMAIL = "/email";
+
+    private static final TypeReference<List<Long>> LISTA_IDS = new TypeReference<>() {};
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final DisposableServer auth;
+    private final DisposableServer inventario;
+    private final DisposableServer orden;
+    private final DisposableServer email;
+
+    StubsDownstream(ComportamientoStub comportamientoAuth,
+                    ComportamientoStub comportamientoInventario,
+                    ComportamientoStub comportamientoOrden,
+                    ComportamientoStub comportamientoEmail) {
+        this.auth = iniciar(rutas -> rutas.get(RUTA_USUARIO + "/{id}", (peticion, respuesta) ->
+                responder(comportamientoAuth, respuesta, () -> usuario(Long.parseLong(peticion.param("id"))))));
+
+        this.inventario = iniciar(rutas -> rutas
+                .get(RUTA_PRODUCTO + "/{id}", (peticion, respuesta) ->
+                        responder(comportamientoInventario, respuesta, () -> producto(Long.parseLong(peticion.param("id")))))
+                .post(RUTA_PRODUCTOS_LOTE, (peticion, respuesta) -> peticion.receive().aggregate().asString()
+                        .flatMap(cuerpo -> Mono.from(responder(comportamientoInventario, respuesta, () -> productos(cuerpo))))));
+
+        this.orden = iniciar(rutas -> rutas.post(RUTA_ORDEN, (peticion, respuesta) -> peticion.receive().then(
+                Mono.from(responder(comportamientoOrden, respuesta, () -> null)))));
+
+        this.email = iniciar(rutas -> rutas.post(RUTA_EMAIL, (peticion, respuesta) -> peticion.receive().then(
+                Mono.from(responder(comportamientoEmail, respuesta, () -> null)))));
+    }
+
+    String urlAuth() {
+        return url(auth);
+    }
+
+    String urlInventario() {
+        return url(inventario);
+    }
+
+    String urlOrden() {
+        return url(orden);
+    }
+
+    String urlEmail() {
+        return url(email) + RUTA_EMAIL;
+    }
+
+    @Override
+    public void close() {
+        auth.disposeNow();
+        inventario.disposeNow();
+        orden.disposeNow();
+        email.disposeNow();
+    }
+
+    private static DisposableServer iniciar(java.util.function.Consumer<? super reactor.netty.http.server.HttpServerRoutes> rutas) {
+        return HttpServer.create()
+                .host("127.0.0.1")
+                .port(0)
+                .route(rutas)
+                .bindNow();
+    }
+
+    private static String url(DisposableServer servidor) {
+        return "http://127.0.0.1:" + servidor.port();
+    }
+
+    // Espera la latencia muestreada y responde con el cuerpo JSON (vacío si es nulo) o con un 503
+    private static Publisher<Void> responder(ComportamientoStub comportamiento, HttpServerResponse respuesta,
+                                             Supplier<String> cuerpo) {
+        ThreadLocalRandom aleatorio = ThreadLocalRandom.current();
+        boolean error = comportamiento.muestrearError(aleatorio);
+        return Mono.delay(comportamiento.muestrearLatencia(aleatorio))
+                .then(Mono.defer(() -> {
+                    if (error) {
+                        return respuesta.status(HttpResponseStatus.SERVICE_UNAVAILABLE).send();
+                    }
+                    String json = cuerpo.get();
+                    if (json == null) {
+                        return respuesta.status(HttpResponseStatus.OK).send();
+                    }
+                    return respuesta.status(HttpResponseStatus.OK)
+                            .header(HttpHeaderNames.CONTENT_TYPE, "application/json")
+                            .sendString(Mono.just(json))
+                            .then();
+                }));
+    }
+
+    private String usuario(long id) {
+        return escribir(Map.of(
+                "name", "Usuario " + id,
+                "email", "usuario" + id + "@example.com",
+                "direccion", "Calle " + id,
+                "telefono", "+57 300 000 " + id));
+    }
+
+    private String producto(long id) {
+        return escribir(datosProducto(id));
+    }
+
+    private String productos(String cuerpo) {
+        Map<String, Object> productos = new LinkedHashMap<>();
+        for (Long id : leerIds(cuerpo)) {
+            productos.put(String.valueOf(id), datosProducto(id));
+        }
+        return escribir(productos);
+    }
+
+    private static Map<String, Object> datosProducto(long id) {
+        return Map.of(
+                "nombre", "Producto " + id,
+                "descripcion", "Descripción del producto " + id,
+                "stock", 1_000_000,
+                "price", (int) (id % 100 + 1) * 100);
+    }
+
+    private List<Long> leerIds(String cuerpo) {
+        try {
+            return objectMapper.readValue(cuerpo, LISTA_IDS);
+        } catch (Exception ex) {
+            throw new IllegalArgumentException("Cuerpo de consulta por lote inválido: " + cuerpo, ex);
+        }
+    }
+
+    private String escribir(Object valor) {
+        try {
+            return objectMapper.writeValueAsString(valor);
+        } catch (Exception ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
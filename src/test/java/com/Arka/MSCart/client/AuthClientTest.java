@@ -1,19 +1,31 @@
 package com.Arka.MSCart.client;
 
+import com.Arka.MSCart.config.DownstreamWebClientFactory;
+import com.Arka.MSCart.config.Plazo;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import com.Arka.MSCart.dto.AdminDto.ConsultUserInAuthDto;
+import com.Arka.MSCart.exception.PlazoVencidoException;
+import com.Arka.MSCart.exception.ServicioExternoException;
 import com.Arka.MSCart.exception.UsuarioNoEncontradoException;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.timelimiter.TimeLimiter;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
 import reactor.core.publisher.Mono;
+import reactor.netty.resources.ConnectionProvider;
 import reactor.test.StepVerifier;
 
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.when;
@@ -27,7 +39,10 @@ import static org.mockito.Mockito.when;
 class AuthClientTest {
 
     @Mock
-    private WebClient.Builder webClientBuilder;
+    private DownstreamWebClientFactory webClientFactory;
+
+    @Mock
+    private ConnectionProvider pool;
 
     @Mock
     private WebClient webClient;
@@ -41,19 +56,23 @@ class AuthClientTest {
     @Mock
     private WebClient.ResponseSpec responseSpec;
 
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CircuitBreaker circuitBreaker = CircuitBreaker.ofDefaults("auth");
+
     private AuthClient authClient;
 
     @BeforeEach
     void setUp() {
-        authClient = new AuthClient(webClientBuilder);
-
-        // Inyectar valores de configuración usando ReflectionTestUtils
-        ReflectionTestUtils.setField(authClient, "authBaseUri", "lb://MSAuthentication");
-        ReflectionTestUtils.setField(authClient, "authUriPath", "/api/v1/auth/consuluser");
-
         // Configurar cadena de mocks para WebClient
-        when(webClientBuilder.build()).thenReturn(webClient);
+        when(webClientFactory.crearPool("auth")).thenReturn(pool);
+        when(webClientFactory.crearWebClient(pool)).thenReturn(webClient);
+        when(webClientFactory.crearMedidor("auth")).thenReturn(new MedidorLlamadas(meterRegistry, "auth"));
+        when(webClientFactory.crearProteccion("auth")).thenReturn(new ProteccionLlamadas("auth",
+                circuitBreaker, Bulkhead.ofDefaults("auth"), TimeLimiter.ofDefaults("auth")));
         when(webClient.get()).thenReturn(requestHeadersUriSpec);
+
+        // Inyectar valores de configuración por constructor
+        authClient = new AuthClient(webClientFactory, "lb://MSAuthentication", "/api/v1/auth/consuluser");
     }
 
     @Test
@@ -83,6 +102,92 @@ class AuthClientTest {
                 .verifyComplete();
     }
 
+    @Test
+    @DisplayName("Debería registrar la duración de la llamada con etiquetas de cliente, operación y resultado")
+    void deberiaRegistrarMetricaDeLlamada() {
+        // Given
+        when(requestHeadersUriSpec.uri(any(java.net.URI.class))).thenReturn(requestHeadersSpec);
+        when(requestHeadersSpec.retrieve()).thenReturn(responseSpec);
+        when(responseSpec.bodyToMono(ConsultUserInAuthDto.class))
+                .thenReturn(Mono.error(WebClientResponseException.create(500, "Internal Server Error", null, null, null)));
+
+        // When
+        StepVerifier.create(authClient.consultarUsuario(7L))
+                .expectError(UsuarioNoEncontradoException.class)
+                .verify();
+
+        // Then - Una sola serie, sin el ID del usuario en las etiquetas
+        assertThat(meterRegistry.get(MedidorLlamadas.METRICA)
+                .tags("cliente", "auth", "operacion", "consultarUsuario", "resultado", "UsuarioNoEncontradoException")
+                .timer()
+                .count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Debería fallar de inmediato sin llamar al servicio cuando el circuito está abierto")
+    void deberiaRechazarLlamadaConCircuitoAbierto() {
+        // Given - El circuito se abre tras una racha de fallos
+        AtomicInteger llamadas = new AtomicInteger();
+        when(requestHeadersUriSpec.uri(any(java.net.URI.class))).thenReturn(requestHeadersSpec);
+        when(requestHeadersSpec.retrieve()).thenReturn(responseSpec);
+        when(responseSpec.bodyToMono(ConsultUserInAuthDto.class)).thenReturn(Mono.fromCallable(() -> {
+            llamadas.incrementAndGet();
+            return ConsultUserInAuthDto.builder().name("Juan Pérez").build();
+        }));
+        circuitBreaker.transitionToOpenState();
+
+        // When / Then
+        StepVerifier.create(authClient.consultarUsuario(1L))
+                .expectError(ServicioExternoException.class)
+                .verify();
+
+        assertThat(llamadas).hasValue(0);
+        assertThat(meterRegistry.get(MedidorLlamadas.METRICA)
+                .tags("cliente", "auth", "resultado", "ServicioExternoException")
+                .timer()
+                .count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Debería descartar la llamada sin realizarla cuando el plazo de la petición ya se agotó")
+    void deberiaDescartarLlamadaConPlazoVencido() {
+        // Given
+        AtomicInteger llamadas = new AtomicInteger();
+        when(requestHeadersUriSpec.uri(any(java.net.URI.class))).thenReturn(requestHeadersSpec);
+        when(requestHeadersSpec.retrieve()).thenReturn(responseSpec);
+        when(responseSpec.bodyToMono(ConsultUserInAuthDto.class)).thenReturn(Mono.fromCallable(() -> {
+            llamadas.incrementAndGet();
+            return ConsultUserInAuthDto.builder().name("Juan Pérez").build();
+        }));
+
+        // When / Then
+        StepVerifier.create(authClient.consultarUsuario(1L)
+                        .contextWrite(Plazo.desde(Duration.ZERO)::guardarEn))
+                .expectError(PlazoVencidoException.class)
+                .verify();
+
+        assertThat(llamadas).hasValue(0);
+        assertThat(circuitBreaker.getMetrics().getNumberOfFailedCalls()).isZero();
+    }
+
+    @Test
+    @DisplayName("Debería acotar la llamada al tiempo restante del plazo sin contarlo como fallo del servicio")
+    void deberiaAcotarLlamadaAlPlazoRestante() {
+        // Given - El servicio tarda más que el plazo restante
+        when(requestHeadersUriSpec.uri(any(java.net.URI.class))).thenReturn(requestHeadersSpec);
+        when(requestHeadersSpec.retrieve()).thenReturn(responseSpec);
+        when(responseSpec.bodyToMono(ConsultUserInAuthDto.class))
+                .thenReturn(Mono.just(ConsultUserInAuthDto.builder().name("Juan Pérez").build()).delayElement(Duration.ofSeconds(1)));
+
+        // When / Then
+        StepVerifier.create(authClient.consultarUsuario(1L)
+                        .contextWrite(Plazo.desde(Duration.ofMillis(50))::guardarEn))
+                .expectError(PlazoVencidoException.class)
+                .verify(Duration.ofMillis(500));
+
+        assertThat(circuitBreaker.getMetrics().getNumberOfFailedCalls()).isZero();
+    }
+
     @Test
     @DisplayName("Debería lanzar UsuarioNoEncontradoException cuando el servicio retorna 500")
     void deberiaLanzarExcepcionCuandoServicioRetorna500() {
@@ -176,7 +281,7 @@ class AuthClientTest {
     @DisplayName("Debería construir URI correctamente con authUriPath que contiene {id}")
     void deberiaConstruirUriCorrectamenteConPlaceholder() {
         // Given
-        ReflectionTestUtils.setField(authClient, "authUriPath", "/api/v1/auth/consuluser/{id}");
+        authClient = new AuthClient(webClientFactory, "lb://MSAuthentication", "/api/v1/auth/consuluser/{id}");
         Long userId = 5L;
 
         ConsultUserInAuthDto expectedUser = ConsultUserInAuthDto.builder()
@@ -185,7 +290,8 @@ class AuthClientTest {
                 .build();
 
         // Mock de la cadena de WebClient
-        when(requestHeadersUriSpec.uri(any(java.net.URI.class))).thenReturn(requestHeadersSpec);
+        when(requestHeadersUriSpec.uri(java.net.URI.create("lb://MSAuthentication/api/v1/auth/consuluser/5")))
+                .thenReturn(requestHeadersSpec);
         when(requestHeadersSpec.retrieve()).thenReturn(responseSpec);
         when(responseSpec.bodyToMono(ConsultUserInAuthDto.class)).thenReturn(Mono.just(expectedUser));
 
@@ -232,10 +338,11 @@ class AuthClientTest {
         // When
         Mono<ConsultUserInAuthDto> resultado = authClient.consultarUsuario(userId);
 
-        // Then - El timeout no se maneja específicamente, se propaga
+        // Then - El timeout se trata como servicio no disponible (503) y cuenta como fallo del circuito
         StepVerifier.create(resultado)
-                .expectError(java.util.concurrent.TimeoutException.class)
+                .expectError(ServicioExternoException.class)
                 .verify();
+        assertThat(circuitBreaker.getMetrics().getNumberOfFailedCalls()).isEqualTo(1);
     }
 
     @Test
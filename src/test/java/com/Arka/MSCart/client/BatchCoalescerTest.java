@@ -0,0 +1,143 @@
+package com.Arka.MSCart.client;
+
+import com.Arka.MSCart.config.Plazo;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Pruebas unitarias para BatchCoalescer
+ * Capa de Acceso a Datos - Comunicación Externa
+ */
+@DisplayName("BatchCoalescer - Pruebas Unitarias")
+class BatchCoalescerTest {
+
+    private final List<Set<Long>> lotesEnviados = new CopyOnWriteArrayList<>();
+
+    private final Function<Set<Long>, Mono<Map<Long, String>>> cargador = ids -> {
+        lotesEnviados.add(ids);
+        return Mono.just(ids.stream()
+                .filter(id -> id > 0)
+                .collect(Collectors.toMap(id -> id, id -> "producto-" + id)));
+    };
+
+    @Test
+    @DisplayName("Debería agrupar consultas concurrentes dentro de la ventana en un solo lote")
+    void deberiaAgruparConsultasConcurrentes() {
+        BatchCoalescer<Long, String> coalescer = new BatchCoalescer<>(cargador, Duration.ofMillis(20), 100);
+
+        StepVerifier.create(Flux.just(1L, 2L, 3L, 2L)
+                        .flatMap(coalescer::cargar)
+                        .collectList())
+                .assertNext(resultados -> assertThat(resultados)
+                        .containsExactlyInAnyOrder("producto-1", "producto-2", "producto-3", "producto-2"))
+                .verifyComplete();
+
+        assertThat(lotesEnviados).hasSize(1);
+        assertThat(lotesEnviados.get(0)).containsExactlyInAnyOrder(1L, 2L, 3L);
+    }
+
+    @Test
+    @DisplayName("Debería enviar el lote de inmediato al alcanzar el tamaño máximo")
+    void deberiaDividirLotesPorTamanoMaximo() {
+        BatchCoalescer<Long, String> coalescer = new BatchCoalescer<>(cargador, Duration.ofMillis(20), 2);
+
+        StepVerifier.create(Flux.just(1L, 2L, 3L)
+                        .flatMap(coalescer::cargar)
+                        .collectList())
+                .assertNext(resultados -> assertThat(resultados).hasSize(3))
+                .verifyComplete();
+
+        assertThat(lotesEnviados).hasSize(2);
+    }
+
+    @Test
+    @DisplayName("Debería completar vacío cuando el lote no contiene la clave")
+    void deberiaCompletarVacioCuandoNoExisteLaClave() {
+        BatchCoalescer<Long, String> coalescer = new BatchCoalescer<>(cargador, Duration.ofMillis(5), 100);
+
+        StepVerifier.create(coalescer.cargar(-1L))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Debería propagar el error del lote a todos los llamadores")
+    void deberiaPropagarErrorATodosLosLlamadores() {
+        BatchCoalescer<Long, String> coalescer = new BatchCoalescer<>(
+                ids -> Mono.error(new IllegalStateException("inventario caído")), Duration.ofMillis(5), 100);
+
+        StepVerifier.create(Flux.just(1L, 2L)
+                        .flatMap(id -> coalescer.cargar(id).onErrorResume(ex -> Mono.just(ex.getMessage())))
+                        .collectList())
+                .assertNext(resultados -> assertThat(resultados).containsExactly("inventario caído", "inventario caído"))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Debería cancelar el temporizador del lote enviado por tamaño sin adelantar el lote siguiente")
+    void deberiaCancelarTemporizadorDelLoteEnviadoPorTamano() {
+        Duration ventana = Duration.ofMillis(200);
+        AtomicLong enviadoEn = new AtomicLong();
+        BatchCoalescer<Long, String> coalescer = new BatchCoalescer<>(ids -> {
+            enviadoEn.set(System.nanoTime());
+            return cargador.apply(ids);
+        }, ventana, 2);
+
+        // El primer lote se llena y se envía de inmediato; su temporizador habría vencido a los 200 ms
+        StepVerifier.create(Flux.just(1L, 2L).flatMap(coalescer::cargar).collectList())
+                .assertNext(resultados -> assertThat(resultados).hasSize(2))
+                .verifyComplete();
+
+        AtomicLong registradoEn = new AtomicLong();
+        StepVerifier.create(Mono.delay(Duration.ofMillis(100))
+                        .doOnNext(tick -> registradoEn.set(System.nanoTime()))
+                        .then(coalescer.cargar(3L)))
+                .expectNext("producto-3")
+                .verifyComplete();
+
+        // El segundo lote espera su ventana completa desde que se abrió
+        assertThat(lotesEnviados).hasSize(2);
+        assertThat(Duration.ofNanos(enviadoEn.get() - registradoEn.get())).isGreaterThanOrEqualTo(ventana.minusMillis(20));
+    }
+
+    @Test
+    @DisplayName("Debería consultar el lote con el contexto del primer llamador y el plazo más cercano de todos")
+    void deberiaPropagarContextoYPlazoMasCercano() {
+        AtomicReference<Optional<Plazo>> plazoDelLote = new AtomicReference<>();
+        AtomicReference<String> trazaDelLote = new AtomicReference<>();
+        BatchCoalescer<Long, String> coalescer = new BatchCoalescer<>(ids -> Mono.deferContextual(contexto -> {
+            plazoDelLote.set(Plazo.delContexto(contexto));
+            trazaDelLote.set(contexto.getOrDefault("traza", null));
+            return cargador.apply(ids);
+        }), Duration.ofMillis(50), 100);
+
+        Mono<String> holgado = coalescer.cargar(1L)
+                .contextWrite(contexto -> Plazo.desde(Duration.ofSeconds(30)).guardarEn(contexto).put("traza", "padre"));
+        Mono<String> ajustado = coalescer.cargar(2L)
+                .contextWrite(contexto -> Plazo.desde(Duration.ofSeconds(2)).guardarEn(contexto));
+
+        StepVerifier.create(Flux.merge(holgado, ajustado).collectList())
+                .assertNext(resultados -> assertThat(resultados).containsExactlyInAnyOrder("producto-1", "producto-2"))
+                .verifyComplete();
+
+        assertThat(lotesEnviados).hasSize(1);
+        assertThat(trazaDelLote.get()).isEqualTo("padre");
+        assertThat(plazoDelLote.get()).get()
+                .satisfies(plazo -> assertThat(plazo.restante()).isPositive().isLessThanOrEqualTo(Duration.ofSeconds(2)));
+    }
+}
@@ -0,0 +1,105 @@
+package com.Arka.MSCart.client;
+
+import com.Arka.MSCart.config.DownstreamWebClientFactory;
+import com.Arka.MSCart.exception.ProductoNoEncontradoException;
+import com.Arka.MSCart.exception.ServicioExternoException;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.timelimiter.TimeLimiter;
+import io.github.resilience4j.timelimiter.TimeLimiterConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+/**
+ * Pruebas unitarias para InventarioClient
+ * Capa de Acceso a Datos - Comunicación Externa
+ *
+ * El inventario se simula con la ExchangeFunction del WebClient: cada producto responde el estado HTTP indicado
+ * en ESTADOS (200 si no figura). El inventario responde 500 para un producto inexistente.
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("InventarioClient - Pruebas Unitarias")
+class InventarioClientTest {
+
+    private static final Map<String, HttpStatus> ESTADOS = Map.of(
+            "2", HttpStatus.INTERNAL_SERVER_ERROR,
+            "3", HttpStatus.SERVICE_UNAVAILABLE);
+
+    @Mock
+    private DownstreamWebClientFactory webClientFactory;
+
+    private InventarioClient inventarioClient;
+
+    @BeforeEach
+    void setUp() {
+        WebClient webClient = WebClient.builder()
+                .exchangeFunction(peticion -> {
+                    String id = peticion.url().getPath().replaceAll(".*/", "");
+                    HttpStatus estado = ESTADOS.getOrDefault(id, HttpStatus.OK);
+                    return Mono.just(ClientResponse.create(estado)
+                            .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                            .body(estado == HttpStatus.OK ? "{\"nombre\":\"Producto " + id + "\",\"stock\":5,\"price\":100}" : "{}")
+                            .build());
+                })
+                .build();
+
+        when(webClientFactory.crearPool("inventario")).thenReturn(ConnectionProvider.newConnection());
+        when(webClientFactory.crearWebClient(any())).thenReturn(webClient);
+        when(webClientFactory.crearMedidor("inventario"))
+                .thenReturn(new MedidorLlamadas(new SimpleMeterRegistry(), "inventario"));
+        when(webClientFactory.crearProteccion("inventario")).thenReturn(new ProteccionLlamadas("inventario",
+                CircuitBreaker.ofDefaults("inventario"), Bulkhead.ofDefaults("inventario"),
+                // Holgado: la primera llamada inicializa el WebClient y no debe agotar el tiempo
+                TimeLimiter.of(TimeLimiterConfig.custom().timeoutDuration(Duration.ofSeconds(30)).build())));
+
+        // Sin endpoint por lote (valor por defecto): una petición por producto
+        inventarioClient = new InventarioClient(webClientFactory, "http://inventario", "/api/v1/productos",
+                "", 5, 100, 16, ObservationRegistry.NOOP);
+    }
+
+    @Test
+    @DisplayName("Debería omitir del mapa solo los productos que el inventario no encuentra")
+    void deberiaOmitirProductosNoEncontrados() {
+        StepVerifier.create(inventarioClient.consultarProductos(List.of(1L, 2L, 4L)))
+                .assertNext(productos -> assertThat(productos).containsOnlyKeys(1L, 4L))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Debería propagar como 503 el error de un producto cuando el inventario no está disponible")
+    void deberiaPropagarErrorDelInventario() {
+        StepVerifier.create(inventarioClient.consultarProductos(List.of(1L, 3L)))
+                .expectError(ServicioExternoException.class)
+                .verify();
+    }
+
+    @Test
+    @DisplayName("Debería lanzar ProductoNoEncontradoException al consultar un producto inexistente")
+    void deberiaLanzarProductoNoEncontrado() {
+        StepVerifier.create(inventarioClient.consultarProducto(2L))
+                .expectError(ProductoNoEncontradoException.class)
+                .verify();
+    }
+}
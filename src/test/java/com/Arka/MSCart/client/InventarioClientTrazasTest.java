@@ -0,0 +1,160 @@
+package com.Arka.MSCart.client;
+
+import com.Arka.MSCart.config.DownstreamWebClientFactory;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.timelimiter.TimeLimiter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationHandler;
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.observation.contextpropagation.ObservationThreadLocalAccessor;
+import io.micrometer.tracing.handler.DefaultTracingObservationHandler;
+import io.micrometer.tracing.handler.PropagatingSenderTracingObservationHandler;
+import io.micrometer.tracing.otel.bridge.OtelBaggageManager;
+import io.micrometer.tracing.otel.bridge.OtelCurrentTraceContext;
+import io.micrometer.tracing.otel.bridge.OtelPropagator;
+import io.micrometer.tracing.otel.bridge.OtelTracer;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.trace.propagation.W3CTraceContextPropagator;
+import io.opentelemetry.context.propagation.ContextPropagators;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.testing.exporter.InMemorySpanExporter;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SimpleSpanProcessor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+/**
+ * Pruebas de trazas para InventarioClient
+ * Capa de Acceso a Datos - Comunicación Externa
+ *
+ * Los spans se exportan a un InMemorySpanExporter y el inventario se simula con la ExchangeFunction del WebClient,
+ * de modo que las peticiones conservan sus cabeceras de propagación.
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("InventarioClient - Trazas distribuidas")
+class InventarioClientTrazasTest {
+
+    @Mock
+    private DownstreamWebClientFactory webClientFactory;
+
+    private final InMemorySpanExporter exportador = InMemorySpanExporter.create();
+    private final Queue<ClientRequest> peticiones = new ConcurrentLinkedQueue<>();
+
+    private SdkTracerProvider tracerProvider;
+    private ObservationRegistry observationRegistry;
+    private InventarioClient inventarioClient;
+
+    @BeforeEach
+    void setUp() {
+        tracerProvider = SdkTracerProvider.builder()
+                .addSpanProcessor(SimpleSpanProcessor.create(exportador))
+                .build();
+        OpenTelemetrySdk openTelemetry = OpenTelemetrySdk.builder()
+                .setTracerProvider(tracerProvider)
+                .setPropagators(ContextPropagators.create(W3CTraceContextPropagator.getInstance()))
+                .build();
+
+        io.opentelemetry.api.trace.Tracer otelTracer = openTelemetry.getTracer("MSCart");
+        OtelCurrentTraceContext traceContext = new OtelCurrentTraceContext();
+        OtelTracer tracer = new OtelTracer(otelTracer, traceContext, evento -> { },
+                new OtelBaggageManager(traceContext, List.of(), List.of()));
+
+        // Mismos handlers que registra Spring Boot: el de envío inyecta traceparent en las peticiones salientes
+        observationRegistry = ObservationRegistry.create();
+        observationRegistry.observationConfig().observationHandler(new ObservationHandler.FirstMatchingCompositeObservationHandler(
+                new PropagatingSenderTracingObservationHandler<>(tracer, new OtelPropagator(openTelemetry.getPropagators(), otelTracer)),
+                new DefaultTracingObservationHandler(tracer)));
+
+        WebClient webClient = WebClient.builder()
+                .observationRegistry(observationRegistry)
+                .exchangeFunction(peticion -> {
+                    peticiones.add(peticion);
+                    String id = peticion.url().getPath().replaceAll(".*/", "");
+                    return Mono.just(ClientResponse.create(HttpStatus.OK)
+                            .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                            .body("{\"nombre\":\"Producto " + id + "\",\"stock\":5,\"price\":100}")
+                            .build());
+                })
+                .build();
+
+        when(webClientFactory.crearPool("inventario")).thenReturn(ConnectionProvider.newConnection());
+        when(webClientFactory.crearWebClient(any())).thenReturn(webClient);
+        when(webClientFactory.crearMedidor("inventario"))
+                .thenReturn(new MedidorLlamadas(new SimpleMeterRegistry(), "inventario"));
+        when(webClientFactory.crearProteccion("inventario")).thenReturn(new ProteccionLlamadas("inventario",
+                CircuitBreaker.ofDefaults("inventario"), Bulkhead.ofDefaults("inventario"), TimeLimiter.ofDefaults("inventario")));
+
+        // Sin endpoint por lote: una petición por producto, en paralelo
+        inventarioClient = new InventarioClient(webClientFactory, "http://inventario", "/api/v1/productos",
+                "", 5, 100, 16, observationRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        tracerProvider.close();
+    }
+
+    @Test
+    @DisplayName("Debería agrupar las peticiones al inventario bajo un span de fan-out con su ancho")
+    void deberiaCrearSpanDeFanoutConHijos() {
+        Observation peticionEntrante = Observation.createNotStarted("http.server.requests", observationRegistry).start();
+
+        StepVerifier.create(inventarioClient.consultarProductos(List.of(1L, 2L, 3L))
+                        .contextWrite(ctx -> ctx.put(ObservationThreadLocalAccessor.KEY, peticionEntrante))
+                        .doFinally(senal -> peticionEntrante.stop()))
+                .assertNext(productos -> assertThat(productos).containsOnlyKeys(1L, 2L, 3L))
+                .verifyComplete();
+
+        List<SpanData> spans = exportador.getFinishedSpanItems();
+        SpanData raiz = buscarSpan(spans, "http.server.requests");
+        SpanData fanout = buscarSpan(spans, "inventario fan-out");
+        List<SpanData> llamadas = spans.stream().filter(span -> span.getName().startsWith("http get")).toList();
+
+        // Toda la petición comparte una traza: entrada -> fan-out -> una llamada por producto
+        assertThat(fanout.getParentSpanId()).isEqualTo(raiz.getSpanId());
+        assertThat(fanout.getAttributes().get(AttributeKey.stringKey("productos"))).isEqualTo("3");
+        assertThat(fanout.getAttributes().get(AttributeKey.stringKey("modo"))).isEqualTo("individual");
+        assertThat(llamadas).hasSize(3)
+                .allSatisfy(llamada -> {
+                    assertThat(llamada.getTraceId()).isEqualTo(raiz.getTraceId());
+                    assertThat(llamada.getParentSpanId()).isEqualTo(fanout.getSpanId());
+                });
+
+        // El contexto de la traza viaja al inventario en la cabecera W3C traceparent
+        assertThat(peticiones).hasSize(3)
+                .allSatisfy(peticion -> assertThat(peticion.headers().getFirst("traceparent"))
+                        .contains(raiz.getTraceId()));
+    }
+
+    private static SpanData buscarSpan(List<SpanData> spans, String nombre) {
+        return spans.stream()
+                .filter(span -> span.getName().equals(nombre))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("No se exportó el span " + nombre + ": " + spans));
+    }
+}
@@ -0,0 +1,128 @@
+package com.Arka.MSCart.config;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.flywaydb.core.api.output.MigrateResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Pruebas unitarias para DatabaseInitConfig
+ * Capa de Configuración - Persistencia
+ *
+ * Aplica las migraciones de db/migration sobre un PostgreSQL embebido vacío y sobre uno con el esquema
+ * anterior a las migraciones.
+ */
+@DisplayName("DatabaseInitConfig - Pruebas Unitarias")
+class DatabaseInitConfigTest {
+
+    private EmbeddedPostgres postgres;
+    private JdbcTemplate jdbc;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        postgres = EmbeddedPostgres.builder().start();
+        jdbc = new JdbcTemplate(postgres.getPostgresDatabase());
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        postgres.close();
+    }
+
+    @Test
+    @DisplayName("Debería crear el esquema en una base vacía y no repetir migraciones en el siguiente arranque")
+    void deberiaCrearEsquemaEnBaseVacia() {
+        MigrateResult primera = DatabaseInitConfig.migraciones(postgres.getPostgresDatabase()).migrate();
+        MigrateResult segunda = DatabaseInitConfig.migraciones(postgres.getPostgresDatabase()).migrate();
+
+        assertThat(primera.migrationsExecuted).isPositive();
+        assertThat(segunda.migrationsExecuted).isZero();
+        verificarIndicesValidos();
+    }
+
+    @Test
+    @DisplayName("Debería completar una base creada antes de las migraciones sin perder sus datos")
+    void deberiaCompletarBaseAnterior() {
+        crearEsquemaAnterior();
+        jdbc.execute("CREATE UNIQUE INDEX uq_carrito_userid ON carrito (userid)");
+        jdbc.update("INSERT INTO carrito (userid, numero_productos, total_unidades, precio_total) VALUES (7, 1, 2, 300)");
+        jdbc.update("INSERT INTO carrito_detalle (carrito_id, producto_id, cantidad, precio_total) VALUES (1, 3, 2, 300)");
+
+        DatabaseInitConfig.migraciones(postgres.getPostgresDatabase()).migrate();
+
+        assertThat(jdbc.queryForObject("SELECT version FROM carrito WHERE userid = 7", Long.class)).isZero();
+        assertThat(jdbc.queryForObject("SELECT cantidad FROM carrito_detalle WHERE producto_id = 3", Long.class))
+                .isEqualTo(2L);
+        verificarIndicesValidos();
+    }
+
+    @Test
+    @DisplayName("Debería fusionar carritos y líneas duplicados antes de crear los índices únicos")
+    void deberiaFusionarDuplicados() {
+        crearEsquemaAnterior();
+        jdbc.update("""
+                INSERT INTO carrito (userid, createdat, ultimo_movimiento, estado, emailenviado,
+                                     numero_productos, total_unidades, precio_total)
+                VALUES (7, '2025-01-01', '2025-01-02', TRUE, TRUE, 1, 2, 200),
+                       (7, '2025-01-03', '2025-01-05', TRUE, FALSE, 2, 2, 250),
+                       (8, '2025-01-01', '2025-01-01', TRUE, FALSE, 0, 0, 0)""");
+        jdbc.update("""
+                INSERT INTO carrito_detalle (carrito_id, producto_id, cantidad, precio_total)
+                VALUES (1, 3, 2, 200),
+                       (2, 3, 1, 100),
+                       (2, 4, 1, 150),
+                       (3, 5, 1, 50),
+                       (3, 5, 2, 100)""");
+
+        DatabaseInitConfig.migraciones(postgres.getPostgresDatabase()).migrate();
+
+        // Usuario 7: el carrito más antiguo reúne las líneas y la actividad del duplicado
+        assertThat(jdbc.queryForList("SELECT id FROM carrito WHERE userid = 7", Long.class)).containsExactly(1L);
+        assertThat(jdbc.queryForMap("""
+                SELECT numero_productos, total_unidades, precio_total, ultimo_movimiento, emailenviado
+                FROM carrito WHERE id = 1"""))
+                .containsEntry("numero_productos", 2L)
+                .containsEntry("total_unidades", 4L)
+                .containsEntry("precio_total", 450)
+                .containsEntry("ultimo_movimiento", Timestamp.valueOf("2025-01-05 00:00:00"))
+                .containsEntry("emailenviado", false);
+        assertThat(jdbc.queryForObject("SELECT cantidad FROM carrito_detalle WHERE carrito_id = 1 AND producto_id = 3",
+                Long.class)).isEqualTo(3L);
+        // Usuario 8: la línea repetida del mismo producto se suma y los totales se recalculan
+        assertThat(jdbc.queryForMap("SELECT numero_productos, total_unidades, precio_total FROM carrito WHERE userid = 8"))
+                .containsEntry("numero_productos", 1L)
+                .containsEntry("total_unidades", 3L)
+                .containsEntry("precio_total", 150);
+        verificarIndicesValidos();
+    }
+
+    // Esquema creado por el script de inicio anterior a las migraciones, sin índices únicos
+    private void crearEsquemaAnterior() {
+        jdbc.execute("""
+                CREATE TABLE carrito (
+                    id BIGSERIAL PRIMARY KEY, userid BIGINT NOT NULL, createdat TIMESTAMP,
+                    estado BOOLEAN NOT NULL DEFAULT TRUE, ultimo_movimiento TIMESTAMP,
+                    numero_productos BIGINT DEFAULT 0, total_unidades BIGINT DEFAULT 0,
+                    precio_total INTEGER DEFAULT 0, emailenviado BOOLEAN NOT NULL DEFAULT FALSE)""");
+        jdbc.execute("""
+                CREATE TABLE carrito_detalle (
+                    id BIGSERIAL PRIMARY KEY, carrito_id BIGINT NOT NULL REFERENCES carrito (id) ON DELETE CASCADE,
+                    producto_id BIGINT NOT NULL, cantidad BIGINT NOT NULL, precio_total INTEGER NOT NULL DEFAULT 0)""");
+    }
+
+    // Los índices construidos con CONCURRENTLY quedan INVALID si la construcción falla
+    private void verificarIndicesValidos() {
+        assertThat(jdbc.queryForList("""
+                SELECT c.relname FROM pg_index i JOIN pg_class c ON c.oid = i.indexrelid
+                WHERE i.indisvalid""", String.class))
+                .contains("uq_carrito_userid", "uq_carrito_detalle_producto", "idx_carrito_activo_ultimo_movimiento",
+                        "idx_notificacion_outbox_pendiente", "idx_notificacion_outbox_en_curso");
+    }
+}
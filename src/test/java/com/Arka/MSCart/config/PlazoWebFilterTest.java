@@ -0,0 +1,144 @@
+package com.Arka.MSCart.config;
+
+import com.Arka.MSCart.cache.UsuarioCache;
+import com.Arka.MSCart.client.AuthClient;
+import com.Arka.MSCart.dto.AdminDto.ConsultUserInAuthDto;
+import com.Arka.MSCart.exception.PlazoVencidoException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.ConfigurationPropertySources;
+import org.springframework.boot.env.YamlPropertySourceLoader;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Pruebas unitarias para PlazoWebFilter
+ * Capa de Configuración
+ */
+@DisplayName("PlazoWebFilter - Pruebas Unitarias")
+class PlazoWebFilterTest {
+
+    private PlazoProperties propiedades;
+    private PlazoWebFilter filtro;
+
+    // Plazo visto por el handler en el contexto de Reactor
+    private final AtomicReference<Optional<Plazo>> plazoRecibido = new AtomicReference<>();
+    private final WebFilterChain cadena = exchange -> Mono.deferContextual(contexto -> {
+        plazoRecibido.set(Plazo.delContexto(contexto));
+        return Mono.empty();
+    });
+
+    @BeforeEach
+    void setUp() {
+        propiedades = new PlazoProperties();
+        propiedades.setPorDefecto(Duration.ofSeconds(5));
+        propiedades.setMaximo(Duration.ofSeconds(30));
+        propiedades.getEndpoints().put("/api/v1/carts/vercarrito", Duration.ofMillis(800));
+        filtro = new PlazoWebFilter(propiedades);
+    }
+
+    @Test
+    @DisplayName("Debería usar el presupuesto del endpoint cuando la petición no trae cabecera")
+    void deberiaUsarPresupuestoDelEndpoint() {
+        ejecutar(MockServerHttpRequest.get("/api/v1/carts/vercarrito"));
+
+        assertThat(plazoRecibido.get()).get()
+                .satisfies(plazo -> assertThat(plazo.restante()).isLessThanOrEqualTo(Duration.ofMillis(800)).isPositive());
+    }
+
+    @Test
+    @DisplayName("Debería tomar el plazo de la cabecera y acotarlo al máximo configurado")
+    void deberiaAcotarPlazoDeCabecera() {
+        ejecutar(MockServerHttpRequest.get("/api/v1/carts/vercarrito").header(Plazo.CABECERA, "120000"));
+
+        assertThat(plazoRecibido.get()).get()
+                .satisfies(plazo -> assertThat(plazo.restante())
+                        .isLessThanOrEqualTo(Duration.ofSeconds(30))
+                        .isGreaterThan(Duration.ofSeconds(5)));
+    }
+
+    @Test
+    @DisplayName("Debería descartar con 504 una petición que llega con el plazo agotado")
+    void deberiaDescartarPeticionVencida() {
+        MockServerWebExchange exchange = ejecutar(MockServerHttpRequest.get("/api/v1/carts/vercarrito")
+                .header(Plazo.CABECERA, "0"));
+
+        assertThat(exchange.getResponse().getStatusCode()).isEqualTo(HttpStatus.GATEWAY_TIMEOUT);
+        assertThat(plazoRecibido.get()).isNull();
+    }
+
+    @Test
+    @DisplayName("Debería mantener la resolución de usuarios en los listados de administración más allá del plazo por defecto")
+    void deberiaResolverUsuariosEnListadosLargos() throws IOException {
+        // Presupuestos de application.yml, con un plazo por defecto menor que la duración del listado
+        PlazoProperties configuradas = propiedadesDeAplicacion();
+        configuradas.setPorDefecto(Duration.ofMillis(100));
+        PlazoWebFilter filtroConfigurado = new PlazoWebFilter(configuradas);
+
+        AuthClient authClient = mock(AuthClient.class);
+        when(authClient.consultarUsuario(anyLong()))
+                .thenReturn(Mono.just(ConsultUserInAuthDto.builder().name("Ana").build()));
+
+        for (String ruta : List.of("/api/v1/cartsadmin/all", "/api/v1/cartsadmin/cartabandonados", "/api/v1/cartsadmin/stream")) {
+            List<String> nombres = new CopyOnWriteArrayList<>();
+            StepVerifier.create(filtroConfigurado.filter(MockServerWebExchange.from(MockServerHttpRequest.get(ruta)),
+                            listado(usuarioCache(authClient), nombres)))
+                    .verifyComplete();
+            assertThat(nombres).as(ruta).hasSize(6).containsOnly("Ana");
+        }
+
+        // Un endpoint con el plazo por defecto deja de resolver usuarios al agotarlo
+        StepVerifier.create(filtroConfigurado.filter(MockServerWebExchange.from(MockServerHttpRequest.get("/api/v1/cartsadmin/pagina")),
+                        listado(usuarioCache(authClient), new CopyOnWriteArrayList<>())))
+                .expectError(PlazoVencidoException.class)
+                .verify();
+    }
+
+    // Listado que consulta un usuario cada 40 ms: dura más que el plazo por defecto de la prueba
+    private static WebFilterChain listado(UsuarioCache usuarioCache, List<String> nombres) {
+        return exchange -> Flux.range(1, 6)
+                .delayElements(Duration.ofMillis(40))
+                .concatMap(userId -> usuarioCache.consultarUsuario(userId.longValue()))
+                .doOnNext(usuario -> nombres.add(usuario.getName()))
+                .then();
+    }
+
+    // Caché nueva en cada listado: sin últimos conocidos que sustituyan a las consultas vencidas
+    private static UsuarioCache usuarioCache(AuthClient authClient) {
+        return new UsuarioCache(authClient, new SimpleMeterRegistry(), 100,
+                Duration.ofMinutes(5), Duration.ofSeconds(30), Duration.ofHours(24));
+    }
+
+    private static PlazoProperties propiedadesDeAplicacion() throws IOException {
+        Binder binder = new Binder(ConfigurationPropertySources.from(
+                new YamlPropertySourceLoader().load("application", new ClassPathResource("application.yml"))));
+        return binder.bind("ms.plazo", PlazoProperties.class).get();
+    }
+
+    private MockServerWebExchange ejecutar(MockServerHttpRequest.BaseBuilder<?> peticion) {
+        MockServerWebExchange exchange = MockServerWebExchange.from(peticion);
+        StepVerifier.create(filtro.filter(exchange, cadena)).verifyComplete();
+        return exchange;
+    }
+}
@@ -0,0 +1,117 @@
+package com.Arka.MSCart.controller;
+
+import com.Arka.MSCart.dto.CartDeltaDto;
+import com.Arka.MSCart.dto.CartWithProductsDto;
+import com.Arka.MSCart.exception.GlobalExceptionHandler;
+import com.Arka.MSCart.service.CartCustomerService;
+import com.Arka.MSCart.service.NewOrdenService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Mono;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Pruebas unitarias para CartCustomerController
+ * Capa de Presentación
+ *
+ * Las operaciones que modifican el carrito retornan el carrito completo y su respuesta compacta se sirve
+ * en los endpoints /delta.
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("CartCustomerController - Pruebas Unitarias")
+class CartCustomerControllerTest {
+
+    private static final Long USER_ID = 1L;
+    private static final String AGREGAR = "{\"productId\": 100, \"quantity\": 2}";
+
+    @Mock
+    private CartCustomerService cartService;
+
+    @Mock
+    private NewOrdenService newOrdenService;
+
+    private WebTestClient webTestClient;
+
+    @BeforeEach
+    void setUp() {
+        webTestClient = WebTestClient
+                .bindToController(new CartCustomerController(cartService, newOrdenService))
+                .controllerAdvice(new GlobalExceptionHandler())
+                .build();
+    }
+
+    @Test
+    @DisplayName("Debería retornar el carrito completo al agregar un producto")
+    void deberiaAgregarConRespuestaCompleta() {
+        CartWithProductsDto carrito = new CartWithProductsDto();
+        carrito.setCartId(10L);
+        when(cartService.addProductToCart(USER_ID, 100L, 2L)).thenReturn(Mono.just(carrito));
+
+        webTestClient.post().uri("/api/v1/carts/agregarproducto")
+                .header("X-Auth-User-Id", USER_ID.toString())
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(AGREGAR)
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody().jsonPath("$.cartId").isEqualTo(10);
+    }
+
+    @Test
+    @DisplayName("Debería retornar la línea y los totales en el endpoint delta de agregar producto")
+    void deberiaAgregarConRespuestaDelta() {
+        CartDeltaDto delta = new CartDeltaDto();
+        delta.setCartId(10L);
+        delta.setPrecioTotal(300);
+        when(cartService.addProductToCartDelta(USER_ID, 100L, 2L)).thenReturn(Mono.just(delta));
+
+        webTestClient.post().uri("/api/v1/carts/agregarproducto/delta")
+                .header("X-Auth-User-Id", USER_ID.toString())
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(AGREGAR)
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody().jsonPath("$.precioTotal").isEqualTo(300);
+    }
+
+    @Test
+    @DisplayName("Debería retornar el carrito completo al eliminar un producto")
+    void deberiaEliminarConRespuestaCompleta() {
+        CartWithProductsDto carrito = new CartWithProductsDto();
+        carrito.setCartId(10L);
+        when(cartService.removeProductFromCart(USER_ID, 100L)).thenReturn(Mono.just(carrito));
+
+        webTestClient.delete().uri("/api/v1/carts/eliminarproducto/100")
+                .header("X-Auth-User-Id", USER_ID.toString())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$.cartId").isEqualTo(10);
+
+        verify(cartService, never()).removeProductFromCartDelta(any(), any());
+    }
+
+    @Test
+    @DisplayName("Debería retornar el producto eliminado y los totales en el endpoint delta de eliminar producto")
+    void deberiaEliminarConRespuestaDelta() {
+        CartDeltaDto delta = new CartDeltaDto();
+        delta.setProductoEliminadoId(100L);
+        when(cartService.removeProductFromCartDelta(any(), any())).thenReturn(Mono.just(delta));
+
+        webTestClient.delete().uri("/api/v1/carts/eliminarproducto/100/delta")
+                .header("X-Auth-User-Id", USER_ID.toString())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$.productoEliminadoId").isEqualTo(100);
+
+        verify(cartService).removeProductFromCartDelta(USER_ID, 100L);
+    }
+}
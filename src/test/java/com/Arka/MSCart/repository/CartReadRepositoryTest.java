@@ -0,0 +1,114 @@
+package com.Arka.MSCart.repository;
+
+import com.Arka.MSCart.dto.ProductInCartDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.r2dbc.spi.ConnectionFactories;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.test.StepVerifier;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+/**
+ * Pruebas unitarias para CartReadRepository
+ * Capa de Acceso a Datos
+ *
+ * Las consultas se ejecutan sobre una base de datos H2 en memoria.
+ */
+@DisplayName("CartReadRepository - Pruebas Unitarias")
+class CartReadRepositoryTest {
+
+    private static final LocalDateTime AHORA = LocalDateTime.of(2025, 11, 15, 10, 30);
+
+    private DatabaseClient databaseClient;
+    private CartReadRepository cartReadRepository;
+
+    @BeforeEach
+    void setUp() {
+        databaseClient = DatabaseClient.create(ConnectionFactories.get(
+                "r2dbc:h2:mem:///lectura-" + UUID.randomUUID() + "?options=DB_CLOSE_DELAY=-1"));
+        cartReadRepository = new CartReadRepository(databaseClient, new SimpleMeterRegistry());
+
+        ejecutar("""
+                CREATE TABLE carrito (
+                    id                BIGINT    PRIMARY KEY,
+                    userid            BIGINT    NOT NULL,
+                    createdat         TIMESTAMP,
+                    estado            BOOLEAN   NOT NULL,
+                    ultimo_movimiento TIMESTAMP,
+                    numero_productos  BIGINT,
+                    total_unidades    BIGINT,
+                    precio_total      INTEGER,
+                    emailenviado      BOOLEAN   NOT NULL
+                )
+                """);
+        ejecutar("""
+                CREATE TABLE carrito_detalle (
+                    id                   BIGINT  PRIMARY KEY,
+                    carrito_id           BIGINT  NOT NULL,
+                    producto_id          BIGINT  NOT NULL,
+                    cantidad             BIGINT  NOT NULL,
+                    precio_total         INTEGER NOT NULL,
+                    nombre_producto      VARCHAR(255),
+                    descripcion_producto VARCHAR(1000),
+                    precio_unitario      INTEGER,
+                    snapshot_en          TIMESTAMP
+                )
+                """);
+
+        // Carrito 1 con una línea con snapshot y otra anterior al snapshot; carrito 2 vacío
+        ejecutar("INSERT INTO carrito VALUES (1, 5, TIMESTAMP '2025-11-15 10:00:00', TRUE, TIMESTAMP '2025-11-15 10:30:00', 2, 3, 250, FALSE)");
+        ejecutar("INSERT INTO carrito VALUES (2, 6, TIMESTAMP '2025-11-15 10:00:00', FALSE, NULL, 0, 0, 0, FALSE)");
+        ejecutar("INSERT INTO carrito_detalle VALUES (10, 1, 100, 2, 200, 'Mouse', 'Inalámbrico', 100, TIMESTAMP '2025-11-15 10:30:00')");
+        ejecutar("INSERT INTO carrito_detalle VALUES (11, 1, 200, 1, 50, NULL, NULL, NULL, NULL)");
+    }
+
+    @Test
+    @DisplayName("Debería leer la cabecera y las líneas del carrito del usuario en una sola consulta")
+    void deberiaLeerCarritoConLineas() {
+        StepVerifier.create(cartReadRepository.buscarPorUsuario(5L))
+                .assertNext(leido -> {
+                    assertThat(leido.carrito().getCartId()).isEqualTo(1L);
+                    assertThat(leido.carrito().getEstadoCarrito()).isEqualTo("activo");
+                    assertThat(leido.carrito().getPrecioTotal()).isEqualTo(250);
+                    assertThat(leido.carrito().getUltimoMovimiento()).isEqualTo(AHORA);
+                    assertThat(leido.carrito().getProducts())
+                            .extracting(ProductInCartDto::getId, ProductInCartDto::getNombre, ProductInCartDto::getPrecioUnitario)
+                            .containsExactly(
+                                    tuple(10L, "Mouse", 100),
+                                    tuple(11L, CartReadRepository.NOMBRE_NO_DISPONIBLE, 0));
+                    assertThat(leido.productosSinSnapshot()).containsExactly(200L);
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Debería leer un carrito sin líneas por su ID")
+    void deberiaLeerCarritoVacio() {
+        StepVerifier.create(cartReadRepository.buscarPorId(2L))
+                .assertNext(leido -> {
+                    assertThat(leido.carrito().getUserId()).isEqualTo(6L);
+                    assertThat(leido.carrito().getEstadoCarrito()).isEqualTo("inactivo");
+                    assertThat(leido.carrito().getProducts()).isEmpty();
+                    assertThat(leido.productosSinSnapshot()).isEmpty();
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Debería completar vacío cuando el usuario no tiene carrito")
+    void deberiaCompletarVacioSinCarrito() {
+        StepVerifier.create(cartReadRepository.buscarPorUsuario(99L))
+                .verifyComplete();
+    }
+
+    private void ejecutar(String sql) {
+        databaseClient.sql(sql).then().block();
+    }
+}
@@ -0,0 +1,155 @@
+package com.Arka.MSCart.service;
+
+import com.Arka.MSCart.cache.ProductoInfoCache;
+import com.Arka.MSCart.cache.UsuarioCache;
+import com.Arka.MSCart.dto.AdminDto.CartDto;
+import com.Arka.MSCart.dto.AdminDto.ConsultUserInAuthDto;
+import com.Arka.MSCart.exception.UsuarioNoEncontradoException;
+import com.Arka.MSCart.repository.CartReadRepository;
+import com.Arka.MSCart.repository.CartRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.lenient;
+
+/**
+ * Pruebas unitarias para los listados de CartAdminService
+ * Capa de Lógica de Negocio
+ *
+ * Las consultas por páginas se ejecutan sobre una base de datos H2 en memoria.
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("CartAdminService - Listados de carritos")
+class CartAdminServiceTest {
+
+    private static final LocalDateTime INICIO = LocalDateTime.of(2025, 11, 1, 0, 0);
+
+    @Mock
+    private CartRepository cartRepository;
+
+    @Mock
+    private CartReadRepository cartReadRepository;
+
+    @Mock
+    private UsuarioCache usuarioCache;
+
+    @Mock
+    private ProductoInfoCache productoInfoCache;
+
+    @Mock
+    private JobLeaseService jobLeaseService;
+
+    private CartAdminService cartAdminService;
+
+    @BeforeEach
+    void setUp() {
+        ConnectionFactory connectionFactory = ConnectionFactories.get(
+                "r2dbc:h2:mem:///carritos-" + UUID.randomUUID() + "?options=DB_CLOSE_DELAY=-1");
+        DatabaseClient databaseClient = DatabaseClient.create(connectionFactory);
+
+        databaseClient.sql("""
+                        CREATE TABLE carrito (
+                            id                BIGINT AUTO_INCREMENT PRIMARY KEY,
+                            userid            BIGINT    NOT NULL,
+                            createdat         TIMESTAMP,
+                            estado            BOOLEAN   NOT NULL,
+                            ultimo_movimiento TIMESTAMP,
+                            numero_productos  BIGINT,
+                            total_unidades    BIGINT,
+                            precio_total      INTEGER,
+                            emailenviado      BOOLEAN   NOT NULL
+                        )
+                        """)
+                .then()
+                .block();
+
+        // Carritos 1..10: los pares están abandonados; el último movimiento avanza un día por carrito
+        Flux.range(1, 10)
+                .concatMap(i -> databaseClient.sql("""
+                                INSERT INTO carrito (userid, createdat, estado, ultimo_movimiento, numero_productos, emailenviado)
+                                VALUES (:userId, :fecha, :estado, :fecha, 1, FALSE)
+                                """)
+                        .bind("userId", 100L + i)
+                        .bind("fecha", INICIO.plusDays(i))
+                        .bind("estado", i % 2 != 0)
+                        .then())
+                .then()
+                .block();
+
+        cartAdminService = new CartAdminService(cartRepository, usuarioCache, new RespuestaCarrito(usuarioCache, productoInfoCache),
+                new SimpleMeterRegistry(), jobLeaseService, new R2dbcEntityTemplate(connectionFactory), cartReadRepository);
+
+        // Inyectar valores de configuración usando ReflectionTestUtils
+        ReflectionTestUtils.setField(cartAdminService, "tamanoMaximoPagina", 500);
+        ReflectionTestUtils.setField(cartAdminService, "tamanoLoteStream", 3);
+        ReflectionTestUtils.setField(cartAdminService, "concurrenciaUsuarios", 2);
+
+        lenient().when(usuarioCache.consultarUsuario(anyLong())).thenAnswer(inv -> Mono.just(
+                ConsultUserInAuthDto.builder().name("Usuario " + inv.getArgument(0)).build()));
+    }
+
+    @Test
+    @DisplayName("Debería recorrer los carritos por páginas con el cursor sin repetir ni omitir ninguno")
+    void deberiaPaginarConCursor() {
+        StepVerifier.create(cartAdminService.listarCarritos(null, null, null, null, 4))
+                .assertNext(pagina -> {
+                    assertThat(pagina.getCarritos()).extracting(CartDto::getCartId).containsExactly(1L, 2L, 3L, 4L);
+                    assertThat(pagina.getSiguienteCursor()).isEqualTo(4L);
+                })
+                .verifyComplete();
+
+        StepVerifier.create(cartAdminService.listarCarritos(null, null, null, 8L, 4))
+                .assertNext(pagina -> {
+                    assertThat(pagina.getCarritos()).extracting(CartDto::getCartId).containsExactly(9L, 10L);
+                    assertThat(pagina.getSiguienteCursor()).isNull();
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Debería filtrar por estado y rango de último movimiento en la base de datos")
+    void deberiaFiltrarPorEstadoYFecha() {
+        StepVerifier.create(cartAdminService.listarCarritos(false, INICIO.plusDays(3), INICIO.plusDays(9), null, null))
+                .assertNext(pagina -> assertThat(pagina.getCarritos())
+                        .extracting(CartDto::getCartId)
+                        .containsExactly(4L, 6L, 8L))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Debería emitir en streaming todos los carritos abandonados leyendo por lotes")
+    void deberiaEmitirEnStreaming() {
+        StepVerifier.create(cartAdminService.getAbandonedCarts().map(CartDto::getCartId).sort().collectList())
+                .assertNext(ids -> assertThat(ids).containsExactly(2L, 4L, 6L, 8L, 10L))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Debería listar el carrito aunque su usuario no se encuentre")
+    void deberiaListarCarritoSinUsuario() {
+        lenient().when(usuarioCache.consultarUsuario(101L))
+                .thenReturn(Mono.error(UsuarioNoEncontradoException.conId(101L)));
+
+        StepVerifier.create(cartAdminService.listarCarritos(true, null, null, null, 1))
+                .assertNext(pagina -> assertThat(pagina.getCarritos().get(0).getNameUser()).isEqualTo("Usuario no disponible"))
+                .verifyComplete();
+    }
+}
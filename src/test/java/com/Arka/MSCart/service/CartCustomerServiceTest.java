@@ -0,0 +1,401 @@
+package com.Arka.MSCart.service;
+
+import com.Arka.MSCart.cache.ProductoInfoCache;
+import com.Arka.MSCart.cache.UsuarioCache;
+import com.Arka.MSCart.cache.VistasCarritoEnCurso;
+import com.Arka.MSCart.client.InventarioClient;
+import com.Arka.MSCart.dto.AddProductRequestDTO;
+import com.Arka.MSCart.dto.AddProductsResultDto;
+import com.Arka.MSCart.dto.AdminDto.ConsultUserInAuthDto;
+import com.Arka.MSCart.dto.CartWithProductsDto;
+import com.Arka.MSCart.dto.ConsultProductInventarioDto;
+import com.Arka.MSCart.dto.ProductInCartDto;
+import com.Arka.MSCart.exception.CarritoModificadoException;
+import com.Arka.MSCart.exception.ServicioExternoException;
+import com.Arka.MSCart.exception.StockInsuficienteException;
+import com.Arka.MSCart.model.Cart;
+import com.Arka.MSCart.model.CartDetail;
+import com.Arka.MSCart.repository.CartDetailRepository;
+import com.Arka.MSCart.repository.CartReadRepository;
+import com.Arka.MSCart.repository.CartRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * Pruebas unitarias para CartCustomerService
+ * Capa de Lógica de Negocio
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("CartCustomerService - Pruebas Unitarias")
+class CartCustomerServiceTest {
+
+    private static final Long USER_ID = 5L;
+    private static final Long CART_ID = 10L;
+    private static final Long PRODUCT_ID = 100L;
+
+    @Mock
+    private CartRepository cartRepository;
+
+    @Mock
+    private CartDetailRepository cartDetailRepository;
+
+    @Mock
+    private InventarioClient inventarioClient;
+
+    @Mock
+    private UsuarioCache usuarioCache;
+
+    @Mock
+    private ProductoInfoCache productoInfoCache;
+
+    @Mock
+    private TransactionalOperator transactionalOperator;
+
+    @Mock
+    private CartReadRepository cartReadRepository;
+
+    private CartCustomerService cartCustomerService;
+    private SimpleMeterRegistry meterRegistry;
+    private Cart cart;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        VistasCarritoEnCurso vistasEnCurso = new VistasCarritoEnCurso(new SimpleMeterRegistry(), true);
+        cartCustomerService = new CartCustomerService(cartRepository, cartDetailRepository, inventarioClient,
+                new RespuestaCarrito(usuarioCache, productoInfoCache), transactionalOperator, cartReadRepository,
+                vistasEnCurso, new MutacionesCarrito(vistasEnCurso, new SimpleMeterRegistry()),
+                new ConflictosCarrito(meterRegistry, 2, Duration.ofMillis(1), Duration.ofMillis(5)));
+        cart = Cart.builder().id(CART_ID).userId(USER_ID).estado(true).version(0L)
+                .numeroProductos(1L).totalUnidades(2L).precioTotal(200).build();
+    }
+
+    @Test
+    @DisplayName("Debería agregar el producto con el upsert y consultar solo la presentación de las demás líneas")
+    void deberiaAgregarProductoConUpsert() {
+        stubAgregarProducto();
+        when(cartDetailRepository.findAllByCarritoId(CART_ID)).thenReturn(Flux.just(
+                CartDetail.builder().id(1L).carritoId(CART_ID).productoId(PRODUCT_ID).cantidad(3L).precioTotal(300).build(),
+                CartDetail.builder().id(2L).carritoId(CART_ID).productoId(200L).cantidad(1L).precioTotal(50).build()));
+        when(usuarioCache.consultarUsuario(USER_ID))
+                .thenReturn(Mono.just(ConsultUserInAuthDto.builder().name("Ana").build()));
+        when(productoInfoCache.consultarProductos(List.of(200L)))
+                .thenReturn(Mono.just(Map.of(200L, new ConsultProductInventarioDto("Cable", "USB", 10, 50))));
+
+        StepVerifier.create(cartCustomerService.addProductToCart(USER_ID, PRODUCT_ID, 3L))
+                .assertNext(dto -> {
+                    assertThat(dto.getNombreUsuario()).isEqualTo("Ana");
+                    assertThat(dto.getProducts()).extracting(ProductInCartDto::getNombre).containsExactly("Mouse", "Cable");
+                })
+                .verifyComplete();
+
+        verify(cartRepository).upsertLinea(eq(CART_ID), eq(PRODUCT_ID), eq(3L), eq(300),
+                eq("Mouse"), eq("Inalámbrico"), eq(100), any(LocalDateTime.class));
+        verify(transactionalOperator).transactional(any(Mono.class));
+        verify(cartRepository, never()).findByUserId(anyLong());
+        verify(inventarioClient, times(1)).consultarProducto(anyLong());
+    }
+
+    @Test
+    @DisplayName("Debería responder solo la línea agregada y los totales en modo delta sin consultar nada más")
+    void deberiaResponderDeltaAlAgregar() {
+        stubAgregarProducto();
+
+        StepVerifier.create(cartCustomerService.addProductToCartDelta(USER_ID, PRODUCT_ID, 3L))
+                .assertNext(delta -> {
+                    assertThat(delta.getCartId()).isEqualTo(CART_ID);
+                    assertThat(delta.getLinea().getNombre()).isEqualTo("Mouse");
+                    assertThat(delta.getLinea().getPrecioTotal()).isEqualTo(300);
+                    assertThat(delta.getPrecioTotal()).isEqualTo(cart.getPrecioTotal());
+                })
+                .verifyComplete();
+
+        verifyNoInteractions(usuarioCache, productoInfoCache, cartDetailRepository);
+    }
+
+    @Test
+    @DisplayName("Debería responder el carrito aunque falle la consulta del usuario")
+    void deberiaResponderSinUsuarioSiFallaLaConsulta() {
+        when(cartReadRepository.buscarPorUsuario(USER_ID)).thenReturn(Mono.just(carritoLeido(List.of(), List.of())));
+        when(usuarioCache.consultarUsuario(USER_ID)).thenReturn(Mono.error(new RuntimeException("auth caído")));
+
+        StepVerifier.create(cartCustomerService.viewCart(USER_ID))
+                .assertNext(dto -> assertThat(dto.getNombreUsuario()).isEqualTo("Usuario no disponible"))
+                .verifyComplete();
+
+        verifyNoInteractions(productoInfoCache);
+    }
+
+    @Test
+    @DisplayName("No debería modificar el carrito cuando no hay stock suficiente")
+    void noDeberiaModificarCarritoSinStock() {
+        when(inventarioClient.consultarProducto(PRODUCT_ID))
+                .thenReturn(Mono.just(new ConsultProductInventarioDto("Mouse", "Inalámbrico", 2, 100)));
+
+        StepVerifier.create(cartCustomerService.addProductToCart(USER_ID, PRODUCT_ID, 3L))
+                .expectError(StockInsuficienteException.class)
+                .verify();
+
+        verify(cartRepository, never()).upsertCarritoUsuario(anyLong(), any(LocalDateTime.class));
+    }
+
+    @Test
+    @DisplayName("Debería descontar de los totales la línea eliminada")
+    void deberiaDescontarLineaEliminada() {
+        CartDetail existente = CartDetail.builder().id(1L).carritoId(CART_ID).productoId(PRODUCT_ID)
+                .cantidad(2L).precioTotal(200).build();
+        when(cartDetailRepository.findByCarritoIdAndProductoId(CART_ID, PRODUCT_ID)).thenReturn(Mono.just(existente));
+        when(cartDetailRepository.delete(existente)).thenReturn(Mono.empty());
+        when(cartRepository.aplicarDeltaTotales(eq(CART_ID), anyLong(), anyLong(), anyLong(), any(Integer.class), any(LocalDateTime.class)))
+                .thenReturn(Mono.just(cart));
+        stubTransaccion();
+        stubLecturaLineas();
+
+        StepVerifier.create(cartCustomerService.removeProductFromCart(USER_ID, PRODUCT_ID))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        verify(cartRepository).aplicarDeltaTotales(eq(CART_ID), eq(0L), eq(-1L), eq(-2L), eq(-200), any(LocalDateTime.class));
+    }
+
+    @Test
+    @DisplayName("Debería reintentar la eliminación releyendo el carrito si otra operación lo modificó tras leerlo")
+    void deberiaReintentarEliminacionConCarritoModificado() {
+        CartDetail existente = CartDetail.builder().id(1L).carritoId(CART_ID).productoId(PRODUCT_ID)
+                .cantidad(2L).precioTotal(200).build();
+        when(cartDetailRepository.findByCarritoIdAndProductoId(CART_ID, PRODUCT_ID)).thenReturn(Mono.just(existente));
+        when(cartDetailRepository.delete(existente)).thenReturn(Mono.empty());
+        // El primer intento encuentra otra versión; el segundo, tras releer, aplica el descuento
+        when(cartRepository.aplicarDeltaTotales(eq(CART_ID), eq(0L), anyLong(), anyLong(), any(Integer.class),
+                any(LocalDateTime.class))).thenReturn(Mono.empty(), Mono.just(cart));
+        stubTransaccion();
+        stubLecturaLineas();
+
+        StepVerifier.create(cartCustomerService.removeProductFromCart(USER_ID, PRODUCT_ID))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        verify(cartRepository, times(2)).aplicarDeltaTotales(eq(CART_ID), eq(0L), eq(-1L), eq(-2L), eq(-200),
+                any(LocalDateTime.class));
+        verify(cartDetailRepository, times(1)).delete(existente);
+        assertThat(conflictos("eliminar", ConflictosCarrito.REINTENTADO)).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("Debería rechazar la eliminación con conflicto al agotar los reintentos sin borrar la línea")
+    void deberiaRechazarEliminacionConCarritoModificado() {
+        CartDetail existente = CartDetail.builder().id(1L).carritoId(CART_ID).productoId(PRODUCT_ID)
+                .cantidad(2L).precioTotal(200).build();
+        when(cartRepository.findByUserId(USER_ID)).thenReturn(Mono.just(cart));
+        when(cartDetailRepository.findByCarritoIdAndProductoId(CART_ID, PRODUCT_ID)).thenReturn(Mono.just(existente));
+        // La versión leída nunca coincide: el UPDATE condicional no devuelve filas
+        when(cartRepository.aplicarDeltaTotales(eq(CART_ID), eq(0L), anyLong(), anyLong(), any(Integer.class),
+                any(LocalDateTime.class))).thenReturn(Mono.empty());
+        stubTransaccion();
+
+        StepVerifier.create(cartCustomerService.removeProductFromCart(USER_ID, PRODUCT_ID))
+                .expectError(CarritoModificadoException.class)
+                .verify();
+
+        // Un intento más los dos reintentos configurados; la línea no se borra si los totales no se descontaron
+        verify(cartRepository, times(3)).aplicarDeltaTotales(eq(CART_ID), eq(0L), anyLong(), anyLong(),
+                any(Integer.class), any(LocalDateTime.class));
+        verify(cartDetailRepository, never()).delete(any(CartDetail.class));
+        assertThat(conflictos("eliminar", ConflictosCarrito.REINTENTADO)).isEqualTo(2.0);
+        assertThat(conflictos("eliminar", ConflictosCarrito.AGOTADO)).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("Debería agregar varios productos con una consulta por lote y una sola sentencia, informando cada rechazo")
+    void deberiaAgregarVariosProductos() {
+        when(inventarioClient.consultarProductos(any())).thenReturn(Mono.just(Map.of(
+                PRODUCT_ID, new ConsultProductInventarioDto("Mouse", "Inalámbrico", 50, 100),
+                200L, new ConsultProductInventarioDto("Cable", "USB", 1, 50))));
+        when(cartRepository.upsertCarritoUsuario(eq(USER_ID), any(LocalDateTime.class))).thenReturn(Mono.just(CART_ID));
+        when(cartRepository.upsertLineas(eq(CART_ID), any(Long[].class), any(Long[].class), any(Integer[].class),
+                any(String[].class), any(String[].class), any(Integer[].class), any(LocalDateTime.class)))
+                .thenReturn(Mono.just(cart));
+        stubTransaccion();
+        when(cartDetailRepository.findAllByCarritoId(CART_ID)).thenReturn(Flux.just(
+                CartDetail.builder().id(1L).carritoId(CART_ID).productoId(PRODUCT_ID).cantidad(3L).precioTotal(300).build()));
+        when(usuarioCache.consultarUsuario(USER_ID))
+                .thenReturn(Mono.just(ConsultUserInAuthDto.builder().name("Ana").build()));
+
+        List<AddProductRequestDTO> productos = List.of(
+                new AddProductRequestDTO(PRODUCT_ID, 1L),
+                new AddProductRequestDTO(200L, 2L),
+                new AddProductRequestDTO(300L, 1L),
+                new AddProductRequestDTO(PRODUCT_ID, 2L));
+
+        StepVerifier.create(cartCustomerService.addProductsToCart(USER_ID, productos))
+                .assertNext(resultado -> {
+                    assertThat(resultado.getCarrito().getProducts()).extracting(ProductInCartDto::getNombre)
+                            .containsExactly("Mouse");
+                    assertThat(resultado.getResultados())
+                            .extracting(AddProductsResultDto.ResultadoProductoDto::getProductId,
+                                    AddProductsResultDto.ResultadoProductoDto::getQuantity,
+                                    AddProductsResultDto.ResultadoProductoDto::isAgregado)
+                            .containsExactly(tuple(PRODUCT_ID, 3L, true), tuple(200L, 2L, false), tuple(300L, 1L, false));
+                    assertThat(resultado.getResultados().get(1).getError()).contains("Stock insuficiente");
+                })
+                .verifyComplete();
+
+        verify(cartRepository).upsertLineas(eq(CART_ID), eq(new Long[]{PRODUCT_ID}), eq(new Long[]{3L}),
+                eq(new Integer[]{300}), eq(new String[]{"Mouse"}), eq(new String[]{"Inalámbrico"}),
+                eq(new Integer[]{100}), any(LocalDateTime.class));
+        verify(inventarioClient, never()).consultarProducto(anyLong());
+        verifyNoInteractions(productoInfoCache);
+    }
+
+    @Test
+    @DisplayName("No debería escribir nada cuando se rechazan todos los productos")
+    void noDeberiaEscribirSiSeRechazanTodos() {
+        when(inventarioClient.consultarProductos(any())).thenReturn(Mono.just(Map.of()));
+        when(cartRepository.findByUserId(USER_ID)).thenReturn(Mono.empty());
+
+        StepVerifier.create(cartCustomerService.addProductsToCart(USER_ID, List.of(new AddProductRequestDTO(PRODUCT_ID, 1L))))
+                .assertNext(resultado -> {
+                    assertThat(resultado.getCarrito()).isNull();
+                    assertThat(resultado.getResultados()).singleElement()
+                            .satisfies(r -> assertThat(r.isAgregado()).isFalse());
+                })
+                .verifyComplete();
+
+        verify(cartRepository, never()).upsertCarritoUsuario(anyLong(), any(LocalDateTime.class));
+    }
+
+    @Test
+    @DisplayName("Debería fallar con 503 sin escribir nada cuando el inventario no está disponible")
+    void deberiaFallarSiInventarioNoDisponible() {
+        when(inventarioClient.consultarProductos(any()))
+                .thenReturn(Mono.error(ServicioExternoException.noDisponible("inventario")));
+
+        StepVerifier.create(cartCustomerService.addProductsToCart(USER_ID, List.of(new AddProductRequestDTO(PRODUCT_ID, 1L))))
+                .expectError(ServicioExternoException.class)
+                .verify();
+
+        verify(cartRepository, never()).upsertCarritoUsuario(anyLong(), any(LocalDateTime.class));
+    }
+
+    @Test
+    @DisplayName("Debería mostrar el carrito con una sola lectura y consultar al inventario solo las líneas sin snapshot")
+    void deberiaMostrarCarritoDesdeElModeloDeLectura() {
+        ProductInCartDto conSnapshot = ProductInCartDto.builder().id(1L).productoId(PRODUCT_ID).nombre("Mouse")
+                .cantidad(2L).precioUnitario(100).precioTotal(200).build();
+        ProductInCartDto sinSnapshot = ProductInCartDto.builder().id(2L).productoId(200L)
+                .nombre(CartReadRepository.NOMBRE_NO_DISPONIBLE).cantidad(1L).precioTotal(50).build();
+        when(cartReadRepository.buscarPorUsuario(USER_ID))
+                .thenReturn(Mono.just(carritoLeido(List.of(conSnapshot, sinSnapshot), List.of(200L))));
+        when(usuarioCache.consultarUsuario(USER_ID))
+                .thenReturn(Mono.just(ConsultUserInAuthDto.builder().name("Ana").build()));
+        when(productoInfoCache.consultarProductos(List.of(200L)))
+                .thenReturn(Mono.just(Map.of(200L, new ConsultProductInventarioDto("Cable", "USB", 10, 50))));
+
+        StepVerifier.create(cartCustomerService.viewCart(USER_ID))
+                .assertNext(dto -> {
+                    assertThat(dto.getNombreUsuario()).isEqualTo("Ana");
+                    assertThat(dto.getProducts()).extracting(ProductInCartDto::getNombre).containsExactly("Mouse", "Cable");
+                    assertThat(dto.getProducts()).extracting(ProductInCartDto::getPrecioUnitario).containsExactly(100, 50);
+                })
+                .verifyComplete();
+
+        verifyNoInteractions(cartRepository, cartDetailRepository, inventarioClient);
+    }
+
+    @Test
+    @DisplayName("Debería actualizar la presentación guardada cuando se pide refrescar y el inventario cambió")
+    void deberiaRefrescarSnapshotDesactualizado() {
+        when(cartRepository.findByUserId(USER_ID)).thenReturn(Mono.just(cart));
+        when(cartDetailRepository.findAllByCarritoId(CART_ID)).thenReturn(Flux.just(lineaConSnapshot("Mouse", 100)));
+        when(inventarioClient.consultarProductos(List.of(PRODUCT_ID))).thenReturn(Mono.just(Map.of(
+                PRODUCT_ID, new ConsultProductInventarioDto("Mouse Pro", "Inalámbrico", 50, 120))));
+        when(cartDetailRepository.actualizarSnapshots(eq(CART_ID), any(Long[].class), any(Long[].class),
+                any(String[].class), any(String[].class), any(Integer[].class), any(LocalDateTime.class)))
+                .thenReturn(Mono.just(1));
+        when(usuarioCache.consultarUsuario(USER_ID))
+                .thenReturn(Mono.just(ConsultUserInAuthDto.builder().name("Ana").build()));
+
+        StepVerifier.create(cartCustomerService.viewCart(USER_ID, true))
+                .assertNext(dto -> assertThat(dto.getProducts()).singleElement().satisfies(producto -> {
+                    assertThat(producto.getNombre()).isEqualTo("Mouse Pro");
+                    assertThat(producto.getPrecioUnitario()).isEqualTo(120);
+                }))
+                .verifyComplete();
+
+        // La línea solo se actualiza si conserva la versión leída
+        verify(cartDetailRepository).actualizarSnapshots(eq(CART_ID), eq(new Long[]{PRODUCT_ID}), eq(new Long[]{3L}),
+                eq(new String[]{"Mouse Pro"}), eq(new String[]{"Inalámbrico"}), eq(new Integer[]{120}),
+                any(LocalDateTime.class));
+        verifyNoInteractions(productoInfoCache);
+    }
+
+    private static CartReadRepository.CarritoLeido carritoLeido(List<ProductInCartDto> productos,
+                                                                List<Long> productosSinSnapshot) {
+        CartWithProductsDto carrito = new CartWithProductsDto();
+        carrito.setCartId(CART_ID);
+        carrito.setUserId(USER_ID);
+        carrito.setProducts(new ArrayList<>(productos));
+        return new CartReadRepository.CarritoLeido(carrito, productosSinSnapshot);
+    }
+
+    private static CartDetail lineaConSnapshot(String nombre, int precioUnitario) {
+        return CartDetail.builder().id(1L).carritoId(CART_ID).productoId(PRODUCT_ID).cantidad(2L)
+                .precioTotal(2 * precioUnitario).nombreProducto(nombre).descripcionProducto("Inalámbrico")
+                .precioUnitario(precioUnitario).snapshotEn(LocalDateTime.now()).version(3L).build();
+    }
+
+    private double conflictos(String operacion, String resultado) {
+        return meterRegistry.get("ms.cart.conflictos").tag("operacion", operacion).tag("resultado", resultado)
+                .counter().count();
+    }
+
+    // La transacción de prueba ejecuta el flujo sin envolverlo
+    @SuppressWarnings("unchecked")
+    private void stubTransaccion() {
+        when(transactionalOperator.transactional(any(Mono.class))).thenAnswer(inv -> inv.getArgument(0));
+    }
+
+    private void stubAgregarProducto() {
+        when(inventarioClient.consultarProducto(PRODUCT_ID))
+                .thenReturn(Mono.just(new ConsultProductInventarioDto("Mouse", "Inalámbrico", 50, 100)));
+        when(cartRepository.upsertCarritoUsuario(eq(USER_ID), any(LocalDateTime.class))).thenReturn(Mono.just(CART_ID));
+        when(cartRepository.upsertLinea(eq(CART_ID), eq(PRODUCT_ID), anyLong(), any(Integer.class),
+                any(), any(), any(Integer.class), any(LocalDateTime.class)))
+                .thenReturn(Mono.just(cart));
+        stubTransaccion();
+    }
+
+    // Lectura de las líneas con la que terminan las mutaciones en modo de respuesta completa
+    private void stubLecturaLineas() {
+        when(cartRepository.findByUserId(USER_ID)).thenReturn(Mono.just(cart));
+        when(usuarioCache.consultarUsuario(USER_ID))
+                .thenReturn(Mono.just(ConsultUserInAuthDto.builder().name("Ana").build()));
+        when(cartDetailRepository.findAllByCarritoId(CART_ID)).thenReturn(Flux.empty());
+    }
+}
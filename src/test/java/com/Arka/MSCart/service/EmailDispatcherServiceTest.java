@@ -0,0 +1,112 @@
+package com.Arka.MSCart.service;
+
+import com.Arka.MSCart.client.EmailClient;
+import com.Arka.MSCart.dto.notificationDto.EmailRequest;
+import com.Arka.MSCart.service.EmailDispatcherService.EmailPendiente;
+import com.Arka.MSCart.service.EmailDispatcherService.ResultadoEnvio;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Pruebas unitarias para EmailDispatcherService
+ * Capa de Lógica de Negocio
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("EmailDispatcherService - Pruebas Unitarias")
+class EmailDispatcherServiceTest {
+
+    @Mock
+    private EmailClient emailClient;
+
+    private SimpleMeterRegistry meterRegistry;
+    private EmailDispatcherService emailDispatcherService;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        emailDispatcherService = new EmailDispatcherService(emailClient, meterRegistry);
+
+        // Inyectar valores de configuración usando ReflectionTestUtils
+        ReflectionTestUtils.setField(emailDispatcherService, "concurrencia", 2);
+        ReflectionTestUtils.setField(emailDispatcherService, "llamadasPorSegundo", 1000);
+        ReflectionTestUtils.setField(emailDispatcherService, "reintentos", 2);
+        ReflectionTestUtils.setField(emailDispatcherService, "backoffMinimo", Duration.ofMillis(1));
+        ReflectionTestUtils.setField(emailDispatcherService, "timeoutLlamada", Duration.ofSeconds(1));
+    }
+
+    @Test
+    @DisplayName("Debería enviar cada email en su propia llamada con su clave de idempotencia")
+    void deberiaEnviarCadaEmailConSuClave() {
+        when(emailClient.enviar(any(EmailRequest.class), anyString())).thenReturn(Mono.empty());
+
+        StepVerifier.create(emailDispatcherService.despachar(pendientes(1L, 2L, 3L, 4L))
+                        .filter(ResultadoEnvio::confirmado)
+                        .map(ResultadoEnvio::outboxId)
+                        .sort()
+                        .collectList())
+                .expectNext(List.of(1L, 2L, 3L, 4L))
+                .verifyComplete();
+
+        List.of(1L, 2L, 3L, 4L).forEach(id -> verify(emailClient).enviar(
+                argThat(email -> email.getDestination().equals("cliente" + id + "@example.com")), eq("carrito-" + id + "-0")));
+        assertThat(meterRegistry.get("ms.cart.email.enviados").counter().count()).isEqualTo(4.0);
+    }
+
+    @Test
+    @DisplayName("Debería reintentar errores transitorios antes de confirmar el envío")
+    void deberiaReintentarErroresTransitorios() {
+        AtomicInteger intentos = new AtomicInteger();
+        when(emailClient.enviar(any(EmailRequest.class), anyString())).thenReturn(Mono.defer(() -> intentos.incrementAndGet() == 1
+                ? Mono.error(WebClientResponseException.create(503, "Service Unavailable", null, null, null))
+                : Mono.empty()));
+
+        StepVerifier.create(emailDispatcherService.despachar(pendientes(1L)).map(ResultadoEnvio::confirmado))
+                .expectNext(true)
+                .verifyComplete();
+
+        assertThat(intentos).hasValue(2);
+    }
+
+    @Test
+    @DisplayName("Debería reportar los emails como no confirmados cuando la Lambda rechaza el envío")
+    void deberiaReportarEmailNoConfirmadoSiElEnvioFalla() {
+        when(emailClient.enviar(any(EmailRequest.class), anyString())).thenReturn(
+                Mono.error(WebClientResponseException.create(400, "Bad Request", null, null, null)));
+
+        StepVerifier.create(emailDispatcherService.despachar(pendientes(1L, 2L)).map(ResultadoEnvio::confirmado))
+                .expectNext(false, false)
+                .verifyComplete();
+
+        // Un 400 no se reintenta: una sola llamada por email
+        verify(emailClient, times(2)).enviar(any(EmailRequest.class), anyString());
+        assertThat(meterRegistry.get("ms.cart.email.fallidos").counter().count()).isEqualTo(2.0);
+    }
+
+    private Flux<EmailPendiente> pendientes(Long... outboxIds) {
+        return Flux.just(outboxIds).map(id -> new EmailPendiente(id, "carrito-" + id + "-0",
+                new EmailRequest("cliente" + id + "@example.com", "asunto", "<html/>", "CARRITO_ABANDONADO")));
+    }
+}
@@ -0,0 +1,185 @@
+package com.Arka.MSCart.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Pruebas de JobLeaseService con varias réplicas compartiendo una base de datos local (H2 en memoria)
+ * Capa de Lógica de Negocio
+ *
+ * La expiración usa el reloj de la base de datos: el paso del tiempo se simula moviendo expira_en.
+ */
+@DisplayName("JobLeaseService - Pruebas con varias réplicas")
+class JobLeaseServiceTest {
+
+    private static final String TAREA = "barrido-carritos-abandonados";
+    private static final Duration DURACION_LEASE = Duration.ofMinutes(5);
+
+    private String urlBaseDatos;
+    private List<Replica> replicas;
+
+    @BeforeEach
+    void setUp() {
+        // Cada prueba usa su propia base de datos, compartida por todas las réplicas
+        urlBaseDatos = "r2dbc:h2:mem:///lease-" + UUID.randomUUID() + "?options=DB_CLOSE_DELAY=-1";
+
+        DatabaseClient.create(ConnectionFactories.get(urlBaseDatos))
+                .sql("""
+                        CREATE TABLE job_lease (
+                            nombre      VARCHAR(100) PRIMARY KEY,
+                            propietario VARCHAR(200),
+                            expira_en   TIMESTAMP    NOT NULL
+                        )
+                        """)
+                .then()
+                .block();
+
+        replicas = IntStream.range(0, 3).mapToObj(i -> new Replica("replica-" + i)).toList();
+    }
+
+    @Test
+    @DisplayName("Debería ejecutar la tarea en una sola réplica por intervalo")
+    void deberiaEjecutarEnUnaSolaReplica() {
+        AtomicInteger ejecuciones = new AtomicInteger();
+
+        StepVerifier.create(Flux.fromIterable(replicas)
+                        .flatMap(replica -> replica.servicio.ejecutarConLease(TAREA, DURACION_LEASE,
+                                Mono.fromCallable(ejecuciones::incrementAndGet)))
+                        .then())
+                .verifyComplete();
+
+        assertThat(ejecuciones).hasValue(1);
+        assertThat(replicas.stream().mapToDouble(Replica::adquisiciones).sum()).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("Debería renovar el lease en la misma réplica en intervalos sucesivos")
+    void deberiaRenovarElLeaseEnLaMismaReplica() {
+        Replica propietaria = replicas.get(0);
+        Replica otra = replicas.get(1);
+
+        StepVerifier.create(propietaria.servicio.adquirir(TAREA, DURACION_LEASE)).expectNext(true).verifyComplete();
+
+        // Al lease le quedan dos minutos: la otra réplica no puede tomarlo y la propietaria lo renueva
+        moverExpiracion(Duration.ofMinutes(2));
+        StepVerifier.create(otra.servicio.adquirir(TAREA, DURACION_LEASE)).expectNext(false).verifyComplete();
+        StepVerifier.create(propietaria.servicio.adquirir(TAREA, DURACION_LEASE)).expectNext(true).verifyComplete();
+
+        // La renovación extendió el lease a su duración completa desde el reloj de la base de datos
+        assertThat(expiraEn()).isAfter(LocalDateTime.now().plusMinutes(4));
+        StepVerifier.create(otra.servicio.adquirir(TAREA, DURACION_LEASE)).expectNext(false).verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Debería traspasar el lease a otra réplica cuando la propietaria deja de renovarlo")
+    void deberiaTraspasarElLeaseCuandoLaPropietariaMuere() {
+        Replica propietaria = replicas.get(0);
+        Replica sucesora = replicas.get(1);
+
+        StepVerifier.create(propietaria.servicio.adquirir(TAREA, DURACION_LEASE)).expectNext(true).verifyComplete();
+
+        // La réplica propietaria muere y su lease vence
+        moverExpiracion(Duration.ofSeconds(-1));
+
+        StepVerifier.create(sucesora.servicio.adquirir(TAREA, DURACION_LEASE)).expectNext(true).verifyComplete();
+        StepVerifier.create(propietaria.servicio.adquirir(TAREA, DURACION_LEASE)).expectNext(false).verifyComplete();
+        assertThat(sucesora.meterRegistry.get("ms.cart.lease.traspasos").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("Debería permitir que otra réplica tome el lease liberado")
+    void deberiaPermitirTomarElLeaseLiberado() {
+        Replica propietaria = replicas.get(0);
+        Replica otra = replicas.get(2);
+
+        StepVerifier.create(propietaria.servicio.adquirir(TAREA, DURACION_LEASE)).expectNext(true).verifyComplete();
+        StepVerifier.create(propietaria.servicio.liberar(TAREA)).verifyComplete();
+        StepVerifier.create(otra.servicio.adquirir(TAREA, DURACION_LEASE)).expectNext(true).verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Debería renovar el lease mientras la tarea se ejecuta más allá de su duración")
+    void deberiaRenovarElLeaseDuranteLaTarea() {
+        Replica propietaria = replicas.get(0);
+        Replica otra = replicas.get(1);
+        Duration leaseCorto = Duration.ofMillis(600);
+
+        StepVerifier.create(propietaria.servicio.ejecutarConLease(TAREA, leaseCorto,
+                        // La otra réplica lo intenta cuando el lease original ya habría vencido
+                        Mono.delay(Duration.ofMillis(1200))
+                                .then(otra.servicio.adquirir(TAREA, leaseCorto))
+                                .delayElement(Duration.ofMillis(300))))
+                .expectNext(false)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Debería cancelar la tarea cuando otra réplica tiene el lease al renovarlo")
+    void deberiaCancelarLaTareaAlPerderElLease() {
+        Replica propietaria = replicas.get(0);
+        Duration leaseCorto = Duration.ofMillis(600);
+
+        StepVerifier.create(propietaria.servicio.ejecutarConLease(TAREA, leaseCorto,
+                        // Mientras la tarea sigue en curso el lease pasa a otra réplica
+                        Mono.delay(Duration.ofMillis(50))
+                                .then(baseDatos().sql("UPDATE job_lease SET propietario = 'intrusa'").then())
+                                .then(Mono.delay(Duration.ofSeconds(10)))))
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+
+        assertThat(propietaria.meterRegistry.get("ms.cart.lease.perdidos").counter().count()).isEqualTo(1.0);
+    }
+
+    // Deja al lease de la tarea el tiempo indicado antes de vencer (negativo: ya vencido)
+    private void moverExpiracion(Duration restante) {
+        baseDatos().sql("UPDATE job_lease SET expira_en = LOCALTIMESTAMP + CAST(:milisegundos AS BIGINT) * INTERVAL '0.001' SECOND")
+                .bind("milisegundos", restante.toMillis())
+                .then()
+                .block();
+    }
+
+    private LocalDateTime expiraEn() {
+        return baseDatos().sql("SELECT expira_en FROM job_lease WHERE nombre = :nombre")
+                .bind("nombre", TAREA)
+                .map(fila -> fila.get("expira_en", LocalDateTime.class))
+                .one()
+                .block();
+    }
+
+    private DatabaseClient baseDatos() {
+        return DatabaseClient.create(ConnectionFactories.get(urlBaseDatos));
+    }
+
+    // Réplica simulada: conexión propia a la base de datos compartida, registro de métricas y propietario propios
+    private class Replica {
+        private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        private final JobLeaseService servicio;
+
+        Replica(String nombre) {
+            ConnectionFactory connectionFactory = ConnectionFactories.get(urlBaseDatos);
+            this.servicio = new JobLeaseService(DatabaseClient.create(connectionFactory), meterRegistry, nombre);
+        }
+
+        double adquisiciones() {
+            return meterRegistry.find("ms.cart.lease.adquisiciones").tag("resultado", "adquirido").counters()
+                    .stream().mapToDouble(c -> c.count()).sum();
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.Arka.MSCart.service;
+
+import com.Arka.MSCart.cache.VistasCarritoEnCurso;
+import com.Arka.MSCart.dto.CartWithProductsDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Pruebas unitarias para MutacionesCarrito
+ * Capa de Lógica de Negocio
+ *
+ * Las mutaciones se controlan con Sinks para mantenerlas en curso mientras llegan las siguientes.
+ */
+@DisplayName("MutacionesCarrito - Pruebas Unitarias")
+class MutacionesCarritoTest {
+
+    private static final Long USER_ID = 5L;
+
+    private VistasCarritoEnCurso vistasEnCurso;
+    private MutacionesCarrito mutacionesCarrito;
+    private final List<String> iniciadas = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        vistasEnCurso = new VistasCarritoEnCurso(new SimpleMeterRegistry(), true);
+        mutacionesCarrito = new MutacionesCarrito(vistasEnCurso, new SimpleMeterRegistry());
+    }
+
+    @Test
+    @DisplayName("Debería ejecutar en orden de llegada las mutaciones del mismo usuario")
+    void deberiaOrdenarMutacionesDelMismoUsuario() {
+        Sinks.One<String> primera = Sinks.one();
+        Sinks.One<String> segunda = Sinks.one();
+
+        StepVerifier verificaPrimera = StepVerifier.create(mutar(USER_ID, "primera", primera))
+                .expectNext("primera").expectComplete().verifyLater();
+        StepVerifier verificaSegunda = StepVerifier.create(mutar(USER_ID, "segunda", segunda))
+                .expectNext("segunda").expectComplete().verifyLater();
+
+        // La segunda espera a que termine la primera
+        assertThat(iniciadas).containsExactly("primera");
+        primera.tryEmitValue("primera");
+        assertThat(iniciadas).containsExactly("primera", "segunda");
+        segunda.tryEmitValue("segunda");
+
+        verificaPrimera.verify();
+        verificaSegunda.verify();
+    }
+
+    @Test
+    @DisplayName("Debería ejecutar en paralelo las mutaciones de usuarios distintos")
+    void deberiaEjecutarEnParaleloUsuariosDistintos() {
+        Sinks.One<String> usuario = Sinks.one();
+        Sinks.One<String> otroUsuario = Sinks.one();
+
+        StepVerifier verificaUsuario = StepVerifier.create(mutar(USER_ID, "usuario", usuario))
+                .expectNext("usuario").expectComplete().verifyLater();
+        StepVerifier verificaOtro = StepVerifier.create(mutar(6L, "otro", otroUsuario))
+                .expectNext("otro").expectComplete().verifyLater();
+
+        assertThat(iniciadas).containsExactly("usuario", "otro");
+        otroUsuario.tryEmitValue("otro");
+        usuario.tryEmitValue("usuario");
+
+        verificaUsuario.verify();
+        verificaOtro.verify();
+    }
+
+    @Test
+    @DisplayName("Debería ceder el turno tras un error o una cancelación sin adelantar a la mutación en curso")
+    void deberiaCederTurnoTrasErrorOCancelacion() {
+        Sinks.One<String> enCurso = Sinks.one();
+        Sinks.One<String> cancelada = Sinks.one();
+
+        StepVerifier verificaEnCurso = StepVerifier.create(mutar(USER_ID, "enCurso", enCurso))
+                .expectError(IllegalStateException.class).verifyLater();
+        Disposable suscripcionCancelada = mutar(USER_ID, "cancelada", cancelada).subscribe();
+        StepVerifier verificaSiguiente = StepVerifier.create(mutar(USER_ID, "siguiente", Mono.just("siguiente")))
+                .expectNext("siguiente").expectComplete().verifyLater();
+
+        // La cancelación no adelanta a la siguiente mientras la primera sigue en curso
+        suscripcionCancelada.dispose();
+        assertThat(iniciadas).containsExactly("enCurso");
+
+        enCurso.tryEmitError(new IllegalStateException("fallo"));
+        verificaEnCurso.verify();
+        verificaSiguiente.verify();
+        assertThat(iniciadas).containsExactly("enCurso", "siguiente");
+    }
+
+    @Test
+    @DisplayName("Debería invalidar la lectura en curso del usuario al terminar la mutación")
+    void deberiaInvalidarLecturaEnCurso() {
+        Sinks.One<CartWithProductsDto> lecturaAnterior = Sinks.one();
+        AtomicInteger lecturas = new AtomicInteger();
+        vistasEnCurso.compartir(USER_ID, () -> {
+            lecturas.incrementAndGet();
+            return lecturaAnterior.asMono();
+        }).subscribe();
+
+        StepVerifier.create(mutacionesCarrito.ejecutar(USER_ID, Mono.just("mutacion")))
+                .expectNext("mutacion")
+                .verifyComplete();
+
+        // La lectura posterior a la mutación no se une a la anterior
+        StepVerifier.create(vistasEnCurso.compartir(USER_ID, () -> {
+                    lecturas.incrementAndGet();
+                    return Mono.just(new CartWithProductsDto());
+                }))
+                .expectNextCount(1)
+                .verifyComplete();
+        assertThat(lecturas).hasValue(2);
+    }
+
+    // Mutación que registra su inicio y termina con el sink indicado
+    private Mono<String> mutar(Long userId, String nombre, Sinks.One<String> fin) {
+        return mutar(userId, nombre, fin.asMono());
+    }
+
+    private Mono<String> mutar(Long userId, String nombre, Mono<String> fin) {
+        return mutacionesCarrito.ejecutar(userId, Mono.defer(() -> {
+            iniciadas.add(nombre);
+            return fin;
+        }));
+    }
+}
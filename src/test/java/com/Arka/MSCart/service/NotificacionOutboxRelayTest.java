@@ -0,0 +1,157 @@
+package com.Arka.MSCart.service;
+
+import com.Arka.MSCart.dto.notificationDto.EmailRequest;
+import com.Arka.MSCart.model.NotificacionOutbox;
+import com.Arka.MSCart.repository.NotificacionOutboxRepository;
+import com.Arka.MSCart.service.EmailDispatcherService.EmailPendiente;
+import com.Arka.MSCart.service.EmailDispatcherService.ResultadoEnvio;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Pruebas unitarias para NotificacionOutboxRelay
+ * Capa de Lógica de Negocio
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("NotificacionOutboxRelay - Pruebas Unitarias")
+class NotificacionOutboxRelayTest {
+
+    @Mock
+    private NotificacionOutboxRepository outboxRepository;
+
+    @Mock
+    private EmailDispatcherService emailDispatcherService;
+
+    @Mock
+    private JobLeaseService jobLeaseService;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private NotificacionOutboxRelay relay;
+
+    @BeforeEach
+    void setUp() {
+        relay = new NotificacionOutboxRelay(outboxRepository, emailDispatcherService, jobLeaseService,
+                objectMapper, new SimpleMeterRegistry());
+
+        // Inyectar valores de configuración usando ReflectionTestUtils
+        ReflectionTestUtils.setField(relay, "tamanoLectura", 2);
+        ReflectionTestUtils.setField(relay, "maxLotes", 5);
+        ReflectionTestUtils.setField(relay, "maxIntentos", 3);
+        ReflectionTestUtils.setField(relay, "reintentarEn", Duration.ofMinutes(1));
+        ReflectionTestUtils.setField(relay, "reclamo", Duration.ofMinutes(5));
+        ReflectionTestUtils.setField(relay, "intervalo", Duration.ofSeconds(30));
+    }
+
+    @Test
+    @DisplayName("Debería drenar el outbox en orden y marcar los eventos confirmados")
+    void deberiaDrenarEnOrdenYMarcarEnviados() throws Exception {
+        when(outboxRepository.reclamarPendientes(eq(2), anyLong()))
+                .thenReturn(Flux.just(evento(1L), evento(2L)))
+                .thenReturn(Flux.just(evento(3L)));
+        when(emailDispatcherService.despachar(any())).thenAnswer(invocacion -> {
+            Flux<EmailPendiente> pendientes = invocacion.getArgument(0);
+            return pendientes.map(pendiente -> new ResultadoEnvio(pendiente, true));
+        });
+        when(outboxRepository.marcarEnviados(any())).thenReturn(Mono.just(1));
+
+        StepVerifier.create(relay.drenar())
+                .expectNext(3L)
+                .verifyComplete();
+
+        verify(outboxRepository).marcarEnviados(List.of(1L));
+        verify(outboxRepository).marcarEnviados(List.of(2L));
+        verify(outboxRepository).marcarEnviados(List.of(3L));
+        verify(outboxRepository, times(2)).reclamarPendientes(eq(2), anyLong());
+    }
+
+    @Test
+    @DisplayName("Debería reprogramar los eventos cuyo email no se confirmó")
+    void deberiaReprogramarLoteNoConfirmado() throws Exception {
+        when(outboxRepository.reclamarPendientes(eq(2), anyLong()))
+                .thenReturn(Flux.just(evento(7L)));
+        when(emailDispatcherService.despachar(any())).thenAnswer(invocacion -> {
+            Flux<EmailPendiente> pendientes = invocacion.getArgument(0);
+            return pendientes.map(pendiente -> new ResultadoEnvio(pendiente, false));
+        });
+        when(outboxRepository.registrarFallo(any(), anyLong(), anyInt())).thenReturn(Mono.just(1));
+
+        StepVerifier.create(relay.drenar())
+                .expectNext(0L)
+                .verifyComplete();
+
+        verify(outboxRepository).registrarFallo(eq(List.of(7L)), eq(60L), eq(3));
+        verify(outboxRepository, never()).marcarEnviados(any());
+    }
+
+    @Test
+    @DisplayName("Debería dejar como FALLIDO un evento con payload ilegible sin enviarlo")
+    void deberiaDescartarPayloadIlegible() {
+        NotificacionOutbox ilegible = NotificacionOutbox.builder()
+                .id(9L).carritoId(9L).claveIdempotencia("carrito-9-0").payload("{no es json").build();
+        when(outboxRepository.reclamarPendientes(eq(2), anyLong())).thenReturn(Flux.just(ilegible));
+        when(outboxRepository.registrarFallo(any(), anyLong(), anyInt())).thenReturn(Mono.just(1));
+        when(emailDispatcherService.despachar(any())).thenAnswer(invocacion -> {
+            Flux<EmailPendiente> pendientes = invocacion.getArgument(0);
+            return pendientes.thenMany(Flux.empty());
+        });
+
+        StepVerifier.create(relay.drenar())
+                .expectNext(0L)
+                .verifyComplete();
+
+        verify(outboxRepository).registrarFallo(eq(List.of(9L)), eq(0L), eq(0));
+    }
+
+    @Test
+    @DisplayName("Debería omitir la ejecución programada mientras el drenaje anterior sigue en curso")
+    void deberiaOmitirEjecucionSolapada() {
+        Sinks.One<Long> drenajeAnterior = Sinks.one();
+        when(jobLeaseService.<Long>ejecutarConLease(eq("relay-notificaciones"), any(Duration.class), any()))
+                .thenReturn(drenajeAnterior.asMono())
+                .thenReturn(Mono.just(0L));
+
+        relay.relayProgramado();
+        relay.relayProgramado();
+        verify(jobLeaseService, times(1)).ejecutarConLease(eq("relay-notificaciones"), any(Duration.class), any());
+
+        // Terminado el drenaje anterior, el siguiente tick vuelve a ejecutarse
+        drenajeAnterior.tryEmitValue(3L);
+        relay.relayProgramado();
+        verify(jobLeaseService, times(2)).ejecutarConLease(eq("relay-notificaciones"), any(Duration.class), any());
+    }
+
+    private NotificacionOutbox evento(Long id) throws Exception {
+        EmailRequest email = new EmailRequest("cliente" + id + "@example.com", "asunto", "<html/>", "CARRITO_ABANDONADO");
+        return NotificacionOutbox.builder()
+                .id(id)
+                .carritoId(id)
+                .claveIdempotencia("carrito-" + id + "-0")
+                .payload(objectMapper.writeValueAsString(email))
+                .estado(NotificacionOutbox.EN_CURSO)
+                .intentos(0)
+                .build();
+    }
+}
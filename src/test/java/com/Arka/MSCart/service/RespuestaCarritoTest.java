@@ -0,0 +1,102 @@
+package com.Arka.MSCart.service;
+
+import com.Arka.MSCart.cache.ProductoInfoCache;
+import com.Arka.MSCart.cache.UsuarioCache;
+import com.Arka.MSCart.dto.AdminDto.ConsultUserInAuthDto;
+import com.Arka.MSCart.dto.CartWithProductsDto;
+import com.Arka.MSCart.dto.ConsultProductInventarioDto;
+import com.Arka.MSCart.dto.ProductInCartDto;
+import com.Arka.MSCart.exception.ServicioExternoException;
+import com.Arka.MSCart.model.Cart;
+import com.Arka.MSCart.model.CartDetail;
+import com.Arka.MSCart.repository.CartReadRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+/**
+ * Pruebas unitarias para RespuestaCarrito
+ * Capa de Lógica de Negocio
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("RespuestaCarrito - Pruebas Unitarias")
+class RespuestaCarritoTest {
+
+    private static final Long USER_ID = 5L;
+
+    @Mock
+    private UsuarioCache usuarioCache;
+
+    @Mock
+    private ProductoInfoCache productoInfoCache;
+
+    private RespuestaCarrito respuestaCarrito;
+
+    @BeforeEach
+    void setUp() {
+        respuestaCarrito = new RespuestaCarrito(usuarioCache, productoInfoCache);
+    }
+
+    @Test
+    @DisplayName("Debería completar el carrito leído con el usuario y la presentación de las líneas sin snapshot")
+    void deberiaCompletarCarritoLeido() {
+        CartWithProductsDto leido = new CartWithProductsDto();
+        leido.setUserId(USER_ID);
+        leido.setProducts(new ArrayList<>(List.of(
+                ProductInCartDto.builder().productoId(100L).nombre("Guardado").build(),
+                ProductInCartDto.builder().productoId(200L).build())));
+        when(usuarioCache.consultarUsuario(USER_ID))
+                .thenReturn(Mono.just(ConsultUserInAuthDto.builder().name("Ana").direccion("Calle 1").build()));
+        when(productoInfoCache.consultarProductos(List.of(200L)))
+                .thenReturn(Mono.just(Map.of(200L, new ConsultProductInventarioDto("Teclado", "USB", 3, 150))));
+
+        StepVerifier.create(respuestaCarrito.completar(new CartReadRepository.CarritoLeido(leido, List.of(200L))))
+                .assertNext(carrito -> {
+                    assertThat(carrito.getNombreUsuario()).isEqualTo("Ana");
+                    assertThat(carrito.getDireccionUsuario()).isEqualTo("Calle 1");
+                    assertThat(carrito.getProducts()).extracting(ProductInCartDto::getNombre)
+                            .containsExactly("Guardado", "Teclado");
+                    assertThat(carrito.getProducts().get(1).getPrecioUnitario()).isEqualTo(150);
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Debería construir la respuesta aunque fallen el usuario y el inventario")
+    void deberiaConstruirRespuestaSinUsuarioNiInventario() {
+        Cart cart = Cart.builder().id(10L).userId(USER_ID).estado(true)
+                .numeroProductos(2L).totalUnidades(3L).precioTotal(400).build();
+        List<CartDetail> detalles = List.of(
+                CartDetail.builder().id(1L).productoId(100L).cantidad(1L).precioTotal(100)
+                        .nombreProducto("Ratón").descripcionProducto("Óptico").precioUnitario(100)
+                        .snapshotEn(LocalDateTime.now()).build(),
+                CartDetail.builder().id(2L).productoId(200L).cantidad(2L).precioTotal(300).build());
+        when(usuarioCache.consultarUsuario(USER_ID)).thenReturn(Mono.error(ServicioExternoException.noDisponible("auth")));
+        when(productoInfoCache.consultarProductos(List.of(200L)))
+                .thenReturn(Mono.error(ServicioExternoException.noDisponible("inventario")));
+
+        StepVerifier.create(respuestaCarrito.construir(cart, detalles, Map.of()))
+                .assertNext(carrito -> {
+                    assertThat(carrito.getCartId()).isEqualTo(10L);
+                    assertThat(carrito.getEstadoCarrito()).isEqualTo("activo");
+                    assertThat(carrito.getPrecioTotal()).isEqualTo(400);
+                    assertThat(carrito.getNombreUsuario()).isEqualTo("Usuario no disponible");
+                    assertThat(carrito.getProducts()).extracting(ProductInCartDto::getNombre)
+                            .containsExactly("Ratón", CartReadRepository.NOMBRE_NO_DISPONIBLE);
+                })
+                .verifyComplete();
+    }
+}
@@ -0,0 +1,78 @@
+package com.Arka.MSCart.template;
+
+import com.Arka.MSCart.dto.notificationDto.CarritoAbandonado;
+import com.Arka.MSCart.dto.notificationDto.ProductoAbandonado;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Pruebas unitarias para PlantillaCarritoAbandonado y PlantillaHtml
+ * Capa de Presentación - Notificaciones
+ */
+@DisplayName("PlantillaCarritoAbandonado - Pruebas Unitarias")
+class PlantillaCarritoAbandonadoTest {
+
+    private final PlantillaCarritoAbandonado plantilla =
+            new PlantillaCarritoAbandonado(Clock.fixed(Instant.parse("2026-03-01T10:00:00Z"), ZoneOffset.UTC));
+
+    @Test
+    @DisplayName("Debería producir el mismo HTML que los reemplazos sucesivos sobre la plantilla")
+    void deberiaCoincidirConElReemplazoTradicional() {
+        CarritoAbandonado carrito = carrito("Ana", List.of(producto("Teclado", 120.5), producto("Mouse", 40.0)));
+
+        String esperado = PlantillaCarritoAbandonado.TEMPLATE_CARRITO
+                .replace("[NOMBRE_CLIENTE]", "Ana")
+                .replace("[URL_CARRITO]", "http://localhost/login")
+                .replace("[LISTA_PRODUCTOS]",
+                        "<li><strong>Teclado</strong> - 120.5</li><li><strong>Mouse</strong> - 40.0</li>")
+                .replace("[AÑO ACTUAL]", "2026");
+
+        assertThat(plantilla.renderizar(carrito)).isEqualTo(esperado);
+    }
+
+    @Test
+    @DisplayName("Debería escapar como HTML el nombre del cliente y de los productos")
+    void deberiaEscaparNombres() {
+        CarritoAbandonado carrito = carrito("<script>alert('x')</script>", List.of(producto("Cable \"USB\" & HDMI", 10.0)));
+
+        String html = plantilla.renderizar(carrito);
+
+        assertThat(html).contains("&lt;script&gt;alert(&#39;x&#39;)&lt;/script&gt;");
+        assertThat(html).contains("<li><strong>Cable &quot;USB&quot; &amp; HDMI</strong> - 10.0</li>");
+        assertThat(html).doesNotContain("<script>");
+    }
+
+    @Test
+    @DisplayName("Debería completar el año actual y no dejar marcadores sin reemplazar")
+    void deberiaCompletarElAnioActual() {
+        String html = plantilla.renderizar(carrito("Ana", null));
+
+        assertThat(html).contains("© 2026 Arka E-commerce");
+        assertThat(html).doesNotContain("[NOMBRE_CLIENTE]", "[URL_CARRITO]", "[LISTA_PRODUCTOS]", "[AÑO ACTUAL]");
+    }
+
+    @Test
+    @DisplayName("Debería conservar como literal un texto entre corchetes que no es un marcador")
+    void deberiaConservarCorchetesQueNoSonMarcadores() {
+        PlantillaHtml plantillaHtml = PlantillaHtml.compilar("a[0] [] [NOMBRE] [x]");
+
+        String html = plantillaHtml.renderizar((marcador, destino) -> destino.append("<").append(marcador).append(">"));
+
+        assertThat(html).isEqualTo("a[0] [] <NOMBRE> [x]");
+    }
+
+    private static CarritoAbandonado carrito(String nombre, List<ProductoAbandonado> productos) {
+        return new CarritoAbandonado(nombre, "ana@example.com", "http://localhost/login", productos);
+    }
+
+    private static ProductoAbandonado producto(String nombre, double precio) {
+        return new ProductoAbandonado(nombre, 1, precio);
+    }
+}